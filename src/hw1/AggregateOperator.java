@@ -0,0 +1,9 @@
+package hw1;
+
+public enum AggregateOperator {
+	MAX,
+	MIN,
+	AVG,
+	COUNT,
+	SUM
+}
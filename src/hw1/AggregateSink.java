@@ -0,0 +1,80 @@
+package hw1;
+
+/**
+ * Computes COUNT, SUM, AVG, MIN or MAX of one field of the rows pushed into
+ * it, with primitive accumulators.
+ */
+public class AggregateSink implements PipelineSink {
+
+	private AggregateOperator op;
+	private int field;
+	private long count;
+	private long sum;
+	private long min;
+	private long max;
+
+	/**
+	 * @param op    the aggregate; all but COUNT need an int field
+	 * @param field the index of the field in the batches pushed into the sink
+	 */
+	public AggregateSink(AggregateOperator op, int field) {
+		this.op = op;
+		this.field = field;
+		this.min = Long.MAX_VALUE;
+		this.max = Long.MIN_VALUE;
+	}
+
+	public void consume(RowBatch batch) {
+		int n = batch.numSelected();
+		this.count += n;
+		if (this.op == AggregateOperator.COUNT) {
+			return;
+		}
+		int[] column = batch.getIntColumn(this.field);
+		int[] sel = batch.getSelection();
+		long sum = 0;
+		long min = this.min;
+		long max = this.max;
+		for (int i = 0; i < n; i++) {
+			int v = column[sel[i]];
+			sum += v;
+			min = Math.min(min, v);
+			max = Math.max(max, v);
+		}
+		this.sum += sum;
+		this.min = min;
+		this.max = max;
+	}
+
+	public PipelineSink fork() {
+		return new AggregateSink(this.op, this.field);
+	}
+
+	public void merge(PipelineSink other) {
+		AggregateSink o = (AggregateSink) other;
+		this.count += o.count;
+		this.sum += o.sum;
+		this.min = Math.min(this.min, o.min);
+		this.max = Math.max(this.max, o.max);
+	}
+
+	/**
+	 * @return the aggregate of all consumed rows. AVG is rounded towards zero;
+	 *         MIN, MAX and AVG of no rows are 0.
+	 */
+	public long getResult() {
+		switch (this.op) {
+		case COUNT:
+			return this.count;
+		case SUM:
+			return this.sum;
+		case AVG:
+			return this.count == 0 ? 0 : this.sum / this.count;
+		case MIN:
+			return this.count == 0 ? 0 : this.min;
+		case MAX:
+			return this.count == 0 ? 0 : this.max;
+		}
+		return 0;
+	}
+}
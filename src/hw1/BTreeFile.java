@@ -0,0 +1,539 @@
+package hw1;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+import hw4.BufferPool;
+import hw4.Permissions;
+
+/**
+ * A B+ tree index over one field of a HeapFile, mapping each key to the page
+ * and slot of its tuple. The index is stored in its own file of BTreePages,
+ * which are read and written through the BufferPool under the locks of the
+ * calling transaction like the pages of a table; it extends HeapFile only so
+ * that the BufferPool can load and flush those pages, and the tuple methods of
+ * HeapFile do not apply to it.
+ * <p>
+ * A covering index also stores the values of some int fields of the table in
+ * its leaves, so that queries reading only those fields and the key can be
+ * answered by project without reading the table's pages.
+ * <p>
+ * Entries are removed from leaves on delete, but pages are never merged or
+ * freed, and pages allocated by an aborted transaction are left unused.
+ */
+public class BTreeFile extends HeapFile implements Index {
+
+	private static final int META_PAGE = 0;
+
+	private HeapFile table;
+	private int keyField;
+	private Type keyType;
+	private int[] included;
+
+	/**
+	 * Opens an index file that has been created with build.
+	 *
+	 * @param f        the index file
+	 * @param table    the indexed table
+	 * @param keyField the indexed field of the table
+	 */
+	public BTreeFile(File f, HeapFile table, int keyField) {
+		this(f, table, keyField, new int[0]);
+	}
+
+	/**
+	 * Opens a covering index file that has been created with build.
+	 *
+	 * @param included the int fields of the table stored in the leaves
+	 */
+	public BTreeFile(File f, HeapFile table, int keyField, int[] included) {
+		super(f, entryDesc(table.getTupleDesc(), keyField, included));
+		for (int field : included) {
+			if (table.getTupleDesc().getType(field) != Type.INT) {
+				throw new IllegalArgumentException("only int fields can be included");
+			}
+		}
+		this.table = table;
+		this.keyField = keyField;
+		this.keyType = table.getTupleDesc().getType(keyField);
+		this.included = included.clone();
+	}
+
+	/* key, pid, slot and the included fields */
+	private static TupleDesc entryDesc(TupleDesc td, int keyField, int[] included) {
+		Type[] types = new Type[3 + included.length];
+		String[] names = new String[types.length];
+		types[0] = td.getType(keyField);
+		names[0] = "key";
+		types[1] = Type.INT;
+		names[1] = "pid";
+		types[2] = Type.INT;
+		names[2] = "slot";
+		for (int j = 0; j < included.length; j++) {
+			types[3 + j] = Type.INT;
+			names[3 + j] = td.getFieldName(included[j]);
+		}
+		return new TupleDesc(types, names);
+	}
+
+	public HeapFile getTable() {
+		return this.table;
+	}
+
+	public int getKeyField() {
+		return this.keyField;
+	}
+
+	/**
+	 * @return the fields of the table stored in the leaves besides the key
+	 */
+	public int[] getIncluded() {
+		return this.included.clone();
+	}
+
+	/**
+	 * @return whether project can answer a query that reads these fields
+	 */
+	public boolean covers(int... fields) {
+		for (int field : fields) {
+			if (field != this.keyField && includedIndex(field) == -1) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int includedIndex(int field) {
+		for (int j = 0; j < this.included.length; j++) {
+			if (this.included[j] == field) {
+				return j;
+			}
+		}
+		return -1;
+	}
+
+	/** Index pages have no zone map */
+	@Override
+	public ZoneMap getZoneMap() {
+		return null;
+	}
+
+	@Override
+	public HeapPage readPage(int id) {
+		return new BTreePage(id, readPageData(id), this.getId(), this.keyType, this.included.length);
+	}
+
+	/**
+	 * Builds the index of a table from a sorted scan of its entries, writing
+	 * full leaves and the levels above them bottom up. The entries are sorted
+	 * with a SortSink, which keeps at most ExternalSort.DEFAULT_MEMORY_PAGES
+	 * pages of them in memory and spills the rest to sorted runs, so only the
+	 * first entry of each page stays in memory while the index is written. Any
+	 * existing content of f is replaced, so this must not run while the
+	 * BufferPool holds pages of the index.
+	 */
+	public static BTreeFile build(File f, HeapFile table, int keyField) throws IOException {
+		return build(f, table, keyField, new int[0]);
+	}
+
+	/**
+	 * Builds a covering index that stores the included int fields in its
+	 * leaves.
+	 *
+	 * @see #build(File, HeapFile, int)
+	 */
+	public static BTreeFile build(File f, HeapFile table, int keyField, int[] included) throws IOException {
+		BTreeFile index = new BTreeFile(f, table, keyField, included);
+		PageLayout layout = table.getLayout();
+		// entries carry their pid and slot as fields, which survive the sort runs
+		SortSink sorter = new SortSink(new int[] { 0, 1, 2 }, new boolean[] { true, true, true },
+				ExternalSort.DEFAULT_MEMORY_PAGES, ExternalSort.DEFAULT_FAN_IN);
+		int numEntries = 0;
+		for (int pid = 0; pid < table.getNumPages(); pid++) {
+			byte[] data = table.readPageData(pid);
+			for (int slot = 0; slot < layout.getNumSlots(); slot++) {
+				if (layout.slotOccupied(data, slot)) {
+					Tuple row = layout.readTuple(data, pid, slot);
+					Tuple entry = new Tuple(index.getTupleDesc());
+					entry.setField(0, row.getField(keyField));
+					entry.setField(1, new IntField(pid));
+					entry.setField(2, new IntField(slot));
+					for (int j = 0; j < included.length; j++) {
+						entry.setField(3 + j, row.getField(included[j]));
+					}
+					sorter.add(entry);
+					numEntries++;
+				}
+			}
+		}
+
+		try (RandomAccessFile out = new RandomAccessFile(f, "rw")) {
+			out.setLength(0);
+			int tableId = index.getId();
+
+			// leaves, linked left to right
+			LeafWriter leaves = new LeafWriter(out, index, numEntries);
+			try {
+				sorter.output(leaves);
+				leaves.finish();
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			ArrayList<Integer> level = leaves.level;
+			ArrayList<Tuple> firsts = leaves.firsts;
+			int nextPid = leaves.nextPid;
+
+			// internal levels, the first entry under each child becomes its separator
+			while (level.size() > 1) {
+				BTreePage node = new BTreePage(0, tableId, index.keyType, 0, BTreePage.INTERNAL);
+				int fanout = node.getCapacity() + 1;
+				int numNodes = (level.size() + fanout - 1) / fanout;
+				ArrayList<Integer> parents = new ArrayList<>();
+				ArrayList<Tuple> parentFirsts = new ArrayList<>();
+				for (int i = 0; i < numNodes; i++) {
+					int from = level.size() * i / numNodes;
+					int to = level.size() * (i + 1) / numNodes;
+					node = new BTreePage(nextPid, tableId, index.keyType, 0, BTreePage.INTERNAL);
+					node.setChild(0, level.get(from));
+					for (int j = from + 1; j < to; j++) {
+						Tuple e = firsts.get(j);
+						node.insertEntry(j - from - 1, e.getField(0), intValue(e, 1), intValue(e, 2), level.get(j));
+					}
+					write(out, node);
+					parents.add(nextPid++);
+					parentFirsts.add(firsts.get(from));
+				}
+				level = parents;
+				firsts = parentFirsts;
+			}
+
+			BTreePage meta = new BTreePage(META_PAGE, tableId, index.keyType, 0, BTreePage.META);
+			meta.setNext(level.get(0));
+			write(out, meta);
+		}
+		return index;
+	}
+
+	/*
+	 * writes the sorted entries of build to numLeaves leaves of about the same
+	 * size, remembering the pid and first entry of each leaf
+	 */
+	private static class LeafWriter implements Consumer<Tuple> {
+		private RandomAccessFile out;
+		private BTreeFile index;
+		private int numEntries;
+		private int numLeaves;
+		private int leafNumber; // the leaf being filled
+		private int entryNumber; // entries written so far
+		private BTreePage leaf;
+		private Tuple first;
+		public int nextPid;
+		public ArrayList<Integer> level;
+		public ArrayList<Tuple> firsts;
+
+		public LeafWriter(RandomAccessFile out, BTreeFile index, int numEntries) {
+			this.out = out;
+			this.index = index;
+			this.numEntries = numEntries;
+			int capacity = newLeaf(0).getCapacity();
+			this.numLeaves = Math.max(1, (numEntries + capacity - 1) / capacity);
+			this.nextPid = META_PAGE + 1;
+			this.level = new ArrayList<>();
+			this.firsts = new ArrayList<>();
+			this.leaf = newLeaf(this.nextPid);
+		}
+
+		public void accept(Tuple e) {
+			if (this.entryNumber == end(this.leafNumber)) {
+				finish();
+				this.leafNumber++;
+				this.leaf = newLeaf(this.nextPid);
+			}
+			int i = this.entryNumber - end(this.leafNumber - 1);
+			this.leaf.insertEntry(i, e.getField(0), intValue(e, 1), intValue(e, 2), -1);
+			for (int k = 0; k < this.index.included.length; k++) {
+				this.leaf.setValue(i, k, intValue(e, 3 + k));
+			}
+			if (this.first == null) {
+				this.first = e;
+			}
+			this.entryNumber++;
+		}
+
+		/* writes the leaf being filled */
+		public void finish() {
+			this.leaf.setNext(this.leafNumber + 1 < this.numLeaves ? this.nextPid + 1 : -1);
+			try {
+				write(this.out, this.leaf);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			this.level.add(this.nextPid++);
+			this.firsts.add(this.first);
+			this.first = null;
+		}
+
+		/* the number of entries in the leaves up to and including leaf i */
+		private int end(int i) {
+			return (int) ((long) this.numEntries * (i + 1) / this.numLeaves);
+		}
+
+		private BTreePage newLeaf(int pid) {
+			return new BTreePage(pid, this.index.getId(), this.index.keyType, this.index.included.length,
+					BTreePage.LEAF);
+		}
+	}
+
+	private static int intValue(Tuple t, int field) {
+		return ((IntField) t.getField(field)).getValue();
+	}
+
+	private static void write(RandomAccessFile out, BTreePage page) throws IOException {
+		out.seek((long) page.getId() * PAGE_SIZE);
+		out.write(page.getPageData());
+	}
+
+	/**
+	 * Adds the entry of a tuple to the index, splitting full pages on the way
+	 * back up to the root.
+	 *
+	 * @throws IllegalStateException for a covering index, which needs the
+	 *                               included values of the tuple
+	 */
+	public void insert(int tid, Field key, int pid, int slot) throws Exception {
+		if (this.included.length > 0) {
+			throw new IllegalStateException("a covering index needs the whole tuple");
+		}
+		insert(tid, key, pid, slot, new int[0]);
+	}
+
+	@Override
+	public void insert(int tid, Tuple t) throws Exception {
+		int[] values = new int[this.included.length];
+		for (int j = 0; j < values.length; j++) {
+			values[j] = ((IntField) t.getField(this.included[j])).getValue();
+		}
+		insert(tid, t.getField(this.keyField), t.getPid(), t.getId(), values);
+	}
+
+	private void insert(int tid, Field key, int pid, int slot, int[] values) throws Exception {
+		ArrayList<Integer> path = new ArrayList<>();
+		int nodeId = findLeaf(tid, key, pid, slot, path);
+		BTreePage node = writeNode(tid, nodeId);
+		int i = node.lowerBound(key, pid, slot);
+		node.insertEntry(i, key, pid, slot, -1);
+		for (int j = 0; j < values.length; j++) {
+			node.setValue(i, j, values[j]);
+		}
+
+		while (node.getCount() > node.getCapacity()) {
+			BTreePage sibling = allocateNode(tid, node.getKind());
+			int mid = node.getCount() / 2;
+			Field sepKey = node.getKey(mid);
+			int sepPid = node.getEntryPid(mid);
+			int sepSlot = node.getEntrySlot(mid);
+			node.moveEntries(mid, sibling);
+			if (node.isLeaf()) {
+				sibling.setNext(node.getNext());
+				node.setNext(sibling.getId());
+			}
+			if (path.isEmpty()) {
+				BTreePage root = allocateNode(tid, BTreePage.INTERNAL);
+				root.setChild(0, node.getId());
+				root.insertEntry(0, sepKey, sepPid, sepSlot, sibling.getId());
+				writeNode(tid, META_PAGE).setNext(root.getId());
+				return;
+			}
+			BTreePage parent = writeNode(tid, path.remove(path.size() - 1));
+			parent.insertEntry(parent.lowerBound(sepKey, sepPid, sepSlot), sepKey, sepPid, sepSlot,
+					sibling.getId());
+			node = parent;
+		}
+	}
+
+	/**
+	 * Removes the entry of a tuple from the index.
+	 *
+	 * @return whether the entry was found
+	 */
+	public boolean delete(int tid, Field key, int pid, int slot) throws Exception {
+		int nodeId = findLeaf(tid, key, pid, slot, null);
+		BTreePage leaf = readNode(tid, nodeId);
+		int i = leaf.lowerBound(key, pid, slot);
+		if (i == leaf.getCount() || leaf.compare(key, pid, slot, i) != 0) {
+			return false;
+		}
+		writeNode(tid, nodeId).deleteEntry(i);
+		return true;
+	}
+
+	/**
+	 * Returns the tuples whose key equals the given key.
+	 */
+	public ArrayList<Tuple> find(int tid, Field key) throws Exception {
+		return search(tid, RelationalOperator.GTE, key, RelationalOperator.LTE, key);
+	}
+
+	/**
+	 * Returns the tuples whose key satisfies key op operand, in key order.
+	 */
+	public ArrayList<Tuple> search(int tid, RelationalOperator op, Field operand) throws Exception {
+		switch (op) {
+		case EQ:
+			return find(tid, operand);
+		case GT:
+		case GTE:
+			return search(tid, op, operand, null, null);
+		case LT:
+		case LTE:
+			return search(tid, null, null, op, operand);
+		default:
+			ArrayList<Tuple> tuples = search(tid, null, null, RelationalOperator.LT, operand);
+			tuples.addAll(search(tid, RelationalOperator.GT, operand, null, null));
+			return tuples;
+		}
+	}
+
+	/**
+	 * Returns the tuples whose key lies between two bounds, in key order. The
+	 * tuples are read through the BufferPool with read locks.
+	 *
+	 * @param lowOp  GT or GTE, or null for no lower bound
+	 * @param highOp LT or LTE, or null for no upper bound
+	 */
+	public ArrayList<Tuple> search(int tid, RelationalOperator lowOp, Field low, RelationalOperator highOp,
+			Field high) throws Exception {
+		ArrayList<long[]> rids = new ArrayList<>();
+		scan(tid, lowOp, low, highOp, high, (key, pid, slot) -> rids.add(new long[] { pid, slot }));
+		BufferPool bp = Database.getBufferPool();
+		ArrayList<Tuple> tuples = new ArrayList<>(rids.size());
+		for (long[] rid : rids) {
+			HeapPage hp = bp.getPage(tid, this.table.getId(), (int) rid[0], Permissions.READ_ONLY);
+			Tuple t = hp.getTuple((int) rid[1]);
+			if (t != null) {
+				tuples.add(t);
+			}
+		}
+		return tuples;
+	}
+
+	/**
+	 * Returns the given fields of the tuples whose key lies between two bounds,
+	 * in key order, read from the leaves alone. The tuples have the pid and
+	 * slot of the table's tuples but are not read from the table.
+	 *
+	 * @param lowOp  GT or GTE, or null for no lower bound
+	 * @param highOp LT or LTE, or null for no upper bound
+	 * @param fields fields of the table, each the key or an included field
+	 * @throws IllegalArgumentException if the index does not cover the fields
+	 */
+	public ArrayList<Tuple> project(int tid, RelationalOperator lowOp, Field low, RelationalOperator highOp,
+			Field high, int... fields) throws Exception {
+		if (!covers(fields)) {
+			throw new IllegalArgumentException("the index does not cover the fields");
+		}
+		TupleDesc in = this.table.getTupleDesc();
+		Type[] types = new Type[fields.length];
+		String[] names = new String[fields.length];
+		int[] sources = new int[fields.length]; // -1 for the key
+		for (int i = 0; i < fields.length; i++) {
+			types[i] = in.getType(fields[i]);
+			names[i] = in.getFieldName(fields[i]);
+			sources[i] = fields[i] == this.keyField ? -1 : includedIndex(fields[i]);
+		}
+		TupleDesc td = new TupleDesc(types, names);
+		ArrayList<Tuple> tuples = new ArrayList<>();
+		scanLeaves(tid, lowOp, low, highOp, high, (node, i) -> {
+			Tuple t = new Tuple(td);
+			t.setPid(node.getEntryPid(i));
+			t.setId(node.getEntrySlot(i));
+			for (int j = 0; j < sources.length; j++) {
+				t.setField(j, sources[j] == -1 ? node.getKey(i) : new IntField(node.getValue(i, sources[j])));
+			}
+			tuples.add(t);
+		});
+		return tuples;
+	}
+
+	/**
+	 * Passes the entries whose key lies between two bounds to the consumer in
+	 * key order, starting at the leaf of the lower bound and following the
+	 * sibling links.
+	 *
+	 * @param lowOp  GT or GTE, or null for no lower bound
+	 * @param highOp LT or LTE, or null for no upper bound
+	 */
+	public void scan(int tid, RelationalOperator lowOp, Field low, RelationalOperator highOp, Field high,
+			EntryConsumer consumer) throws Exception {
+		scanLeaves(tid, lowOp, low, highOp, high,
+				(node, i) -> consumer.accept(node.getKey(i), node.getEntryPid(i), node.getEntrySlot(i)));
+	}
+
+	/* Passes each leaf entry in the range to the visitor as its page and position */
+	private void scanLeaves(int tid, RelationalOperator lowOp, Field low, RelationalOperator highOp, Field high,
+			ObjIntConsumer<BTreePage> visitor) throws Exception {
+		if ((lowOp != null && lowOp != RelationalOperator.GT && lowOp != RelationalOperator.GTE)
+				|| (highOp != null && highOp != RelationalOperator.LT && highOp != RelationalOperator.LTE)) {
+			throw new IllegalArgumentException("invalid bounds " + lowOp + ", " + highOp);
+		}
+		// GT starts after every entry with the bound as key, GTE before all of them
+		int bound = lowOp == RelationalOperator.GT ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+		BTreePage node = readNode(tid, readNode(tid, META_PAGE).getNext());
+		while (!node.isLeaf()) {
+			node = readNode(tid, lowOp == null ? node.getChild(0) : node.findChild(low, bound, bound));
+		}
+		int i = lowOp == null ? 0 : node.lowerBound(low, bound, bound);
+		while (true) {
+			for (; i < node.getCount(); i++) {
+				Field key = node.getKey(i);
+				if (highOp != null && !key.compare(highOp, high)) {
+					return;
+				}
+				visitor.accept(node, i);
+			}
+			if (node.getNext() == -1) {
+				return;
+			}
+			node = readNode(tid, node.getNext());
+			i = 0;
+		}
+	}
+
+	/* Returns the leaf that holds the entry, recording the internal nodes on the way in path */
+	private int findLeaf(int tid, Field key, int pid, int slot, ArrayList<Integer> path) throws Exception {
+		int nodeId = readNode(tid, META_PAGE).getNext();
+		BTreePage node = readNode(tid, nodeId);
+		while (!node.isLeaf()) {
+			if (path != null) {
+				path.add(nodeId);
+			}
+			nodeId = node.findChild(key, pid, slot);
+			node = readNode(tid, nodeId);
+		}
+		return nodeId;
+	}
+
+	private BTreePage readNode(int tid, int pid) throws Exception {
+		return (BTreePage) Database.getBufferPool().getPage(tid, this.getId(), pid, Permissions.READ_ONLY);
+	}
+
+	/* Takes a write lock on the page and marks it dirty before it is changed */
+	private BTreePage writeNode(int tid, int pid) throws Exception {
+		BufferPool bp = Database.getBufferPool();
+		BTreePage node = (BTreePage) bp.getPage(tid, this.getId(), pid, Permissions.READ_WRITE);
+		bp.markDirty(tid, this.getId(), pid);
+		return node;
+	}
+
+	/* Appends an empty page to the file and takes a write lock on it */
+	private BTreePage allocateNode(int tid, byte kind) throws Exception {
+		int pid = getNumPages();
+		writePage(new BTreePage(pid, this.getId(), this.keyType, this.included.length, kind));
+		return writeNode(tid, pid);
+	}
+}
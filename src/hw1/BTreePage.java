@@ -0,0 +1,281 @@
+package hw1;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A page of a BTreeFile. Page 0 of the file is a meta page holding the page
+ * number of the root; every other page is a leaf or an internal node.
+ * <p>
+ * Entries are ordered on (key, pid, slot), so keys do not have to be unique.
+ * A leaf holds entries and the page number of its right sibling. An internal
+ * node holds count separators and count + 1 children; every entry under
+ * child i is smaller than separator i, and every entry under child i + 1 is
+ * at least separator i.
+ * <p>
+ * Page format: a kind byte, the entry count, the sibling (or root) page
+ * number, then the entries. Leaf entries are key, pid, slot and the values
+ * of any included fields of a covering index; internal nodes store their
+ * first child followed by key, pid, slot, child for each separator.
+ */
+public class BTreePage extends HeapPage {
+	public static final byte META = 0;
+	public static final byte INTERNAL = 1;
+	public static final byte LEAF = 2;
+
+	private static final int HEADER_SIZE = 9;
+
+	private Type keyType;
+	private int numIncluded; // included int values per leaf entry
+	private byte kind;
+	private int count;
+	private int next; // right sibling of a leaf, or the root for the meta page
+	private Field[] keys;
+	private int[] pids;
+	private int[] slots;
+	private int[] children;
+	private int[] values; // numIncluded values per entry
+
+	public BTreePage(int id, byte[] data, int tableId, Type keyType, int numIncluded) {
+		super(id, tableId);
+		this.keyType = keyType;
+		ByteBuffer buf = ByteBuffer.wrap(data);
+		this.kind = buf.get();
+		this.numIncluded = this.kind == LEAF ? numIncluded : 0;
+		this.count = buf.getInt();
+		this.next = buf.getInt();
+		allocate();
+		if (this.kind == INTERNAL) {
+			this.children[0] = buf.getInt();
+		}
+		byte[] key = new byte[keySize(keyType)];
+		for (int i = 0; i < this.count; i++) {
+			buf.get(key);
+			this.keys[i] = keyType == Type.INT ? new IntField(key) : new StringField(key);
+			this.pids[i] = buf.getInt();
+			this.slots[i] = buf.getInt();
+			for (int j = 0; j < this.numIncluded; j++) {
+				this.values[i * this.numIncluded + j] = buf.getInt();
+			}
+			if (this.kind == INTERNAL) {
+				this.children[i + 1] = buf.getInt();
+			}
+		}
+	}
+
+	/**
+	 * Creates an empty page of the given kind.
+	 */
+	public BTreePage(int id, int tableId, Type keyType, int numIncluded, byte kind) {
+		super(id, tableId);
+		this.keyType = keyType;
+		this.kind = kind;
+		this.numIncluded = kind == LEAF ? numIncluded : 0;
+		this.next = -1;
+		allocate();
+	}
+
+	/* room for one entry more than fits, so that a node can overflow before it is split */
+	private void allocate() {
+		int n = getCapacity() + 1;
+		this.keys = new Field[n];
+		this.pids = new int[n];
+		this.slots = new int[n];
+		this.children = new int[n + 1];
+		this.values = new int[n * this.numIncluded];
+	}
+
+	static int keySize(Type keyType) {
+		return keyType == Type.INT ? PageLayout.INT_SIZE : PageLayout.STRING_SIZE;
+	}
+
+	/**
+	 * @return the number of entries that fit on a page of this kind
+	 */
+	public int getCapacity() {
+		int entrySize = keySize(this.keyType) + 8 + 4 * this.numIncluded;
+		if (this.kind == INTERNAL) {
+			return (HeapFile.PAGE_SIZE - HEADER_SIZE - 4) / (entrySize + 4);
+		}
+		return (HeapFile.PAGE_SIZE - HEADER_SIZE) / entrySize;
+	}
+
+	public byte getKind() {
+		return this.kind;
+	}
+
+	public boolean isLeaf() {
+		return this.kind == LEAF;
+	}
+
+	public int getCount() {
+		return this.count;
+	}
+
+	public int getNext() {
+		return this.next;
+	}
+
+	public void setNext(int next) {
+		this.next = next;
+	}
+
+	public Field getKey(int i) {
+		return this.keys[i];
+	}
+
+	public int getEntryPid(int i) {
+		return this.pids[i];
+	}
+
+	public int getEntrySlot(int i) {
+		return this.slots[i];
+	}
+
+	/**
+	 * Returns included value j of leaf entry i.
+	 */
+	public int getValue(int i, int j) {
+		return this.values[i * this.numIncluded + j];
+	}
+
+	public void setValue(int i, int j, int value) {
+		this.values[i * this.numIncluded + j] = value;
+	}
+
+	public int getChild(int i) {
+		return this.children[i];
+	}
+
+	public void setChild(int i, int child) {
+		this.children[i] = child;
+	}
+
+	/**
+	 * Compares the entry (key, pid, slot) to entry i of this page.
+	 */
+	public int compare(Field key, int pid, int slot, int i) {
+		int cmp = TupleComparator.compareFields(key, this.keys[i]);
+		if (cmp == 0) {
+			cmp = Integer.compare(pid, this.pids[i]);
+		}
+		if (cmp == 0) {
+			cmp = Integer.compare(slot, this.slots[i]);
+		}
+		return cmp;
+	}
+
+	/**
+	 * @return the number of entries smaller than (key, pid, slot)
+	 */
+	public int lowerBound(Field key, int pid, int slot) {
+		int lo = 0;
+		int hi = this.count;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (compare(key, pid, slot, mid) > 0) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * @return the child of an internal node whose subtree holds (key, pid, slot)
+	 */
+	public int findChild(Field key, int pid, int slot) {
+		int i = lowerBound(key, pid, slot);
+		if (i < this.count && compare(key, pid, slot, i) == 0) {
+			i++;
+		}
+		return this.children[i];
+	}
+
+	/**
+	 * Inserts an entry at position i. For internal nodes, child becomes the
+	 * child to the right of the new separator. Included values of the entry are
+	 * set with setValue.
+	 */
+	public void insertEntry(int i, Field key, int pid, int slot, int child) {
+		int moved = this.count - i;
+		System.arraycopy(this.keys, i, this.keys, i + 1, moved);
+		System.arraycopy(this.pids, i, this.pids, i + 1, moved);
+		System.arraycopy(this.slots, i, this.slots, i + 1, moved);
+		System.arraycopy(this.children, i + 1, this.children, i + 2, moved);
+		System.arraycopy(this.values, i * this.numIncluded, this.values, (i + 1) * this.numIncluded,
+				moved * this.numIncluded);
+		this.keys[i] = key;
+		this.pids[i] = pid;
+		this.slots[i] = slot;
+		this.children[i + 1] = child;
+		this.count++;
+	}
+
+	/**
+	 * Removes entry i, and for internal nodes the child to its right.
+	 */
+	public void deleteEntry(int i) {
+		int moved = this.count - i - 1;
+		System.arraycopy(this.keys, i + 1, this.keys, i, moved);
+		System.arraycopy(this.pids, i + 1, this.pids, i, moved);
+		System.arraycopy(this.slots, i + 1, this.slots, i, moved);
+		System.arraycopy(this.children, i + 2, this.children, i + 1, moved);
+		System.arraycopy(this.values, (i + 1) * this.numIncluded, this.values, i * this.numIncluded,
+				moved * this.numIncluded);
+		this.count--;
+		this.keys[this.count] = null;
+	}
+
+	/**
+	 * Moves the entries from position from onwards to the empty page other.
+	 * For internal nodes the entry at from is removed and returned in place of
+	 * being moved, and the child to its right becomes the first child of other.
+	 */
+	public void moveEntries(int from, BTreePage other) {
+		int start = this.kind == INTERNAL ? from + 1 : from;
+		int moved = this.count - start;
+		System.arraycopy(this.keys, start, other.keys, 0, moved);
+		System.arraycopy(this.pids, start, other.pids, 0, moved);
+		System.arraycopy(this.slots, start, other.slots, 0, moved);
+		System.arraycopy(this.children, start, other.children, 0, moved + 1);
+		System.arraycopy(this.values, start * this.numIncluded, other.values, 0, moved * this.numIncluded);
+		other.count = moved;
+		Arrays.fill(this.keys, from, this.count, null);
+		this.count = from;
+	}
+
+	@Override
+	public int getNumSlots() {
+		return getCapacity();
+	}
+
+	@Override
+	public int getFirstFreeSlot() {
+		return -1;
+	}
+
+	@Override
+	public byte[] getPageData() {
+		ByteBuffer buf = ByteBuffer.allocate(HeapFile.PAGE_SIZE);
+		buf.put(this.kind);
+		buf.putInt(this.count);
+		buf.putInt(this.next);
+		if (this.kind == INTERNAL) {
+			buf.putInt(this.children[0]);
+		}
+		for (int i = 0; i < this.count; i++) {
+			buf.put(this.keys[i].toByteArray());
+			buf.putInt(this.pids[i]);
+			buf.putInt(this.slots[i]);
+			for (int j = 0; j < this.numIncluded; j++) {
+				buf.putInt(this.values[i * this.numIncluded + j]);
+			}
+			if (this.kind == INTERNAL) {
+				buf.putInt(this.children[i + 1]);
+			}
+		}
+		return buf.array();
+	}
+}
@@ -0,0 +1,36 @@
+package hw1;
+
+/**
+ * Computes a single aggregate over one field of all the rows produced by a
+ * batch operator, by pushing every batch into an AggregateSink. COUNT works on
+ * any field; the other aggregates require an IntField column. Sums are
+ * accumulated in a long.
+ */
+public class BatchAggregate {
+
+	private BatchOperator child;
+	private AggregateOperator op;
+	private int field;
+
+	public BatchAggregate(BatchOperator child, AggregateOperator op, int field) {
+		if (op != AggregateOperator.COUNT && child.getTupleDesc().getType(field) != Type.INT) {
+			throw new IllegalArgumentException(op + " requires an int field");
+		}
+		this.child = child;
+		this.op = op;
+		this.field = field;
+	}
+
+	/**
+	 * Consumes the input and returns the aggregate. AVG is rounded towards zero;
+	 * MIN, MAX and AVG of no rows are 0.
+	 */
+	public long execute() {
+		AggregateSink sink = new AggregateSink(this.op, this.field);
+		RowBatch batch;
+		while ((batch = this.child.next()) != null) {
+			sink.consume(batch);
+		}
+		return sink.getResult();
+	}
+}
@@ -0,0 +1,125 @@
+package hw1;
+
+/**
+ * Filters the rows of each batch with a predicate by narrowing the batch's
+ * selection vector. Batches in which no row matches are skipped.
+ */
+public class BatchFilter implements BatchOperator {
+
+	private BatchOperator child;
+	private Predicate p;
+	private byte[] stringOperand;
+	private long[] bitmap;
+
+	public BatchFilter(BatchOperator child, Predicate p) {
+		p.checkType(child.getTupleDesc());
+		this.child = child;
+		this.p = p;
+		this.stringOperand = p.getOperand().toByteArray();
+	}
+
+	public TupleDesc getTupleDesc() {
+		return this.child.getTupleDesc();
+	}
+
+	public RowBatch next() {
+		RowBatch batch;
+		while ((batch = this.child.next()) != null) {
+			int n;
+			if (batch.getTupleDesc().getType(this.p.getField()) == Type.INT
+					&& batch.numSelected() == batch.getSize()) {
+				// every row is selected, evaluate the whole column into a bitmap
+				if (this.bitmap == null || this.bitmap.length < FilterKernels.bitmapLength(batch.getSize())) {
+					this.bitmap = new long[FilterKernels.bitmapLength(batch.getCapacity())];
+				}
+				FilterKernels.compare(batch.getIntColumn(this.p.getField()), batch.getSize(), this.p.getOp(),
+						((IntField) this.p.getOperand()).getValue(), this.bitmap);
+				n = FilterKernels.toSelection(this.bitmap, FilterKernels.bitmapLength(batch.getSize()),
+						batch.getSelection());
+			} else if (batch.getTupleDesc().getType(this.p.getField()) == Type.INT) {
+				n = filterInts(batch.getIntColumn(this.p.getField()), this.p.getOp(),
+						((IntField) this.p.getOperand()).getValue(), batch.getSelection(), batch.numSelected());
+			} else {
+				n = filterStrings(batch.getStringColumn(this.p.getField()), this.p.getOp(), this.stringOperand,
+						batch.getSelection(), batch.numSelected());
+			}
+			batch.setNumSelected(n);
+			if (n > 0) {
+				return batch;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Keeps the selected rows whose value satisfies `value op operand`. The
+	 * selection vector is compacted in place without branching on the
+	 * comparison, one loop per operator so the JIT can unroll each of them.
+	 *
+	 * @return the number of rows still selected
+	 */
+	public static int filterInts(int[] column, RelationalOperator op, int operand, int[] sel, int n) {
+		int k = 0;
+		switch (op) {
+		case EQ:
+			for (int i = 0; i < n; i++) {
+				int row = sel[i];
+				sel[k] = row;
+				k += column[row] == operand ? 1 : 0;
+			}
+			break;
+		case NOTEQ:
+			for (int i = 0; i < n; i++) {
+				int row = sel[i];
+				sel[k] = row;
+				k += column[row] != operand ? 1 : 0;
+			}
+			break;
+		case GT:
+			for (int i = 0; i < n; i++) {
+				int row = sel[i];
+				sel[k] = row;
+				k += column[row] > operand ? 1 : 0;
+			}
+			break;
+		case GTE:
+			for (int i = 0; i < n; i++) {
+				int row = sel[i];
+				sel[k] = row;
+				k += column[row] >= operand ? 1 : 0;
+			}
+			break;
+		case LT:
+			for (int i = 0; i < n; i++) {
+				int row = sel[i];
+				sel[k] = row;
+				k += column[row] < operand ? 1 : 0;
+			}
+			break;
+		case LTE:
+			for (int i = 0; i < n; i++) {
+				int row = sel[i];
+				sel[k] = row;
+				k += column[row] <= operand ? 1 : 0;
+			}
+			break;
+		}
+		return k;
+	}
+
+	/**
+	 * Keeps the selected rows whose encoded string satisfies `value op operand`.
+	 *
+	 * @return the number of rows still selected
+	 */
+	public static int filterStrings(byte[] column, RelationalOperator op, byte[] operand, int[] sel, int n) {
+		int k = 0;
+		for (int i = 0; i < n; i++) {
+			int row = sel[i];
+			sel[k] = row;
+			int cmp = Predicate.compareStrings(column, row * PageLayout.STRING_SIZE, operand);
+			k += Predicate.test(op, cmp) ? 1 : 0;
+		}
+		return k;
+	}
+}
@@ -0,0 +1,16 @@
+package hw1;
+
+/**
+ * An operator of the batch-at-a-time execution engine. Each call to next()
+ * produces the following batch of rows; the returned batch may be reused by
+ * the operator, so it is only valid until the next call.
+ */
+public interface BatchOperator {
+
+	/**
+	 * @return the next batch of rows, or null when there are no more rows
+	 */
+	public RowBatch next();
+
+	public TupleDesc getTupleDesc();
+}
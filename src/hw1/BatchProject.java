@@ -0,0 +1,37 @@
+package hw1;
+
+/**
+ * Keeps only the given fields of each batch. The columns are not copied.
+ */
+public class BatchProject implements BatchOperator {
+
+	private BatchOperator child;
+	private int[] fields;
+	private TupleDesc td;
+
+	/**
+	 * @param child  the input operator
+	 * @param fields the indices of the fields to keep, in output order
+	 */
+	public BatchProject(BatchOperator child, int[] fields) {
+		this.child = child;
+		this.fields = fields.clone();
+		TupleDesc childTd = child.getTupleDesc();
+		Type[] types = new Type[fields.length];
+		String[] names = new String[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			types[i] = childTd.getType(fields[i]);
+			names[i] = childTd.getFieldName(fields[i]);
+		}
+		this.td = new TupleDesc(types, names);
+	}
+
+	public TupleDesc getTupleDesc() {
+		return this.td;
+	}
+
+	public RowBatch next() {
+		RowBatch batch = this.child.next();
+		return batch == null ? null : batch.project(this.fields, this.td);
+	}
+}
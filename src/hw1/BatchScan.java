@@ -0,0 +1,101 @@
+package hw1;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scans a HeapFile and decodes its pages straight into column batches, without
+ * creating HeapPage or Tuple objects.
+ */
+public class BatchScan implements BatchOperator {
+
+	private HeapFile hf;
+	private PageLayout layout;
+	private RowBatch batch;
+	private int startPage;
+	private int endPage;
+	private List<Predicate> zoneFilters;
+
+	private int pid;
+	private int slot;
+	private byte[] data;
+
+	public BatchScan(HeapFile hf) {
+		this(hf, 0, hf.getNumPages(), RowBatch.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Scans the pages [startPage, endPage) of the file.
+	 *
+	 * @param capacity the number of rows per batch
+	 */
+	public BatchScan(HeapFile hf, int startPage, int endPage, int capacity) {
+		this.hf = hf;
+		this.layout = hf.getLayout();
+		this.batch = new RowBatch(hf.getTupleDesc(), capacity);
+		this.startPage = startPage;
+		this.endPage = endPage;
+		this.pid = startPage;
+		this.zoneFilters = new ArrayList<>();
+	}
+
+	public TupleDesc getTupleDesc() {
+		return this.hf.getTupleDesc();
+	}
+
+	/**
+	 * Restarts the scan over the pages [startPage, endPage) of the file.
+	 */
+	public void setRange(int startPage, int endPage) {
+		this.startPage = startPage;
+		this.endPage = endPage;
+		rewind();
+	}
+
+	/**
+	 * Skips the pages whose zone map or Bloom filters (see HeapFile.mayMatch)
+	 * show that no row on them can satisfy all of the predicates. The rows of the pages that are read are not
+	 * filtered.
+	 */
+	public void setZoneFilters(List<Predicate> predicates) {
+		for (Predicate p : predicates) {
+			p.checkType(this.hf.getTupleDesc());
+		}
+		this.zoneFilters = new ArrayList<>(predicates);
+	}
+
+	/** Starts the scan over from the first page */
+	public void rewind() {
+		this.pid = this.startPage;
+		this.slot = 0;
+		this.data = null;
+	}
+
+	public RowBatch next() {
+		this.batch.clear();
+		int numSlots = this.layout.getNumSlots();
+		while (!this.batch.isFull() && this.pid < this.endPage) {
+			if (this.data == null) {
+				if (!this.zoneFilters.isEmpty() && !this.hf.mayMatch(this.pid, this.zoneFilters)) {
+					this.pid++;
+					continue;
+				}
+				this.data = this.hf.readPageData(this.pid);
+				if (!this.zoneFilters.isEmpty()) {
+					this.hf.observePage(this.pid, this.data);
+				}
+				this.slot = 0;
+			}
+			for (; this.slot < numSlots && !this.batch.isFull(); this.slot++) {
+				if (this.layout.slotOccupied(this.data, this.slot)) {
+					this.batch.addRow(this.data, this.layout.getSlotOffset(this.slot), this.layout);
+				}
+			}
+			if (this.slot == numSlots) {
+				this.data = null;
+				this.pid++;
+			}
+		}
+		return this.batch.getSize() == 0 ? null : this.batch;
+	}
+}
@@ -0,0 +1,226 @@
+package hw1;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import hw4.BufferPool;
+import hw4.Permissions;
+
+/**
+ * A bitmap index over a low-cardinality field of a HeapFile: for every
+ * distinct value, a RoaringBitmap of the rows holding it. A row is numbered
+ * pid * numSlots + slot, so the bitmaps are ordered by position in the file,
+ * and conditions on several indexed fields are combined by intersecting or
+ * uniting bitmaps before any page is read.
+ * <p>
+ * The index is kept in memory. It is built from a scan of the file and kept
+ * up to date by the BufferPool as tuples are inserted and deleted. Each
+ * transaction's changes are logged until it completes, and undone if it
+ * aborts.
+ */
+public class BitmapIndex implements Index {
+
+	private HeapFile hf;
+	private int field;
+	private int numSlots;
+	private HashMap<Field, RoaringBitmap> bitmaps;
+
+	/* one change made by a transaction that has not completed */
+	private static class Change {
+		public boolean insert;
+		public Field value;
+		public int row;
+
+		public Change(boolean insert, Field value, int row) {
+			this.insert = insert;
+			this.value = value;
+			this.row = row;
+		}
+	}
+
+	/* tid -> the changes of the transaction, in order */
+	private IntObjectMap<ArrayList<Change>> changes;
+
+	/**
+	 * Builds the index from the tuples currently on disk.
+	 *
+	 * @param hf    the indexed table
+	 * @param field the indexed field of the table
+	 */
+	public BitmapIndex(HeapFile hf, int field) {
+		this.hf = hf;
+		this.field = field;
+		this.bitmaps = new HashMap<>();
+		this.changes = new IntObjectMap<>();
+		PageLayout layout = hf.getLayout();
+		this.numSlots = layout.getNumSlots();
+		for (int pid = 0; pid < hf.getNumPages(); pid++) {
+			byte[] data = hf.readPageData(pid);
+			for (int slot = 0; slot < this.numSlots; slot++) {
+				if (layout.slotOccupied(data, slot)) {
+					insert(-1, layout.readTuple(data, pid, slot).getField(field), pid, slot);
+				}
+			}
+		}
+	}
+
+	public HeapFile getTable() {
+		return this.hf;
+	}
+
+	public int getKeyField() {
+		return this.field;
+	}
+
+	public synchronized int getNumValues() {
+		return this.bitmaps.size();
+	}
+
+	/**
+	 * @param tid the transaction adding the row, or -1 for a change that cannot
+	 *            be undone
+	 */
+	public synchronized void insert(int tid, Field value, int pid, int slot) {
+		int row = pid * this.numSlots + slot;
+		add(value, row);
+		log(tid, new Change(true, value, row));
+	}
+
+	public synchronized boolean delete(int tid, Field value, int pid, int slot) {
+		int row = pid * this.numSlots + slot;
+		if (!remove(value, row)) {
+			return false;
+		}
+		log(tid, new Change(false, value, row));
+		return true;
+	}
+
+	/**
+	 * Forgets the changes of a committed transaction, or undoes those of an
+	 * aborted one in reverse order.
+	 */
+	public synchronized void transactionComplete(int tid, boolean commit) {
+		ArrayList<Change> log = this.changes.remove(tid);
+		if (log == null || commit) {
+			return;
+		}
+		for (int i = log.size() - 1; i >= 0; i--) {
+			Change change = log.get(i);
+			if (change.insert) {
+				remove(change.value, change.row);
+			} else {
+				add(change.value, change.row);
+			}
+		}
+	}
+
+	private void add(Field value, int row) {
+		this.bitmaps.computeIfAbsent(value, v -> new RoaringBitmap()).add(row);
+	}
+
+	private boolean remove(Field value, int row) {
+		RoaringBitmap bitmap = this.bitmaps.get(value);
+		if (bitmap == null || !bitmap.contains(row)) {
+			return false;
+		}
+		bitmap.remove(row);
+		if (bitmap.isEmpty()) {
+			this.bitmaps.remove(value);
+		}
+		return true;
+	}
+
+	private void log(int tid, Change change) {
+		if (tid == -1) {
+			return;
+		}
+		ArrayList<Change> log = this.changes.get(tid);
+		if (log == null) {
+			log = new ArrayList<>();
+			this.changes.put(tid, log);
+		}
+		log.add(change);
+	}
+
+	/**
+	 * @return the rows whose field satisfies the predicate, as a new bitmap
+	 */
+	public synchronized RoaringBitmap select(Predicate p) {
+		if (p.getField() != this.field) {
+			throw new IllegalArgumentException("predicate is not on field " + this.field);
+		}
+		RoaringBitmap result = new RoaringBitmap();
+		if (p.getOp() == RelationalOperator.EQ) {
+			RoaringBitmap bitmap = this.bitmaps.get(p.getOperand());
+			return bitmap == null ? result : RoaringBitmap.or(result, bitmap);
+		}
+		for (Map.Entry<Field, RoaringBitmap> e : this.bitmaps.entrySet()) {
+			if (e.getKey().compare(p.getOp(), p.getOperand())) {
+				result = RoaringBitmap.or(result, e.getValue());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the rows that satisfy all of the predicates, each of which must be
+	 * on a field of the table that has a bitmap index.
+	 *
+	 * @throws NoSuchElementException if a field has no bitmap index
+	 */
+	public static RoaringBitmap and(int tableId, List<Predicate> predicates) {
+		RoaringBitmap result = null;
+		for (Predicate p : predicates) {
+			RoaringBitmap rows = indexFor(tableId, p).select(p);
+			result = result == null ? rows : RoaringBitmap.and(result, rows);
+		}
+		return result == null ? new RoaringBitmap() : result;
+	}
+
+	/**
+	 * Returns the rows that satisfy any of the predicates, each of which must be
+	 * on a field of the table that has a bitmap index.
+	 *
+	 * @throws NoSuchElementException if a field has no bitmap index
+	 */
+	public static RoaringBitmap or(int tableId, List<Predicate> predicates) {
+		RoaringBitmap result = new RoaringBitmap();
+		for (Predicate p : predicates) {
+			result = RoaringBitmap.or(result, indexFor(tableId, p).select(p));
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the given rows of the table through the BufferPool with read locks.
+	 * Rows are visited in file order, so each page holding one of them is
+	 * fetched once and pages holding none are not fetched at all.
+	 */
+	public ArrayList<Tuple> fetch(int tid, RoaringBitmap rows) throws Exception {
+		ArrayList<Tuple> tuples = new ArrayList<>();
+		BufferPool bp = Database.getBufferPool();
+		HeapPage hp = null;
+		for (int row : rows.toArray()) {
+			int pid = row / this.numSlots;
+			if (hp == null || hp.getId() != pid) {
+				hp = bp.getPage(tid, this.hf.getId(), pid, Permissions.READ_ONLY);
+			}
+			Tuple t = hp.getTuple(row % this.numSlots);
+			if (t != null) {
+				tuples.add(t);
+			}
+		}
+		return tuples;
+	}
+
+	private static BitmapIndex indexFor(int tableId, Predicate p) {
+		BitmapIndex index = Database.getCatalog().getBitmapIndex(tableId, p.getField());
+		if (index == null) {
+			throw new NoSuchElementException("no bitmap index on field " + p.getField());
+		}
+		return index;
+	}
+}
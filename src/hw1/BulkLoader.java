@@ -0,0 +1,190 @@
+package hw1;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads large amounts of tuples into a HeapFile without going through
+ * HeapFile.addTuple. Records are packed into full page images on worker
+ * threads, and the pages are appended to the end of the file in order with
+ * large sequential writes.
+ * <p>
+ * Existing pages are never modified, so free slots in them are not reused.
+ * The loader must not run while another transaction has uncommitted new pages
+ * of the same table in the buffer pool. If a load fails, the pages it has
+ * already appended are truncated away again.
+ */
+public class BulkLoader {
+
+	/* number of pages built by one worker task and written with a single write */
+	private static final int PAGES_PER_CHUNK = 64;
+
+	private HeapFile hf;
+	private TupleDesc td;
+	private PageLayout layout;
+	private int numThreads;
+	private int numSlots;
+
+	/* encodes one record into the slot at the given offset of a page image */
+	private interface RecordWriter<T> {
+		void write(T record, byte[] page, int offset);
+	}
+
+	public BulkLoader(HeapFile hf) {
+		this(hf, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param hf         the file to append to
+	 * @param numThreads number of worker threads that parse records and build pages
+	 */
+	public BulkLoader(HeapFile hf, int numThreads) {
+		this.hf = hf;
+		this.td = hf.getTupleDesc();
+		this.layout = hf.getLayout();
+		this.numThreads = Math.max(1, numThreads);
+		this.numSlots = this.layout.getNumSlots();
+	}
+
+	/**
+	 * Appends the given tuples to the file.
+	 *
+	 * @param tuples tuples whose TupleDesc matches the file
+	 * @return the number of tuples loaded
+	 */
+	public long load(Iterator<Tuple> tuples) throws IOException {
+		return load(tuples, (t, page, offset) -> {
+			if (!t.getDesc().equals(this.td)) {
+				throw new IllegalArgumentException("tuple does not match the schema: " + t);
+			}
+			for (int j = 0; j < this.td.numFields(); j++) {
+				byte[] field = t.getField(j).toByteArray();
+				System.arraycopy(field, 0, page, offset, field.length);
+				offset += field.length;
+			}
+		});
+	}
+
+	/**
+	 * Appends the rows of a CSV file to the file. Each non-empty line holds one
+	 * value per field of the TupleDesc, separated by commas.
+	 *
+	 * @param csv the file to read
+	 * @return the number of tuples loaded
+	 */
+	public long loadCsv(File csv) throws IOException {
+		BufferedReader br = new BufferedReader(new FileReader(csv), 1 << 16);
+		try {
+			return loadCsv(br);
+		} finally {
+			br.close();
+		}
+	}
+
+	public long loadCsv(BufferedReader br) throws IOException {
+		Iterator<String> lines = br.lines().filter(line -> !line.trim().isEmpty()).iterator();
+		return load(lines, (line, page, offset) -> {
+			String[] values = line.split(",", -1);
+			if (values.length != this.td.numFields()) {
+				throw new IllegalArgumentException("Invalid row : " + line);
+			}
+			for (int j = 0; j < values.length; j++) {
+				Field f;
+				if (this.td.getType(j) == Type.INT) {
+					f = new IntField(Integer.parseInt(values[j].trim()));
+				} else {
+					f = new StringField(values[j].trim());
+				}
+				byte[] field = f.toByteArray();
+				System.arraycopy(field, 0, page, offset, field.length);
+				offset += field.length;
+			}
+		});
+	}
+
+	private <T> long load(Iterator<T> records, RecordWriter<T> writer) throws IOException {
+		ExecutorService pool = Executors.newFixedThreadPool(this.numThreads);
+		ArrayDeque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+		RandomAccessFile file = new RandomAccessFile(this.hf.getFile(), "rw");
+		long loaded = 0;
+		int pid = this.hf.getNumPages();
+		int numPages = pid;
+		long length = file.length();
+		boolean done = false;
+		try {
+			file.seek((long) pid * HeapFile.PAGE_SIZE);
+			while (records.hasNext()) {
+				ArrayList<T> chunk = new ArrayList<T>(this.numSlots * PAGES_PER_CHUNK);
+				while (chunk.size() < this.numSlots * PAGES_PER_CHUNK && records.hasNext()) {
+					chunk.add(records.next());
+				}
+				loaded += chunk.size();
+				pending.add(pool.submit(() -> buildPages(chunk, writer)));
+				// bound the memory used by chunks that are built but not yet written
+				if (pending.size() > 2 * this.numThreads) {
+					pid = write(file, await(pending.poll()), pid);
+				}
+			}
+			while (!pending.isEmpty()) {
+				pid = write(file, await(pending.poll()), pid);
+			}
+			done = true;
+		} finally {
+			pool.shutdownNow();
+			if (!done) {
+				// drop the chunks of a failed load, so the file is left as it was
+				file.setLength(length);
+				this.hf.pagesTruncated(numPages);
+			}
+			file.close();
+		}
+		return loaded;
+	}
+
+	/* pack the records into consecutive full page images */
+	private <T> byte[] buildPages(ArrayList<T> records, RecordWriter<T> writer) {
+		int pages = (records.size() + this.numSlots - 1) / this.numSlots;
+		byte[] data = new byte[pages * HeapFile.PAGE_SIZE];
+		for (int i = 0; i < records.size(); i++) {
+			int base = (i / this.numSlots) * HeapFile.PAGE_SIZE;
+			int slot = i % this.numSlots;
+			data[base + slot / 8] |= 1 << (slot % 8);
+			writer.write(records.get(i), data, base + this.layout.getSlotOffset(slot));
+		}
+		return data;
+	}
+
+	/* write a chunk of pages starting at page pid and record their zones and filters */
+	private int write(RandomAccessFile file, byte[] chunk, int pid) throws IOException {
+		this.hf.beforePagesWritten();
+		file.write(chunk);
+		for (int offset = 0; offset < chunk.length; offset += HeapFile.PAGE_SIZE) {
+			this.hf.pageWritten(pid++, chunk, offset);
+		}
+		return pid;
+	}
+
+	private static byte[] await(Future<byte[]> chunk) throws IOException {
+		try {
+			return chunk.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+}
@@ -23,15 +23,19 @@ public class Catalog {
 	 */
 
 	private HashMap<String, Table> mapper;
-	private HashMap<Integer, String> tableIds;
+	private IntObjectMap<Table> tableIds;
+	private IntObjectMap<HeapFile> indexes; // index file id -> index file
+	private int version; // incremented whenever the set of tables changes
 
 	private class Table {
 		public String pkeyField;
 		public String name;
-		public HeapFile file;
+		public DbFile file;
 		public int tableId;
+		public BTreeFile index;
+		public ArrayList<Index> secondaryIndexes = new ArrayList<>();
 
-		public Table(HeapFile file, String name, String pkeyField, int tableId) {
+		public Table(DbFile file, String name, String pkeyField, int tableId) {
 			this.pkeyField = pkeyField;
 			this.name = name;
 			this.file = file;
@@ -41,12 +45,13 @@ public class Catalog {
 
 	public Catalog() {
 		this.mapper = new HashMap<>();
-		this.tableIds = new HashMap<>();
+		this.tableIds = new IntObjectMap<>();
+		this.indexes = new IntObjectMap<>();
 	}
 
 	/**
 	 * Add a new table to the catalog.
-	 * This table's contents are stored in the specified HeapFile.
+	 * This table's contents are stored in the specified DbFile.
 	 * 
 	 * @param file      the contents of the table to add; file.getId() is the
 	 *                  identfier of
@@ -57,15 +62,16 @@ public class Catalog {
 	 *                  added as the table for a given name.
 	 * @param pkeyField the name of the primary key field
 	 */
-	public void addTable(HeapFile file, String name, String pkeyField) {
+	public void addTable(DbFile file, String name, String pkeyField) {
 		// your code here
 		int tableId = file.getId();
 		Table table = new Table(file, name, pkeyField, tableId);
 		this.mapper.put(name, table);
-		this.tableIds.put(tableId, name);
+		this.tableIds.put(tableId, table);
+		this.version++;
 	}
 
-	public void addTable(HeapFile file, String name) {
+	public void addTable(DbFile file, String name) {
 		addTable(file, name, "");
 	}
 
@@ -94,46 +100,288 @@ public class Catalog {
 	}
 
 	/**
-	 * Returns the HeapFile that can be used to read the contents of the
+	 * Returns the DbFile that can be used to read the contents of the
 	 * specified table.
 	 * 
-	 * @param tableid The id of the table, as specified by the HeapFile.getId()
+	 * @param tableid The id of the table, as specified by the DbFile.getId()
 	 *                function passed to addTable
 	 */
-	public HeapFile getDbFile(int tableid) throws NoSuchElementException {
+	public DbFile getDbFile(int tableid) throws NoSuchElementException {
 		// your code here
-		String tableName = this.getTableName(tableid);
-		if (tableName != null) {
-			return this.mapper.get(tableName).file;
+		Table table = this.tableIds.get(tableid);
+		if (table != null) {
+			return table.file;
+		}
+		HeapFile index = this.indexes.get(tableid);
+		if (index != null) {
+			return index;
 		}
 		throw new NoSuchElementException();
 	}
 
+	/**
+	 * Returns the file of a table whose pages have fixed-size slots, for the
+	 * operators that read page images through its PageLayout.
+	 *
+	 * @throws IllegalArgumentException if the table's file has another page
+	 *                                  format
+	 */
+	public HeapFile getHeapFile(int tableid) throws NoSuchElementException {
+		Table table = this.tableIds.get(tableid);
+		if (table == null) {
+			throw new NoSuchElementException();
+		}
+		return heapFile(table);
+	}
+
 	/** Delete all tables from the catalog */
 	public void clear() {
 		// your code here
 		this.mapper.clear();
 		this.tableIds.clear();
+		this.indexes.clear();
+		this.version++;
+	}
+
+	/**
+	 * Returns a number that changes every time a table is added or the catalog
+	 * is cleared, so that cached plans can tell whether they are still valid.
+	 */
+	public int getVersion() {
+		return this.version;
 	}
 
 	public String getPrimaryKey(int tableid) {
 		// your code here
-		String tableName = this.getTableName(tableid);
-		if (tableName != null) {
-			return this.mapper.get(tableName).pkeyField;
+		Table table = this.tableIds.get(tableid);
+		if (table != null) {
+			return table.pkeyField;
+		}
+		return null;
+	}
+
+	/**
+	 * Builds a B+ tree index on the primary key of a table, stored next to the
+	 * table's file with the extension .idx. Once built, the BufferPool keeps the
+	 * index up to date as tuples are inserted and deleted. Building replaces an
+	 * existing index file and drops its pages from the BufferPool.
+	 *
+	 * @throws IllegalArgumentException if the table has no primary key
+	 * @throws IllegalStateException    if a page of the old index is locked or
+	 *                                  dirty
+	 */
+	public BTreeFile createIndex(int tableid) throws IOException {
+		Table table = this.tableIds.get(tableid);
+		if (table == null) {
+			throw new NoSuchElementException();
+		}
+		if (table.pkeyField == null || table.pkeyField.isEmpty()) {
+			throw new IllegalArgumentException("table " + table.name + " has no primary key");
+		}
+		int keyField = table.file.getTupleDesc().nameToId(table.pkeyField);
+		table.index = BTreeFile.build(indexFile(table, ".idx"), heapFile(table), keyField);
+		this.indexes.put(table.index.getId(), table.index);
+		return table.index;
+	}
+
+	/**
+	 * Builds a hash index on a field of a table, stored next to the table's file
+	 * as name.field.hash, and keeps it up to date like the primary key index. An
+	 * existing hash index on the field is replaced, see createIndex.
+	 */
+	public HashIndexFile createHashIndex(int tableid, String field) throws IOException {
+		Table table = this.tableIds.get(tableid);
+		if (table == null) {
+			throw new NoSuchElementException();
+		}
+		int keyField = table.file.getTupleDesc().nameToId(field);
+		HashIndexFile index = HashIndexFile.build(indexFile(table, "." + field + ".hash"), heapFile(table),
+				keyField);
+		addSecondaryIndex(table, index);
+		this.indexes.put(index.getId(), index);
+		return index;
+	}
+
+	/**
+	 * Returns the hash index on a field of a table, or null if there is none.
+	 */
+	public HashIndexFile getHashIndex(int tableid, String field) {
+		return findIndex(tableid, HashIndexFile.class, getTupleDesc(tableid).nameToId(field));
+	}
+
+	/**
+	 * Builds a covering B+ tree index on a field of a table that also stores the
+	 * given int fields, stored next to the table's file as name.field.cover. An
+	 * existing covering index on the field is replaced, see createIndex.
+	 *
+	 * @see BTreeFile#project
+	 */
+	public BTreeFile createCoveringIndex(int tableid, String field, String... included) throws IOException {
+		Table table = this.tableIds.get(tableid);
+		if (table == null) {
+			throw new NoSuchElementException();
+		}
+		TupleDesc td = table.file.getTupleDesc();
+		int[] includedFields = new int[included.length];
+		for (int i = 0; i < included.length; i++) {
+			includedFields[i] = td.nameToId(included[i]);
+		}
+		BTreeFile index = BTreeFile.build(indexFile(table, "." + field + ".cover"), heapFile(table),
+				td.nameToId(field), includedFields);
+		addSecondaryIndex(table, index);
+		this.indexes.put(index.getId(), index);
+		return index;
+	}
+
+	/**
+	 * Returns a covering index of a table from which all of the given fields
+	 * can be read, or null if there is none.
+	 */
+	public BTreeFile getCoveringIndex(int tableid, int... fields) {
+		Table table = this.tableIds.get(tableid);
+		if (table != null) {
+			for (Index index : table.secondaryIndexes) {
+				if (index instanceof BTreeFile && ((BTreeFile) index).covers(fields)) {
+					return (BTreeFile) index;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Builds a prefix-compressed index on a string field of a table, stored next
+	 * to the table's file as name.field.prefix. An existing prefix index on the
+	 * field is replaced, see createIndex.
+	 */
+	public PrefixIndexFile createPrefixIndex(int tableid, String field) throws IOException {
+		Table table = this.tableIds.get(tableid);
+		if (table == null) {
+			throw new NoSuchElementException();
+		}
+		int keyField = table.file.getTupleDesc().nameToId(field);
+		PrefixIndexFile index = PrefixIndexFile.build(indexFile(table, "." + field + ".prefix"), heapFile(table),
+				keyField);
+		addSecondaryIndex(table, index);
+		this.indexes.put(index.getId(), index);
+		return index;
+	}
+
+	/**
+	 * Returns the prefix index on a field of a table, or null if there is none.
+	 */
+	public PrefixIndexFile getPrefixIndex(int tableid, String field) {
+		return findIndex(tableid, PrefixIndexFile.class, getTupleDesc(tableid).nameToId(field));
+	}
+
+	/**
+	 * Builds an in-memory bitmap index on a field of a table and keeps it up to
+	 * date like the other indexes. An existing bitmap index on the field is
+	 * replaced.
+	 */
+	public BitmapIndex createBitmapIndex(int tableid, String field) {
+		Table table = this.tableIds.get(tableid);
+		if (table == null) {
+			throw new NoSuchElementException();
+		}
+		BitmapIndex index = new BitmapIndex(heapFile(table), table.file.getTupleDesc().nameToId(field));
+		addSecondaryIndex(table, index);
+		return index;
+	}
+
+	/**
+	 * Returns the bitmap index on a field of a table, or null if there is none.
+	 */
+	public BitmapIndex getBitmapIndex(int tableid, int field) {
+		return findIndex(tableid, BitmapIndex.class, field);
+	}
+
+	/**
+	 * Returns all indexes of a table, the primary key index first if there is
+	 * one.
+	 */
+	public List<Index> getIndexes(int tableid) {
+		Table table = this.tableIds.get(tableid);
+		if (table == null) {
+			return Collections.emptyList();
+		}
+		ArrayList<Index> result = new ArrayList<>();
+		if (table.index != null) {
+			result.add(table.index);
+		}
+		result.addAll(table.secondaryIndexes);
+		return result;
+	}
+
+	/* adds an index, replacing an index of the same kind on the same field */
+	private static void addSecondaryIndex(Table table, Index index) {
+		table.secondaryIndexes
+				.removeIf(i -> i.getClass() == index.getClass() && i.getKeyField() == index.getKeyField());
+		table.secondaryIndexes.add(index);
+	}
+
+	private <T extends Index> T findIndex(int tableid, Class<T> kind, int field) {
+		Table table = this.tableIds.get(tableid);
+		if (table != null) {
+			for (Index index : table.secondaryIndexes) {
+				if (kind.isInstance(index) && index.getKeyField() == field) {
+					return kind.cast(index);
+				}
+			}
 		}
 		return null;
 	}
 
+	/* the table's file, which the index builds read through its PageLayout */
+	private static HeapFile heapFile(Table table) {
+		if (!(table.file instanceof HeapFile)) {
+			throw new IllegalArgumentException("table " + table.name + " does not have fixed-size slots");
+		}
+		return (HeapFile) table.file;
+	}
+
+	/*
+	 * the file an index of the table is built in, whose old pages are dropped
+	 * from the BufferPool first since the rebuilt index keeps the id of the
+	 * file, the hash of its path
+	 */
+	private static File indexFile(Table table, String extension) {
+		File f = new File(basePath(table) + extension);
+		Database.getBufferPool().discardPages(f.hashCode());
+		return f;
+	}
+
+	/* path of the table's file without its .dat extension */
+	private static String basePath(Table table) {
+		String path = heapFile(table).getFile().getPath();
+		if (path.endsWith(".dat")) {
+			path = path.substring(0, path.length() - 4);
+		}
+		return path;
+	}
+
+	/**
+	 * Returns the primary key index of a table, or null if none has been built.
+	 */
+	public BTreeFile getIndex(int tableid) {
+		Table table = this.tableIds.get(tableid);
+		return table == null ? null : table.index;
+	}
+
 	public Iterator<Integer> tableIdIterator() {
 		// your code here
-		return this.tableIds.keySet().iterator();
+		ArrayList<Integer> ids = new ArrayList<>();
+		for (int id : this.tableIds.keys()) {
+			ids.add(id);
+		}
+		return ids.iterator();
 	}
 
 	public String getTableName(int id) {
 		// your code here
-		if (tableIds.containsKey(id)) {
-			return tableIds.get(id);
+		Table table = this.tableIds.get(id);
+		if (table != null) {
+			return table.name;
 		}
 		return null;
 	}
@@ -0,0 +1,35 @@
+package hw1;
+
+import java.util.ArrayList;
+
+/**
+ * Decodes the rows pushed into it into Tuples. Rows of different morsels are
+ * not kept in file order.
+ */
+public class CollectSink implements PipelineSink {
+
+	private ArrayList<Tuple> tuples;
+
+	public CollectSink() {
+		this.tuples = new ArrayList<>();
+	}
+
+	public void consume(RowBatch batch) {
+		int[] sel = batch.getSelection();
+		for (int i = 0; i < batch.numSelected(); i++) {
+			this.tuples.add(batch.getTuple(sel[i]));
+		}
+	}
+
+	public PipelineSink fork() {
+		return new CollectSink();
+	}
+
+	public void merge(PipelineSink other) {
+		this.tuples.addAll(((CollectSink) other).tuples);
+	}
+
+	public ArrayList<Tuple> getTuples() {
+		return this.tuples;
+	}
+}
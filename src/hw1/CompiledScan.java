@@ -0,0 +1,307 @@
+package hw1;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A scan with a conjunction of predicates and a projection that are compiled
+ * once, when the scan is created, instead of being interpreted for every row.
+ * <p>
+ * The predicates and the projection become method handle trees that read
+ * values at fixed offsets of the page image and compare them with the
+ * constants of the query, with no dispatch on types or operators left at run
+ * time. The trees are then bound into a new hidden class (see
+ * CompiledScanTemplate) so the JIT compiles each query to its own straight-line
+ * code. If the template's class file cannot be read or the hidden class
+ * cannot be defined, the method handles are invoked directly instead; such
+ * fallbacks are logged and counted (see getFallbackCount). Any other error
+ * while defining the class is thrown.
+ */
+public class CompiledScan {
+
+	/* the per-query code generated from CompiledScanTemplate */
+	interface Kernel {
+		/**
+		 * Writes the occupied slots of the page that satisfy the predicates to out
+		 *
+		 * @return the number of slots written
+		 */
+		int select(byte[] data, int headerSize, int tupleSize, int numSlots, int[] out);
+
+		/** Decodes the projected fields of the tuple at slotOffset */
+		Tuple project(byte[] data, int slotOffset);
+	}
+
+	private static final MethodHandle ADD;
+	private static final MethodHandle READ_INT;
+	private static final MethodHandle COMPARE_STRINGS;
+	private static final MethodHandle INT_FIELD;
+	private static final MethodHandle STRING_FIELD;
+	private static final MethodHandle NEW_TUPLE;
+	private static final MethodHandle SET_FIELD;
+
+	private static final Logger LOG = Logger.getLogger(CompiledScan.class.getName());
+	private static final AtomicInteger FALLBACKS = new AtomicInteger();
+
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			ADD = lookup.findStatic(CompiledScan.class, "add", MethodType.methodType(int.class, int.class, int.class));
+			READ_INT = lookup.findStatic(PageLayout.class, "readInt",
+					MethodType.methodType(int.class, byte[].class, int.class));
+			COMPARE_STRINGS = lookup.findStatic(Predicate.class, "compareStrings",
+					MethodType.methodType(int.class, byte[].class, int.class, byte[].class));
+			INT_FIELD = lookup.findStatic(CompiledScan.class, "intField",
+					MethodType.methodType(Field.class, byte[].class, int.class));
+			STRING_FIELD = lookup.findStatic(CompiledScan.class, "stringField",
+					MethodType.methodType(Field.class, byte[].class, int.class));
+			NEW_TUPLE = lookup.findConstructor(Tuple.class, MethodType.methodType(void.class, TupleDesc.class));
+			SET_FIELD = lookup.findStatic(CompiledScan.class, "setField",
+					MethodType.methodType(Tuple.class, Tuple.class, int.class, Field.class));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private HeapFile hf;
+	private PageLayout layout;
+	private TupleDesc td;
+	private List<Predicate> predicates;
+	private Kernel kernel;
+	private boolean compiled;
+
+	/**
+	 * @param hf         the file to scan
+	 * @param predicates conditions that every returned tuple satisfies, may be empty
+	 * @param fields     the fields of the file to return, in order
+	 */
+	public CompiledScan(HeapFile hf, List<Predicate> predicates, int[] fields) {
+		this(hf, predicates, fields, true);
+	}
+
+	/**
+	 * @param compile whether to define a hidden class for the query, or to invoke
+	 *                the method handles directly
+	 */
+	public CompiledScan(HeapFile hf, List<Predicate> predicates, int[] fields, boolean compile) {
+		this.hf = hf;
+		this.layout = hf.getLayout();
+		this.predicates = new ArrayList<>(predicates);
+		TupleDesc in = hf.getTupleDesc();
+		for (Predicate p : predicates) {
+			p.checkType(in);
+		}
+		Type[] types = new Type[fields.length];
+		String[] names = new String[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			types[i] = in.getType(fields[i]);
+			names[i] = in.getFieldName(fields[i]);
+		}
+		this.td = new TupleDesc(types, names);
+
+		try {
+			MethodHandle predicate = compilePredicates(predicates);
+			MethodHandle projection = compileProjection(fields);
+			this.kernel = compile ? defineKernel(predicate, projection) : null;
+			this.compiled = this.kernel != null;
+			if (this.kernel == null) {
+				this.kernel = interpretedKernel(predicate, projection);
+			}
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public TupleDesc getTupleDesc() {
+		return this.td;
+	}
+
+	/**
+	 * @return whether the scan runs as a hidden class rather than invoking the
+	 *         method handles directly
+	 */
+	public boolean isCompiled() {
+		return this.compiled;
+	}
+
+	/**
+	 * @return the number of scans whose hidden class could not be defined
+	 */
+	public static int getFallbackCount() {
+		return FALLBACKS.get();
+	}
+
+	public ArrayList<Tuple> execute() {
+		ArrayList<Tuple> result = new ArrayList<>();
+		int[] slots = new int[this.layout.getNumSlots()];
+		int headerSize = this.layout.getHeaderSize();
+		int tupleSize = this.hf.getTupleDesc().getSize();
+		for (int pid = 0; pid < this.hf.getNumPages(); pid++) {
+			if (!this.hf.mayMatch(pid, this.predicates)) {
+				continue;
+			}
+			byte[] data = this.hf.readPageData(pid);
+			if (!this.predicates.isEmpty()) {
+				this.hf.observePage(pid, data);
+			}
+			int n = this.kernel.select(data, headerSize, tupleSize, this.layout.getNumSlots(), slots);
+			for (int i = 0; i < n; i++) {
+				Tuple t = this.kernel.project(data, this.layout.getSlotOffset(slots[i]));
+				t.setPid(pid);
+				t.setId(slots[i]);
+				result.add(t);
+			}
+		}
+		return result;
+	}
+
+	/* (byte[] data, int slotOffset) -> boolean, true if all predicates hold */
+	private MethodHandle compilePredicates(List<Predicate> predicates) throws ReflectiveOperationException {
+		MethodHandle result = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, true), 0,
+				byte[].class, int.class);
+		MethodHandle never = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0,
+				byte[].class, int.class);
+		for (int i = predicates.size() - 1; i >= 0; i--) {
+			result = MethodHandles.guardWithTest(compilePredicate(predicates.get(i)), result, never);
+		}
+		return result;
+	}
+
+	private MethodHandle compilePredicate(Predicate p) throws ReflectiveOperationException {
+		MethodHandle test = MethodHandles.lookup().findStatic(CompiledScan.class, p.getOp().name().toLowerCase(),
+				MethodType.methodType(boolean.class, int.class, int.class));
+		MethodHandle value;
+		if (p.getOperand().getType() == Type.INT) {
+			// op(readInt(data, offset), operand)
+			test = MethodHandles.insertArguments(test, 1, ((IntField) p.getOperand()).getValue());
+			value = READ_INT;
+		} else {
+			// op(compareStrings(data, offset, operand), 0)
+			test = MethodHandles.insertArguments(test, 1, 0);
+			value = MethodHandles.insertArguments(COMPARE_STRINGS, 2, p.getOperand().toByteArray());
+		}
+		return MethodHandles.collectArguments(test, 0, atField(value, p.getField()));
+	}
+
+	/* (byte[] data, int slotOffset) -> Tuple */
+	private MethodHandle compileProjection(int[] fields) {
+		MethodHandle result = MethodHandles.dropArguments(MethodHandles.insertArguments(NEW_TUPLE, 0, this.td), 0,
+				byte[].class, int.class);
+		for (int i = 0; i < fields.length; i++) {
+			MethodHandle field = this.td.getType(i) == Type.INT ? INT_FIELD : STRING_FIELD;
+			// setField(result(data, offset), i, field(data, offset + fieldOffset))
+			MethodHandle set = MethodHandles.insertArguments(SET_FIELD, 1, i);
+			set = MethodHandles.collectArguments(set, 0, result);
+			set = MethodHandles.collectArguments(set, 2, atField(field, fields[i]));
+			result = MethodHandles.permuteArguments(set, MethodType.methodType(Tuple.class, byte[].class, int.class),
+					0, 1, 0, 1);
+		}
+		return result;
+	}
+
+	/* adapts (byte[] data, int offset) -> T to read the given field of the slot at offset */
+	private MethodHandle atField(MethodHandle reader, int field) {
+		return MethodHandles.filterArguments(reader, 1,
+				MethodHandles.insertArguments(ADD, 1, this.layout.getFieldOffset(field)));
+	}
+
+	/* the kernel as a hidden class, or null if it cannot be defined */
+	private static Kernel defineKernel(MethodHandle predicate, MethodHandle projection) {
+		try (InputStream in = CompiledScan.class.getResourceAsStream("CompiledScanTemplate.class")) {
+			if (in == null) {
+				// e.g. the classes are not loaded from class files
+				fallback(null);
+				return null;
+			}
+			byte[] bytes = in.readAllBytes();
+			Class<?> c = MethodHandles.lookup()
+					.defineHiddenClassWithClassData(bytes, Arrays.asList(predicate, projection), true).lookupClass();
+			return (Kernel) c.getDeclaredConstructor().newInstance();
+		} catch (IOException | ReflectiveOperationException e) {
+			fallback(e);
+			return null;
+		}
+	}
+
+	private static void fallback(Exception e) {
+		FALLBACKS.incrementAndGet();
+		LOG.log(Level.WARNING, "CompiledScanTemplate cannot be defined, the scan is interpreted", e);
+	}
+
+	private static Kernel interpretedKernel(MethodHandle predicate, MethodHandle projection) {
+		return new Kernel() {
+			public int select(byte[] data, int headerSize, int tupleSize, int numSlots, int[] out) {
+				try {
+					int k = 0;
+					for (int slot = 0; slot < numSlots; slot++) {
+						if ((data[slot >> 3] >> (slot & 7) & 1) == 1
+								&& (boolean) predicate.invokeExact(data, headerSize + slot * tupleSize)) {
+							out[k++] = slot;
+						}
+					}
+					return k;
+				} catch (Throwable t) {
+					throw new RuntimeException(t);
+				}
+			}
+
+			public Tuple project(byte[] data, int slotOffset) {
+				try {
+					return (Tuple) projection.invokeExact(data, slotOffset);
+				} catch (Throwable t) {
+					throw new RuntimeException(t);
+				}
+			}
+		};
+	}
+
+	private static int add(int a, int b) {
+		return a + b;
+	}
+
+	private static Field intField(byte[] data, int offset) {
+		return new IntField(PageLayout.readInt(data, offset));
+	}
+
+	private static Field stringField(byte[] data, int offset) {
+		return new StringField(Arrays.copyOfRange(data, offset, offset + PageLayout.STRING_SIZE));
+	}
+
+	private static Tuple setField(Tuple t, int i, Field f) {
+		t.setField(i, f);
+		return t;
+	}
+
+	private static boolean eq(int a, int b) {
+		return a == b;
+	}
+
+	private static boolean noteq(int a, int b) {
+		return a != b;
+	}
+
+	private static boolean gt(int a, int b) {
+		return a > b;
+	}
+
+	private static boolean gte(int a, int b) {
+		return a >= b;
+	}
+
+	private static boolean lt(int a, int b) {
+		return a < b;
+	}
+
+	private static boolean lte(int a, int b) {
+		return a <= b;
+	}
+}
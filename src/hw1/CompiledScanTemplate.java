@@ -0,0 +1,49 @@
+package hw1;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Template of the classes generated by CompiledScan. This class is never
+ * loaded as is: its bytes are defined again as a hidden class for every
+ * compiled query, with the query's predicate and projection as class data.
+ * Because they end up in static final fields, the JIT treats the method
+ * handles as constants and inlines them into the loops below.
+ */
+final class CompiledScanTemplate implements CompiledScan.Kernel {
+	private static final MethodHandle PREDICATE;
+	private static final MethodHandle PROJECTION;
+
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			PREDICATE = MethodHandles.classDataAt(lookup, "_", MethodHandle.class, 0);
+			PROJECTION = MethodHandles.classDataAt(lookup, "_", MethodHandle.class, 1);
+		} catch (IllegalAccessException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	public int select(byte[] data, int headerSize, int tupleSize, int numSlots, int[] out) {
+		try {
+			int k = 0;
+			for (int slot = 0; slot < numSlots; slot++) {
+				if ((data[slot >> 3] >> (slot & 7) & 1) == 1
+						&& (boolean) PREDICATE.invokeExact(data, headerSize + slot * tupleSize)) {
+					out[k++] = slot;
+				}
+			}
+			return k;
+		} catch (Throwable e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public Tuple project(byte[] data, int slotOffset) {
+		try {
+			return (Tuple) PROJECTION.invokeExact(data, slotOffset);
+		} catch (Throwable e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
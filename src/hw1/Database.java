@@ -2,7 +2,10 @@ package hw1;
 
 import java.io.*;
 
+import javax.management.JMException;
+
 import hw4.BufferPool;
+import hw4.StorageStats;
 
 /*
  * Student 1 name: Yifan Yuan
@@ -22,6 +25,16 @@ public class Database {
 	private static Database _instance = new Database();
 	private final Catalog _catalog;
 	private static BufferPool _bufferPool;
+	private static final StorageStats _stats = new StorageStats();
+	private static final QueryCache _queryCache = new QueryCache();
+
+	static {
+		try {
+			_stats.register();
+		} catch (JMException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
 
 	// private final
 
@@ -47,4 +60,14 @@ public class Database {
 	public static BufferPool getBufferPool() {
 		return _bufferPool;
 	}
+
+	/** Return the cache of prepared query plans */
+	public static QueryCache getQueryCache() {
+		return _queryCache;
+	}
+
+	/** Return the buffer pool and storage statistics, shared by all buffer pools */
+	public static StorageStats getStats() {
+		return _stats;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package hw1;
+
+import java.io.IOException;
+
+/**
+ * The file of a table or index as the Catalog and BufferPool see it: pages
+ * of PAGE_SIZE bytes in a format of the file's own, read, created and written
+ * whole.
+ * <p>
+ * Operators that read page images through a PageLayout (scans, joins,
+ * aggregates, sorts, the bulk loader and the index builds) take a HeapFile,
+ * whose pages have fixed-size slots, and so cannot be given a file of
+ * another format.
+ */
+public interface DbFile {
+
+	/**
+	 * @return the id of the file, which is also the id of its table
+	 */
+	int getId();
+
+	TupleDesc getTupleDesc();
+
+	int getNumPages();
+
+	/**
+	 * Reads the page at the given page number from disk.
+	 */
+	HeapPage readPage(int id);
+
+	/**
+	 * Creates an empty page at the given page number, in the page format of
+	 * this file.
+	 */
+	HeapPage createPage(int id);
+
+	/**
+	 * Writes a page of this file to disk.
+	 */
+	void writePage(HeapPage p);
+
+	/**
+	 * Adds a tuple to the first page with room for it, or to a new page. The
+	 * page is not written.
+	 *
+	 * @return the page that holds the tuple
+	 */
+	HeapPage addTuple(Tuple t) throws IOException;
+}
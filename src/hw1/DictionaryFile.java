@@ -0,0 +1,180 @@
+package hw1;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * A heap file whose string fields are dictionary encoded: pages store the
+ * 4-byte code of each string in a StringDictionary of the table instead of
+ * the 129-byte StringField.
+ * <p>
+ * To the rest of the database this is an ordinary heap file of int fields
+ * (getTupleDesc returns the encoded schema), so scans, zone maps, Bloom
+ * filters, joins and aggregates all work on the codes: an equality predicate
+ * on a string field becomes one on its code with encode(Predicate), and
+ * grouping on an encoded field groups on codes. Codes of different
+ * dictionaries are unrelated, so HashJoin and HashProbeSink only join an
+ * encoded field with one encoded by the same dictionary, as in a self-join.
+ * Strings are only decoded when results are returned, with decode. Tuples are
+ * added in encoded form, see encode(Tuple).
+ * <p>
+ * Codes do not preserve the order of strings, so only equality predicates can
+ * be encoded. The dictionary is stored next to the file with the extension
+ * .dict, and new strings are written to it before any page that uses them.
+ */
+public class DictionaryFile extends HeapFile {
+
+	private TupleDesc logical;
+	private StringDictionary dictionary;
+
+	/**
+	 * Opens a dictionary-encoded file and its dictionary.
+	 *
+	 * @param f       location of the file
+	 * @param logical the schema of the tuples before encoding
+	 */
+	public DictionaryFile(File f, TupleDesc logical) throws IOException {
+		super(f, encode(logical));
+		this.logical = logical;
+		this.dictionary = new StringDictionary(new File(f.getPath() + ".dict"));
+	}
+
+	/* the schema with every string field replaced by an int code */
+	private static TupleDesc encode(TupleDesc td) {
+		Type[] types = new Type[td.numFields()];
+		String[] names = new String[td.numFields()];
+		for (int j = 0; j < types.length; j++) {
+			types[j] = Type.INT;
+			names[j] = td.getFieldName(j);
+		}
+		return new TupleDesc(types, names);
+	}
+
+	/**
+	 * Copies the tuples of a heap file to a new dictionary-encoded file. Tuples
+	 * get new page and slot numbers. Any existing content of f and of its
+	 * dictionary is replaced.
+	 */
+	public static DictionaryFile convert(HeapFile source, File f) throws IOException {
+		new File(f.getPath() + ".dict").delete();
+		f.delete();
+		DictionaryFile target = new DictionaryFile(f, source.getTupleDesc());
+		Iterator<Tuple> it = source.getAllTuples().iterator();
+		new BulkLoader(target).load(new Iterator<Tuple>() {
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			public Tuple next() {
+				return target.encode(it.next());
+			}
+		});
+		return target;
+	}
+
+	/**
+	 * @return the schema of the tuples before encoding
+	 */
+	public TupleDesc getLogicalTupleDesc() {
+		return this.logical;
+	}
+
+	public StringDictionary getDictionary() {
+		return this.dictionary;
+	}
+
+	/**
+	 * Returns the file of the dictionary that encodes a field of a heap file, or
+	 * null if the field is not dictionary encoded. Joins compare these to
+	 * reject fields whose codes are unrelated.
+	 */
+	static File dictionaryOf(HeapFile hf, int field) {
+		if (!(hf instanceof DictionaryFile)) {
+			return null;
+		}
+		DictionaryFile df = (DictionaryFile) hf;
+		return df.logical.getType(field) == Type.STRING ? df.dictionary.getFile() : null;
+	}
+
+	/**
+	 * Encodes a tuple of the logical schema for storage in this file, adding new
+	 * strings to the dictionary.
+	 */
+	public Tuple encode(Tuple t) {
+		if (!t.getDesc().equals(this.logical)) {
+			throw new IllegalArgumentException("tuple does not match the schema: " + t);
+		}
+		Tuple encoded = new Tuple(this.getTupleDesc());
+		for (int j = 0; j < this.logical.numFields(); j++) {
+			Field field = t.getField(j);
+			encoded.setField(j, this.logical.getType(j) == Type.INT ? field
+					: new IntField(this.dictionary.add(((StringField) field).getValue())));
+		}
+		return encoded;
+	}
+
+	/**
+	 * Decodes a tuple of this file to the logical schema. The page and slot are
+	 * kept.
+	 */
+	public Tuple decode(Tuple t) {
+		Tuple decoded = new Tuple(this.logical);
+		decoded.setPid(t.getPid());
+		decoded.setId(t.getId());
+		for (int j = 0; j < this.logical.numFields(); j++) {
+			Field field = t.getField(j);
+			decoded.setField(j, this.logical.getType(j) == Type.INT ? field
+					: new StringField(this.dictionary.getString(((IntField) field).getValue())));
+		}
+		return decoded;
+	}
+
+	/**
+	 * Rewrites a predicate on the logical schema to one on the stored codes. A
+	 * string that is not in the dictionary gets a code that matches no tuple.
+	 *
+	 * @throws IllegalArgumentException for order comparisons on a string field
+	 */
+	public Predicate encode(Predicate p) {
+		if (this.logical.getType(p.getField()) == Type.INT) {
+			return p;
+		}
+		if (p.getOp() != RelationalOperator.EQ && p.getOp() != RelationalOperator.NOTEQ) {
+			throw new IllegalArgumentException("dictionary codes only support = and !=");
+		}
+		int code = this.dictionary.getCode(((StringField) p.getOperand()).getValue());
+		return new Predicate(p.getField(), p.getOp(), new IntField(code));
+	}
+
+	/**
+	 * Returns the decoded tuples that satisfy a predicate on the logical
+	 * schema, evaluated on the codes.
+	 */
+	public ArrayList<Tuple> getMatchingDecoded(Predicate p) {
+		ArrayList<Tuple> result = new ArrayList<>();
+		for (Tuple t : getMatchingTuples(encode(p))) {
+			result.add(decode(t));
+		}
+		return result;
+	}
+
+	/* new strings are written to the dictionary before the pages of a bulk load */
+	@Override
+	void beforePagesWritten() throws IOException {
+		this.dictionary.flush();
+	}
+
+	/** New strings are written to the dictionary before the page */
+	@Override
+	public void writePage(HeapPage p) {
+		try {
+			this.dictionary.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		super.writePage(p);
+	}
+}
@@ -0,0 +1,9 @@
+package hw1;
+
+/**
+ * Receives index entries: a key and the page and slot of the tuple it
+ * belongs to.
+ */
+public interface EntryConsumer {
+	void accept(Field key, int pid, int slot);
+}
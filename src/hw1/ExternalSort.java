@@ -0,0 +1,301 @@
+package hw1;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import hw4.BufferPool;
+import hw4.Permissions;
+
+/**
+ * Sorts a table that may be much larger than memory. The table is read
+ * through the BufferPool, memoryPages pages at a time; each chunk is sorted in
+ * memory and written to a temporary heap file (a run). Runs are then merged
+ * with a loser tree, at most fanIn runs at a time, in as many passes as
+ * needed. A table that fits in one chunk is sorted without spilling.
+ * <p>
+ * Run generation can use several threads: the caller reads pages while
+ * workers sort and write the previous chunks. At most numThreads chunks are
+ * in flight, so memory use is bounded by about numThreads * memoryPages pages
+ * during run generation and fanIn pages during merging.
+ */
+public class ExternalSort {
+	public static final int DEFAULT_MEMORY_PAGES = 256;
+	public static final int DEFAULT_FAN_IN = 64;
+
+	private int tableId;
+	private Comparator<Tuple> comparator;
+	private int memoryPages;
+	private int fanIn;
+	private int numThreads;
+
+	public ExternalSort(int tableId, int field, boolean ascending) {
+		this(tableId, new int[] { field }, new boolean[] { ascending }, DEFAULT_MEMORY_PAGES, DEFAULT_FAN_IN, 1);
+	}
+
+	/**
+	 * @param tableId     the table to sort
+	 * @param fields      the sort fields, most significant first
+	 * @param ascending   the direction of each sort field
+	 * @param memoryPages the number of pages sorted in memory per run
+	 * @param fanIn       the maximum number of runs merged at once, at least 2
+	 * @param numThreads  the number of threads sorting and writing runs
+	 */
+	public ExternalSort(int tableId, int[] fields, boolean[] ascending, int memoryPages, int fanIn,
+			int numThreads) {
+		if (memoryPages < 1 || fanIn < 2 || numThreads < 1) {
+			throw new IllegalArgumentException();
+		}
+		this.tableId = tableId;
+		this.comparator = new TupleComparator(fields, ascending);
+		this.memoryPages = memoryPages;
+		this.fanIn = fanIn;
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Sorts the table and returns all of its tuples in order.
+	 *
+	 * @param tid the transaction reading the table; it keeps its read locks
+	 */
+	public ArrayList<Tuple> execute(int tid) throws Exception {
+		ArrayList<Tuple> result = new ArrayList<>();
+		execute(tid, result::add);
+		return result;
+	}
+
+	/**
+	 * Sorts the table, passing the tuples to the consumer in order.
+	 *
+	 * @param tid the transaction reading the table; it keeps its read locks
+	 */
+	public void execute(int tid, Consumer<Tuple> out) throws Exception {
+		HeapFile hf = Database.getCatalog().getHeapFile(this.tableId);
+		BufferPool bp = Database.getBufferPool();
+		ArrayList<File> runs = new ArrayList<>();
+		ExecutorService pool = Executors.newFixedThreadPool(this.numThreads);
+		ArrayDeque<Future<File>> pending = new ArrayDeque<>();
+		try {
+			ArrayList<Tuple> chunk = new ArrayList<>();
+			int numPages = hf.getNumPages();
+			for (int pid = 0; pid < numPages; pid++) {
+				bp.getPage(tid, this.tableId, pid, Permissions.READ_ONLY).iterator().forEachRemaining(chunk::add);
+				if ((pid + 1) % this.memoryPages != 0 || pid + 1 == numPages) {
+					continue;
+				}
+				ArrayList<Tuple> full = chunk;
+				pending.add(pool.submit(() -> writeRun(full, hf.getLayout(), this.comparator)));
+				chunk = new ArrayList<>();
+				if (pending.size() >= this.numThreads) {
+					runs.add(await(pending.poll()));
+				}
+			}
+			if (pending.isEmpty() && runs.isEmpty()) {
+				// everything fits in memory
+				chunk.sort(this.comparator);
+				chunk.forEach(out);
+				return;
+			}
+			if (!chunk.isEmpty()) {
+				ArrayList<Tuple> last = chunk;
+				pending.add(pool.submit(() -> writeRun(last, hf.getLayout(), this.comparator)));
+			}
+			while (!pending.isEmpty()) {
+				runs.add(await(pending.poll()));
+			}
+			pool.shutdown();
+			mergeRuns(runs, hf.getLayout(), this.comparator, this.fanIn, out);
+		} finally {
+			pool.shutdownNow();
+			for (Future<File> f : pending) {
+				try {
+					f.get().delete();
+				} catch (Exception e) {
+				}
+			}
+			delete(runs);
+		}
+	}
+
+	/* sorts the tuples and writes them to a new temporary heap file */
+	static File writeRun(ArrayList<Tuple> tuples, PageLayout layout, Comparator<Tuple> comparator)
+			throws IOException {
+		tuples.sort(comparator);
+		File run = File.createTempFile("sort", ".dat");
+		PageWriter writer = new PageWriter(run, layout);
+		try {
+			for (Tuple t : tuples) {
+				writer.add(t);
+			}
+		} finally {
+			writer.close();
+		}
+		return run;
+	}
+
+	/*
+	 * merges sorted runs into out, in passes of at most fanIn runs until one pass
+	 * can produce the output. Deletes the runs and the intermediate ones, also
+	 * when the merge fails
+	 */
+	static void mergeRuns(List<File> runs, PageLayout layout, Comparator<Tuple> comparator, int fanIn,
+			Consumer<Tuple> out) throws IOException {
+		// the output runs of the current merge pass
+		ArrayList<File> merged = new ArrayList<>();
+		try {
+			while (runs.size() > fanIn) {
+				for (int i = 0; i < runs.size(); i += fanIn) {
+					File run = File.createTempFile("sort", ".dat");
+					merged.add(run);
+					PageWriter writer = new PageWriter(run, layout);
+					try {
+						merge(runs.subList(i, Math.min(runs.size(), i + fanIn)), layout.getTupleDesc(), comparator,
+								t -> {
+									try {
+										writer.add(t);
+									} catch (IOException e) {
+										throw new RuntimeException(e);
+									}
+								});
+					} finally {
+						writer.close();
+					}
+				}
+				delete(runs);
+				runs = merged;
+				merged = new ArrayList<>();
+			}
+			merge(runs, layout.getTupleDesc(), comparator, out);
+		} finally {
+			delete(runs);
+			delete(merged);
+		}
+	}
+
+	/* k-way merge of sorted runs with a loser tree */
+	private static void merge(List<File> files, TupleDesc td, Comparator<Tuple> comparator, Consumer<Tuple> out) {
+		int k = files.size();
+		RunReader[] runs = new RunReader[k];
+		Tuple[] heads = new Tuple[k];
+		for (int i = 0; i < k; i++) {
+			runs[i] = new RunReader(new HeapFile(files.get(i), td));
+			heads[i] = runs[i].next();
+		}
+		LoserTree tree = new LoserTree(heads, comparator);
+		int winner;
+		while (heads[winner = tree.winner()] != null) {
+			out.accept(heads[winner]);
+			heads[winner] = runs[winner].next();
+			tree.replay(winner);
+		}
+	}
+
+	/**
+	 * A tournament tree over the heads of k runs. Each internal node keeps the
+	 * loser of the match played there, so replacing the winner's head only
+	 * replays the log2(k) matches on its path to the root. An exhausted run
+	 * (null head) loses against everything.
+	 */
+	private static class LoserTree {
+		private int[] losers;
+		private Tuple[] heads;
+		private Comparator<Tuple> comparator;
+		private int k;
+
+		public LoserTree(Tuple[] heads, Comparator<Tuple> comparator) {
+			this.heads = heads;
+			this.comparator = comparator;
+			this.k = heads.length;
+			this.losers = new int[this.k];
+			// index k is a sentinel that beats every run, so the first replays fill the tree
+			Arrays.fill(this.losers, this.k);
+			for (int i = this.k - 1; i >= 0; i--) {
+				replay(i);
+			}
+		}
+
+		public int winner() {
+			return this.losers[0];
+		}
+
+		public void replay(int s) {
+			for (int t = (s + this.k) / 2; t > 0; t /= 2) {
+				if (beats(this.losers[t], s)) {
+					int loser = s;
+					s = this.losers[t];
+					this.losers[t] = loser;
+				}
+			}
+			this.losers[0] = s;
+		}
+
+		/* whether run a's head comes before run b's head */
+		private boolean beats(int a, int b) {
+			if (a == this.k || b == this.k) {
+				return a == this.k;
+			}
+			if (this.heads[a] == null || this.heads[b] == null) {
+				return this.heads[b] == null && this.heads[a] != null;
+			}
+			int cmp = this.comparator.compare(this.heads[a], this.heads[b]);
+			return cmp < 0 || (cmp == 0 && a < b);
+		}
+	}
+
+	/* reads the tuples of a run page by page */
+	private static class RunReader {
+		private HeapFile hf;
+		private PageLayout layout;
+		private byte[] data;
+		private int pid;
+		private int slot;
+
+		public RunReader(HeapFile hf) {
+			this.hf = hf;
+			this.layout = hf.getLayout();
+			this.pid = -1;
+			this.slot = this.layout.getNumSlots();
+		}
+
+		public Tuple next() {
+			while (true) {
+				for (; this.slot < this.layout.getNumSlots(); this.slot++) {
+					if (this.layout.slotOccupied(this.data, this.slot)) {
+						return this.layout.readTuple(this.data, this.pid, this.slot++);
+					}
+				}
+				if (++this.pid >= this.hf.getNumPages()) {
+					return null;
+				}
+				this.data = this.hf.readPageData(this.pid);
+				this.slot = 0;
+			}
+		}
+	}
+
+	private static File await(Future<File> run) throws IOException {
+		try {
+			return run.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private static void delete(List<File> files) {
+		for (File f : files) {
+			f.delete();
+		}
+	}
+}
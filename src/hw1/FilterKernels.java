@@ -0,0 +1,96 @@
+package hw1;
+
+/**
+ * Comparison kernels that evaluate `column[i] op operand` over an int column
+ * and produce a selection bitmap, bit i % 64 of word i / 64 being set when
+ * row i matches.
+ * <p>
+ * Each comparison is computed arithmetically from the sign of a widened
+ * subtraction rather than with a branch, and every operator has its own loop,
+ * so the loops are straight-line code over primitive arrays that the JIT can
+ * unroll and vectorize.
+ */
+public class FilterKernels {
+
+	private FilterKernels() {
+	}
+
+	/**
+	 * @return the number of longs needed for a bitmap of n rows
+	 */
+	public static int bitmapLength(int n) {
+		return (n + 63) >>> 6;
+	}
+
+	/**
+	 * Compares the first n values of the column to the operand.
+	 *
+	 * @param bitmap receives the result, at least bitmapLength(n) long
+	 * @return the number of matching rows
+	 */
+	public static int compare(int[] column, int n, RelationalOperator op, int operand, long[] bitmap) {
+		int words = bitmapLength(n);
+		long c = operand;
+		int matches = 0;
+		for (int w = 0; w < words; w++) {
+			int base = w << 6;
+			int end = Math.min(64, n - base);
+			long word = 0;
+			switch (op) {
+			case EQ:
+				for (int j = 0; j < end; j++) {
+					int x = column[base + j] ^ operand;
+					word |= (long) (((x | -x) >>> 31) ^ 1) << j;
+				}
+				break;
+			case NOTEQ:
+				for (int j = 0; j < end; j++) {
+					int x = column[base + j] ^ operand;
+					word |= (long) ((x | -x) >>> 31) << j;
+				}
+				break;
+			case GT:
+				for (int j = 0; j < end; j++) {
+					word |= ((c - column[base + j]) >>> 63) << j;
+				}
+				break;
+			case GTE:
+				for (int j = 0; j < end; j++) {
+					word |= (((column[base + j] - c) >>> 63) ^ 1) << j;
+				}
+				break;
+			case LT:
+				for (int j = 0; j < end; j++) {
+					word |= ((column[base + j] - c) >>> 63) << j;
+				}
+				break;
+			case LTE:
+				for (int j = 0; j < end; j++) {
+					word |= (((c - column[base + j]) >>> 63) ^ 1) << j;
+				}
+				break;
+			}
+			bitmap[w] = word;
+			matches += Long.bitCount(word);
+		}
+		return matches;
+	}
+
+	/**
+	 * Writes the positions of the set bits of the bitmap, in increasing order,
+	 * into a selection vector.
+	 *
+	 * @return the number of positions written
+	 */
+	public static int toSelection(long[] bitmap, int words, int[] sel) {
+		int k = 0;
+		for (int w = 0; w < words; w++) {
+			long word = bitmap[w];
+			while (word != 0) {
+				sel[k++] = (w << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+			}
+		}
+		return k;
+	}
+}
@@ -0,0 +1,361 @@
+package hw1;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Computes an aggregate of one field for each group of a heap file, grouped
+ * on an IntField or StringField. Groups live in an open-addressing table with
+ * primitive long accumulators, and rows are aggregated straight from page
+ * images without decoding them.
+ * <p>
+ * The pages are split into one contiguous range per thread; each thread
+ * aggregates its range into its own table, and the partial tables are merged
+ * at the end. If there are more than maxGroups groups, the input is instead
+ * partitioned on the hash of the group key into temporary heap files, and
+ * each partition is aggregated on its own.
+ * <p>
+ * Aggregates are accumulated in longs and returned as IntFields; a result
+ * that does not fit in an int is an ArithmeticException.
+ */
+public class HashAggregate {
+	public static final int DEFAULT_MAX_GROUPS = 1 << 20;
+
+	private static final int FANOUT = 16;
+
+	/* partitions this deep are aggregated in memory even if they have too many groups */
+	private static final int MAX_DEPTH = 4;
+
+	private HeapFile hf;
+	private int groupField;
+	private AggregateOperator op;
+	private int aggField;
+	private int maxGroups;
+	private int numThreads;
+	private TupleDesc td;
+
+	public HashAggregate(HeapFile hf, int groupField, AggregateOperator op, int aggField) {
+		this(hf, groupField, op, aggField, DEFAULT_MAX_GROUPS, 1);
+	}
+
+	/**
+	 * @param hf         the input
+	 * @param groupField the field to group on
+	 * @param op         the aggregate to compute; all but COUNT need an int field
+	 * @param aggField   the field to aggregate
+	 * @param maxGroups  the number of groups kept in memory before spilling
+	 * @param numThreads the number of threads aggregating page ranges
+	 */
+	public HashAggregate(HeapFile hf, int groupField, AggregateOperator op, int aggField, int maxGroups,
+			int numThreads) {
+		TupleDesc in = hf.getTupleDesc();
+		if (op != AggregateOperator.COUNT && in.getType(aggField) != Type.INT) {
+			throw new IllegalArgumentException(op + " requires an int field");
+		}
+		this.hf = hf;
+		this.groupField = groupField;
+		this.op = op;
+		this.aggField = aggField;
+		this.maxGroups = Math.max(1, maxGroups);
+		this.numThreads = Math.max(1, numThreads);
+		this.td = new TupleDesc(new Type[] { in.getType(groupField), Type.INT },
+				new String[] { in.getFieldName(groupField), in.getFieldName(aggField) });
+	}
+
+	/**
+	 * @return the schema of the result: the group field and the aggregate
+	 */
+	public TupleDesc getTupleDesc() {
+		return this.td;
+	}
+
+	public ArrayList<Tuple> execute() throws IOException {
+		ArrayList<Tuple> result = new ArrayList<>();
+		execute(result::add);
+		return result;
+	}
+
+	/**
+	 * Passes one tuple per group to the consumer, in no particular order.
+	 *
+	 * @throws ArithmeticException if the aggregate of a group overflows an int
+	 */
+	public void execute(Consumer<Tuple> out) throws IOException {
+		aggregate(this.hf, 0, out);
+	}
+
+	private void aggregate(HeapFile in, int depth, Consumer<Tuple> out) throws IOException {
+		int limit = depth == MAX_DEPTH ? Integer.MAX_VALUE : this.maxGroups;
+		GroupTable groups = aggregateInMemory(in, limit);
+		if (groups != null) {
+			groups.emit(out);
+			return;
+		}
+		PageLayout layout = in.getLayout();
+		int keyOffset = layout.getFieldOffset(this.groupField);
+		Type keyType = in.getTupleDesc().getType(this.groupField);
+		File[] parts = new File[FANOUT];
+		PageWriter[] writers = new PageWriter[FANOUT];
+		try {
+			try {
+				for (int i = 0; i < FANOUT; i++) {
+					parts[i] = File.createTempFile("aggregate", ".dat");
+					writers[i] = new PageWriter(parts[i], layout);
+				}
+				for (int pid = 0; pid < in.getNumPages(); pid++) {
+					byte[] data = in.readPageData(pid);
+					for (int slot = 0; slot < layout.getNumSlots(); slot++) {
+						if (layout.slotOccupied(data, slot)) {
+							int slotOffset = layout.getSlotOffset(slot);
+							int h = PageLayout.hashField(data, slotOffset + keyOffset, keyType);
+							h = (h ^ (depth * 0x9E3779B9)) * 0x85EBCA6B;
+							writers[((h ^ (h >>> 15)) & 0x7FFFFFFF) % FANOUT].add(data, slotOffset);
+						}
+					}
+				}
+			} finally {
+				for (PageWriter writer : writers) {
+					if (writer != null) {
+						writer.close();
+					}
+				}
+			}
+			for (int i = 0; i < FANOUT; i++) {
+				aggregate(new HeapFile(parts[i], in.getTupleDesc()), depth + 1, out);
+				parts[i].delete();
+			}
+		} finally {
+			for (File part : parts) {
+				if (part != null) {
+					part.delete();
+				}
+			}
+		}
+	}
+
+	/* aggregates the file in parallel, or returns null if there are more than `limit` groups */
+	private GroupTable aggregateInMemory(HeapFile in, int limit) throws IOException {
+		int numPages = in.getNumPages();
+		int threads = Math.min(this.numThreads, Math.max(1, numPages));
+		if (threads == 1) {
+			return aggregateRange(in, 0, numPages, limit);
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			ArrayList<Future<GroupTable>> partials = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				int start = (int) ((long) numPages * i / threads);
+				int end = (int) ((long) numPages * (i + 1) / threads);
+				partials.add(pool.submit(() -> aggregateRange(in, start, end, limit)));
+			}
+			GroupTable result = null;
+			for (Future<GroupTable> partial : partials) {
+				GroupTable groups = partial.get();
+				if (groups == null) {
+					return null;
+				}
+				if (result == null) {
+					result = groups;
+				} else if (!result.merge(groups, limit)) {
+					return null;
+				}
+			}
+			return result;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private GroupTable aggregateRange(HeapFile in, int start, int end, int limit) {
+		PageLayout layout = in.getLayout();
+		boolean intKeys = in.getTupleDesc().getType(this.groupField) == Type.INT;
+		boolean intValues = in.getTupleDesc().getType(this.aggField) == Type.INT;
+		int keyOffset = layout.getFieldOffset(this.groupField);
+		int valueOffset = layout.getFieldOffset(this.aggField);
+		GroupTable groups = new GroupTable(intKeys);
+		for (int pid = start; pid < end; pid++) {
+			byte[] data = in.readPageData(pid);
+			for (int slot = 0; slot < layout.getNumSlots(); slot++) {
+				if (!layout.slotOccupied(data, slot)) {
+					continue;
+				}
+				int slotOffset = layout.getSlotOffset(slot);
+				int g = groups.find(data, slotOffset + keyOffset);
+				long value = intValues ? PageLayout.readInt(data, slotOffset + valueOffset) : 0;
+				groups.add(g, 1, value, value, value);
+				if (groups.size() > limit) {
+					return null;
+				}
+			}
+		}
+		return groups;
+	}
+
+	/**
+	 * Open-addressing table from group keys to accumulators. Int keys are kept in
+	 * an int array and string keys as their encoded bytes.
+	 */
+	private class GroupTable {
+		private boolean intKeys;
+		private boolean[] used;
+		private int[] ints;
+		private byte[][] strings;
+		private int[] hashes;
+		private long[] count;
+		private long[] sum;
+		private long[] min;
+		private long[] max;
+		private int mask;
+		private int size;
+
+		public GroupTable(boolean intKeys) {
+			this.intKeys = intKeys;
+			allocate(64);
+		}
+
+		public int size() {
+			return this.size;
+		}
+
+		/* the slot of the group of an encoded key, added if it is new */
+		public int find(byte[] data, int offset) {
+			int h = PageLayout.hashField(data, offset, this.intKeys ? Type.INT : Type.STRING);
+			int i = mix(h) & this.mask;
+			while (this.used[i]) {
+				if (this.hashes[i] == h && (this.intKeys || sameString(this.strings[i], data, offset))) {
+					return i;
+				}
+				i = (i + 1) & this.mask;
+			}
+			this.used[i] = true;
+			this.hashes[i] = h;
+			if (this.intKeys) {
+				this.ints[i] = h;
+			} else {
+				this.strings[i] = new byte[data[offset] + 1];
+				System.arraycopy(data, offset, this.strings[i], 0, this.strings[i].length);
+			}
+			this.min[i] = Long.MAX_VALUE;
+			this.max[i] = Long.MIN_VALUE;
+			if (++this.size > this.used.length / 2) {
+				rehash();
+				return find(data, offset);
+			}
+			return i;
+		}
+
+		public void add(int g, long count, long sum, long min, long max) {
+			this.count[g] += count;
+			this.sum[g] += sum;
+			this.min[g] = Math.min(this.min[g], min);
+			this.max[g] = Math.max(this.max[g], max);
+		}
+
+		/* adds the groups of another table, false if that makes more than `limit` groups */
+		public boolean merge(GroupTable other, int limit) {
+			for (int i = 0; i < other.used.length; i++) {
+				if (other.used[i]) {
+					int g = find(other.intKeys ? intKey(other.ints[i]) : other.strings[i], 0);
+					add(g, other.count[i], other.sum[i], other.min[i], other.max[i]);
+					if (this.size > limit) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		public void emit(Consumer<Tuple> out) {
+			for (int i = 0; i < this.used.length; i++) {
+				if (!this.used[i]) {
+					continue;
+				}
+				Tuple t = new Tuple(HashAggregate.this.td);
+				t.setField(0, this.intKeys ? new IntField(this.ints[i]) : new StringField(this.strings[i]));
+				t.setField(1, new IntField(Math.toIntExact(result(i))));
+				out.accept(t);
+			}
+		}
+
+		private long result(int i) {
+			switch (HashAggregate.this.op) {
+			case COUNT:
+				return this.count[i];
+			case SUM:
+				return this.sum[i];
+			case AVG:
+				return this.sum[i] / this.count[i];
+			case MIN:
+				return this.min[i];
+			case MAX:
+				return this.max[i];
+			}
+			return 0;
+		}
+
+		private void rehash() {
+			boolean[] used = this.used;
+			int[] ints = this.ints;
+			byte[][] strings = this.strings;
+			long[] count = this.count;
+			long[] sum = this.sum;
+			long[] min = this.min;
+			long[] max = this.max;
+			allocate(used.length * 2);
+			for (int i = 0; i < used.length; i++) {
+				if (used[i]) {
+					int g = find(this.intKeys ? intKey(ints[i]) : strings[i], 0);
+					this.count[g] = count[i];
+					this.sum[g] = sum[i];
+					this.min[g] = min[i];
+					this.max[g] = max[i];
+				}
+			}
+		}
+
+		private void allocate(int capacity) {
+			this.used = new boolean[capacity];
+			this.ints = this.intKeys ? new int[capacity] : null;
+			this.strings = this.intKeys ? null : new byte[capacity][];
+			this.hashes = new int[capacity];
+			this.count = new long[capacity];
+			this.sum = new long[capacity];
+			this.min = new long[capacity];
+			this.max = new long[capacity];
+			this.mask = capacity - 1;
+			this.size = 0;
+		}
+	}
+
+	private static byte[] intKey(int key) {
+		return new IntField(key).toByteArray();
+	}
+
+	private static boolean sameString(byte[] key, byte[] data, int offset) {
+		if (key[0] != data[offset]) {
+			return false;
+		}
+		for (int i = 1; i < key.length; i++) {
+			if (key[i] != data[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int mix(int h) {
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
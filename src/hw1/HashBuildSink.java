@@ -0,0 +1,99 @@
+package hw1;
+
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * A pipeline breaker that builds the hash table of a hash join from the rows
+ * pushed into it. Each worker's fork builds its own table, keyed like HashJoin
+ * by the int value of IntField keys and by the hash of StringField keys, and
+ * the tables are combined when the forks are merged. Once the build pipeline
+ * has run, a pipeline over the probe input pushes into a HashProbeSink.
+ * <p>
+ * The whole build input is kept in memory; use HashJoin for build inputs that
+ * need to be partitioned.
+ */
+public class HashBuildSink implements PipelineSink {
+
+	private int field;
+	private TupleDesc td; // known once the first batch has been consumed
+	private File dictionary; // of the join field, if it is dictionary encoded
+	private IntObjectMap<ArrayList<Tuple>> table;
+
+	/**
+	 * @param field the join field of the rows pushed into the sink
+	 */
+	public HashBuildSink(int field) {
+		this.field = field;
+		this.table = new IntObjectMap<>();
+	}
+
+	public void consume(RowBatch batch) {
+		this.td = batch.getTupleDesc();
+		int[] sel = batch.getSelection();
+		for (int i = 0; i < batch.numSelected(); i++) {
+			Tuple t = batch.getTuple(sel[i]);
+			add(hash(t.getField(this.field)), t);
+		}
+	}
+
+	public PipelineSink fork() {
+		HashBuildSink fork = new HashBuildSink(this.field);
+		fork.dictionary = this.dictionary;
+		return fork;
+	}
+
+	public void open(HeapFile source, int[] fields) {
+		this.dictionary = DictionaryFile.dictionaryOf(source, fields[this.field]);
+	}
+
+	public void merge(PipelineSink other) {
+		HashBuildSink o = (HashBuildSink) other;
+		if (o.td == null) {
+			return;
+		}
+		this.td = o.td;
+		for (int h : o.table.keys()) {
+			for (Tuple t : o.table.get(h)) {
+				add(h, t);
+			}
+		}
+	}
+
+	public int getField() {
+		return this.field;
+	}
+
+	/**
+	 * @return the dictionary file of the join field, or null if it is not
+	 *         dictionary encoded
+	 */
+	File getDictionary() {
+		return this.dictionary;
+	}
+
+	/**
+	 * @return the schema of the build rows, or null if no row has been consumed
+	 */
+	public TupleDesc getTupleDesc() {
+		return this.td;
+	}
+
+	/* the build rows whose key has the given hash; string keys must be compared */
+	ArrayList<Tuple> get(int h) {
+		return this.table.get(h);
+	}
+
+	private void add(int h, Tuple t) {
+		ArrayList<Tuple> matches = this.table.get(h);
+		if (matches == null) {
+			matches = new ArrayList<>(1);
+			this.table.put(h, matches);
+		}
+		matches.add(t);
+	}
+
+	private static int hash(Field key) {
+		return key.getType() == Type.INT ? ((IntField) key).getValue() : key.hashCode();
+	}
+}
@@ -0,0 +1,419 @@
+package hw1;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+import hw4.BufferPool;
+import hw4.Permissions;
+
+/**
+ * A linear hash index over one field of a HeapFile, for equality lookups. Keys
+ * are hashed with Field.hashCode and each bucket is a chain of HashPages read
+ * and written through the BufferPool under the locks of the calling
+ * transaction, like the pages of a BTreeFile.
+ * <p>
+ * The file grows one bucket at a time: whenever an insert has to add an
+ * overflow page to a bucket, the bucket at the split pointer is split in two,
+ * so no insert ever rehashes the whole index. The directory from bucket
+ * numbers to their first page is kept in directory pages listed on the meta
+ * page.
+ */
+public class HashIndexFile extends HeapFile implements Index {
+
+	private static final int META_PAGE = 0;
+
+	/* positions of the meta page values */
+	private static final int LEVEL = 0;
+	private static final int SPLIT = 1;
+	private static final int INITIAL_BUCKETS = 2;
+	private static final int NUM_DIRECTORIES = 3;
+	private static final int DIRECTORIES = 4;
+
+	/* fraction of each bucket page filled by build */
+	private static final double FILL_FACTOR = 0.75;
+
+	private HeapFile table;
+	private int keyField;
+	private Type keyType;
+	private int directorySize;
+
+	/**
+	 * Opens an index file that has been created with build.
+	 *
+	 * @param f        the index file
+	 * @param table    the indexed table
+	 * @param keyField the indexed field of the table
+	 */
+	public HashIndexFile(File f, HeapFile table, int keyField) {
+		super(f, new TupleDesc(new Type[] { table.getTupleDesc().getType(keyField), Type.INT, Type.INT },
+				new String[] { "key", "pid", "slot" }));
+		this.table = table;
+		this.keyField = keyField;
+		this.keyType = table.getTupleDesc().getType(keyField);
+		this.directorySize = new HashPage(0, 0, this.keyType, HashPage.DIRECTORY).getCapacity();
+	}
+
+	public HeapFile getTable() {
+		return this.table;
+	}
+
+	public int getKeyField() {
+		return this.keyField;
+	}
+
+	/** Index pages have no zone map */
+	@Override
+	public ZoneMap getZoneMap() {
+		return null;
+	}
+
+	@Override
+	public HeapPage readPage(int id) {
+		return new HashPage(id, readPageData(id), this.getId(), this.keyType);
+	}
+
+	static int hash(Field key) {
+		int h = key.hashCode();
+		return (h ^ (h >>> 16)) & Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Builds the index of a table with enough buckets, a power of two, to fill
+	 * them to FILL_FACTOR. The entries are sorted with a SortSink, which keeps
+	 * at most ExternalSort.DEFAULT_MEMORY_PAGES pages of them in memory and
+	 * spills the rest to sorted runs, and each bucket is written as its entries
+	 * stream out of the merge. Any existing content of f is replaced, so this
+	 * must not run while the BufferPool holds pages of the index.
+	 */
+	public static HashIndexFile build(File f, HeapFile table, int keyField) throws IOException {
+		HashIndexFile index = new HashIndexFile(f, table, keyField);
+		int tableId = index.getId();
+		int bucketSize = new HashPage(0, tableId, index.keyType, HashPage.BUCKET).getCapacity();
+
+		/*
+		 * Entries are sorted on their hash with the bits reversed, so that those
+		 * of a bucket, which share the low bits of the hash, are contiguous
+		 * whatever the number of buckets turns out to be.
+		 */
+		TupleDesc entryDesc = new TupleDesc(new Type[] { Type.INT, index.keyType, Type.INT, Type.INT },
+				new String[] { "order", "key", "pid", "slot" });
+		SortSink sorter = new SortSink(new int[] { 0 }, new boolean[] { true }, ExternalSort.DEFAULT_MEMORY_PAGES,
+				ExternalSort.DEFAULT_FAN_IN);
+		PageLayout layout = table.getLayout();
+		int numEntries = 0;
+		for (int pid = 0; pid < table.getNumPages(); pid++) {
+			byte[] data = table.readPageData(pid);
+			for (int slot = 0; slot < layout.getNumSlots(); slot++) {
+				if (layout.slotOccupied(data, slot)) {
+					Field key = layout.readTuple(data, pid, slot).getField(keyField);
+					Tuple entry = new Tuple(entryDesc);
+					entry.setField(0, new IntField(Integer.reverse(hash(key)) >>> 1));
+					entry.setField(1, key);
+					entry.setField(2, new IntField(pid));
+					entry.setField(3, new IntField(slot));
+					sorter.add(entry);
+					numEntries++;
+				}
+			}
+		}
+		int numBuckets = 1;
+		while (numBuckets * bucketSize * FILL_FACTOR < numEntries) {
+			numBuckets *= 2;
+		}
+		int numDirectories = (numBuckets + index.directorySize - 1) / index.directorySize;
+		if (DIRECTORIES + numDirectories > index.directorySize) {
+			throw new IllegalArgumentException("too many entries for a hash index");
+		}
+
+		try (RandomAccessFile out = new RandomAccessFile(f, "rw")) {
+			out.setLength(0);
+			HashPage meta = new HashPage(META_PAGE, tableId, index.keyType, HashPage.META);
+			meta.setValue(INITIAL_BUCKETS, numBuckets);
+			meta.setValue(NUM_DIRECTORIES, numDirectories);
+			HashPage[] directories = new HashPage[numDirectories];
+			for (int i = 0; i < numDirectories; i++) {
+				directories[i] = new HashPage(1 + i, tableId, index.keyType, HashPage.DIRECTORY);
+				meta.setValue(DIRECTORIES + i, 1 + i);
+			}
+			// primary pages follow the directory, overflow pages come after them
+			int firstBucket = 1 + numDirectories;
+			for (int b = 0; b < numBuckets; b++) {
+				directories[b / index.directorySize].setValue(b % index.directorySize, firstBucket + b);
+			}
+			BucketWriter buckets = new BucketWriter(out, index, firstBucket, numBuckets);
+			try {
+				sorter.output(buckets);
+				buckets.finish();
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			for (HashPage directory : directories) {
+				write(out, directory);
+			}
+			write(out, meta);
+		}
+		return index;
+	}
+
+	/*
+	 * writes the entries of build, bucket by bucket, to the primary page of
+	 * each bucket and its overflow pages
+	 */
+	private static class BucketWriter implements Consumer<Tuple> {
+		private RandomAccessFile out;
+		private HashIndexFile index;
+		private int firstBucket;
+		private boolean[] written;
+		private int bucket = -1; // the bucket being filled
+		private HashPage page;
+		private int nextPid;
+
+		public BucketWriter(RandomAccessFile out, HashIndexFile index, int firstBucket, int numBuckets) {
+			this.out = out;
+			this.index = index;
+			this.firstBucket = firstBucket;
+			this.written = new boolean[numBuckets];
+			this.nextPid = firstBucket + numBuckets;
+		}
+
+		public void accept(Tuple e) {
+			Field key = e.getField(1);
+			int b = hash(key) & (this.written.length - 1);
+			if (b != this.bucket) {
+				writePage();
+				this.bucket = b;
+				this.written[b] = true;
+				this.page = newPage(this.firstBucket + b);
+			} else if (this.page.isFull()) {
+				this.page.setNext(this.nextPid);
+				writePage();
+				this.page = newPage(this.nextPid++);
+			}
+			this.page.addEntry(key, ((IntField) e.getField(2)).getValue(), ((IntField) e.getField(3)).getValue());
+		}
+
+		/* writes the page being filled and an empty primary page for every bucket without entries */
+		public void finish() {
+			writePage();
+			for (int b = 0; b < this.written.length; b++) {
+				if (!this.written[b]) {
+					this.page = newPage(this.firstBucket + b);
+					writePage();
+				}
+			}
+		}
+
+		private HashPage newPage(int pid) {
+			return new HashPage(pid, this.index.getId(), this.index.keyType, HashPage.BUCKET);
+		}
+
+		private void writePage() {
+			if (this.page == null) {
+				return;
+			}
+			try {
+				write(this.out, this.page);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			this.page = null;
+		}
+	}
+
+	private static void write(RandomAccessFile out, HashPage page) throws IOException {
+		out.seek((long) page.getId() * PAGE_SIZE);
+		out.write(page.getPageData());
+	}
+
+	/**
+	 * Adds the entry of a tuple to its bucket. If every page of the bucket is
+	 * full an overflow page is added and the next bucket in line is split.
+	 */
+	public void insert(int tid, Field key, int pid, int slot) throws Exception {
+		HashPage meta = readNode(tid, META_PAGE);
+		int page = getBucketPage(tid, meta, getBucket(meta, key));
+		while (true) {
+			HashPage bucket = readNode(tid, page);
+			if (!bucket.isFull()) {
+				writeNode(tid, page).addEntry(key, pid, slot);
+				return;
+			}
+			if (bucket.getNext() == -1) {
+				break;
+			}
+			page = bucket.getNext();
+		}
+		HashPage overflow = allocateNode(tid);
+		overflow.addEntry(key, pid, slot);
+		writeNode(tid, page).setNext(overflow.getId());
+		split(tid);
+	}
+
+	/**
+	 * Removes the entry of a tuple from the index. Buckets are never merged.
+	 *
+	 * @return whether the entry was found
+	 */
+	public boolean delete(int tid, Field key, int pid, int slot) throws Exception {
+		HashPage meta = readNode(tid, META_PAGE);
+		int page = getBucketPage(tid, meta, getBucket(meta, key));
+		while (page != -1) {
+			HashPage bucket = readNode(tid, page);
+			for (int i = 0; i < bucket.getCount(); i++) {
+				if (bucket.getEntryPid(i) == pid && bucket.getEntrySlot(i) == slot && bucket.getKey(i).equals(key)) {
+					writeNode(tid, page).deleteEntry(i);
+					return true;
+				}
+			}
+			page = bucket.getNext();
+		}
+		return false;
+	}
+
+	/**
+	 * Passes the entries with the given key to the consumer, reading only the
+	 * pages of one bucket.
+	 */
+	public void lookup(int tid, Field key, EntryConsumer consumer) throws Exception {
+		HashPage meta = readNode(tid, META_PAGE);
+		int page = getBucketPage(tid, meta, getBucket(meta, key));
+		while (page != -1) {
+			HashPage bucket = readNode(tid, page);
+			for (int i = 0; i < bucket.getCount(); i++) {
+				if (bucket.getKey(i).equals(key)) {
+					consumer.accept(key, bucket.getEntryPid(i), bucket.getEntrySlot(i));
+				}
+			}
+			page = bucket.getNext();
+		}
+	}
+
+	/**
+	 * Returns the tuples with the given key. Only the pages that hold them are
+	 * read from the table, with read locks.
+	 */
+	public ArrayList<Tuple> find(int tid, Field key) throws Exception {
+		ArrayList<long[]> rids = new ArrayList<>();
+		lookup(tid, key, (k, pid, slot) -> rids.add(new long[] { pid, slot }));
+		BufferPool bp = Database.getBufferPool();
+		ArrayList<Tuple> tuples = new ArrayList<>(rids.size());
+		for (long[] rid : rids) {
+			HeapPage hp = bp.getPage(tid, this.table.getId(), (int) rid[0], Permissions.READ_ONLY);
+			Tuple t = hp.getTuple((int) rid[1]);
+			if (t != null) {
+				tuples.add(t);
+			}
+		}
+		return tuples;
+	}
+
+	/*
+	 * Splits the bucket at the split pointer into itself and a new bucket at the
+	 * end of the directory, reusing the pages of its chain.
+	 */
+	private void split(int tid) throws Exception {
+		HashPage meta = writeNode(tid, META_PAGE);
+		int level = meta.getValue(LEVEL);
+		int split = meta.getValue(SPLIT);
+		int numBuckets = meta.getValue(INITIAL_BUCKETS) << level;
+
+		ArrayList<HashPage> pages = new ArrayList<>();
+		ArrayList<Tuple> entries = new ArrayList<>();
+		for (int page = getBucketPage(tid, meta, split); page != -1;) {
+			HashPage bucket = writeNode(tid, page);
+			for (int i = 0; i < bucket.getCount(); i++) {
+				Tuple e = new Tuple(this.getTupleDesc());
+				e.setField(0, bucket.getKey(i));
+				e.setPid(bucket.getEntryPid(i));
+				e.setId(bucket.getEntrySlot(i));
+				entries.add(e);
+			}
+			bucket.clear();
+			pages.add(bucket);
+			page = bucket.getNext();
+			bucket.setNext(-1);
+		}
+		HashPage primary = allocateNode(tid);
+		setBucketPage(tid, meta, split + numBuckets, primary.getId());
+
+		// entries that stay are packed into the front of the old chain, its
+		// remaining pages become overflow pages of the new bucket
+		HashPage[] last = { pages.get(0), primary };
+		int used = 1;
+		for (Tuple e : entries) {
+			int target = (hash(e.getField(0)) & (2 * numBuckets - 1)) == split ? 0 : 1;
+			if (last[target].isFull()) {
+				HashPage page = used < pages.size() ? pages.get(used++) : allocateNode(tid);
+				last[target].setNext(page.getId());
+				last[target] = page;
+			}
+			last[target].addEntry(e.getField(0), e.getPid(), e.getId());
+		}
+		for (; used < pages.size(); used++) {
+			last[1].setNext(pages.get(used).getId());
+			last[1] = pages.get(used);
+		}
+
+		if (split + 1 == numBuckets) {
+			meta.setValue(LEVEL, level + 1);
+			meta.setValue(SPLIT, 0);
+		} else {
+			meta.setValue(SPLIT, split + 1);
+		}
+	}
+
+	private int getBucket(HashPage meta, Field key) {
+		int h = hash(key);
+		int numBuckets = meta.getValue(INITIAL_BUCKETS) << meta.getValue(LEVEL);
+		int bucket = h & (numBuckets - 1);
+		if (bucket < meta.getValue(SPLIT)) {
+			bucket = h & (2 * numBuckets - 1);
+		}
+		return bucket;
+	}
+
+	private int getBucketPage(int tid, HashPage meta, int bucket) throws Exception {
+		int directory = meta.getValue(DIRECTORIES + bucket / this.directorySize);
+		return readNode(tid, directory).getValue(bucket % this.directorySize);
+	}
+
+	private void setBucketPage(int tid, HashPage meta, int bucket, int pid) throws Exception {
+		int i = bucket / this.directorySize;
+		if (i == meta.getValue(NUM_DIRECTORIES)) {
+			if (DIRECTORIES + i == this.directorySize) {
+				throw new IllegalStateException("hash index directory is full");
+			}
+			HashPage directory = allocateNode(tid, HashPage.DIRECTORY);
+			meta.setValue(DIRECTORIES + i, directory.getId());
+			meta.setValue(NUM_DIRECTORIES, i + 1);
+		}
+		writeNode(tid, meta.getValue(DIRECTORIES + i)).setValue(bucket % this.directorySize, pid);
+	}
+
+	private HashPage readNode(int tid, int pid) throws Exception {
+		return (HashPage) Database.getBufferPool().getPage(tid, this.getId(), pid, Permissions.READ_ONLY);
+	}
+
+	/* Takes a write lock on the page and marks it dirty before it is changed */
+	private HashPage writeNode(int tid, int pid) throws Exception {
+		BufferPool bp = Database.getBufferPool();
+		HashPage node = (HashPage) bp.getPage(tid, this.getId(), pid, Permissions.READ_WRITE);
+		bp.markDirty(tid, this.getId(), pid);
+		return node;
+	}
+
+	private HashPage allocateNode(int tid) throws Exception {
+		return allocateNode(tid, HashPage.BUCKET);
+	}
+
+	/* Appends an empty page to the file and takes a write lock on it */
+	private HashPage allocateNode(int tid, byte kind) throws Exception {
+		int pid = getNumPages();
+		writePage(new HashPage(pid, this.getId(), this.keyType, kind));
+		return writeNode(tid, pid);
+	}
+}
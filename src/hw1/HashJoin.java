@@ -0,0 +1,246 @@
+package hw1;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Equi-join of two heap files using a hash table built on the smaller input.
+ * The table is keyed by the int value of IntField keys and by the hash of
+ * StringField keys. Probe keys are hashed and compared in the page image, so
+ * probe rows are only decoded when their key has a match.
+ * <p>
+ * When the build input is larger than the memory budget, both inputs are
+ * split into partitions on the hash of the join key and spilled to temporary
+ * heap files (grace hash join). Each pair of partitions is then joined
+ * recursively, with a different hash at each level.
+ * <p>
+ * A dictionary-encoded field of a DictionaryFile can only be joined with a
+ * field encoded by the same dictionary, since codes of different dictionaries
+ * are unrelated.
+ */
+public class HashJoin {
+	private static final int MAX_FANOUT = 64;
+
+	/* partitions this deep are joined in memory even if they are too big, e.g. skew */
+	private static final int MAX_DEPTH = 4;
+
+	private HeapFile left;
+	private int leftField;
+	private HeapFile right;
+	private int rightField;
+	private int memoryPages;
+	private TupleDesc td;
+
+	/**
+	 * @param left        the left input
+	 * @param leftField   the join field of the left input
+	 * @param right       the right input
+	 * @param rightField  the join field of the right input
+	 * @param memoryPages the largest build input, in pages, joined in memory
+	 */
+	public HashJoin(HeapFile left, int leftField, HeapFile right, int rightField, int memoryPages) {
+		if (left.getTupleDesc().getType(leftField) != right.getTupleDesc().getType(rightField)) {
+			throw new IllegalArgumentException("join fields have different types");
+		}
+		if (!Objects.equals(DictionaryFile.dictionaryOf(left, leftField),
+				DictionaryFile.dictionaryOf(right, rightField))) {
+			throw new IllegalArgumentException("join fields are not encoded by the same dictionary");
+		}
+		this.left = left;
+		this.leftField = leftField;
+		this.right = right;
+		this.rightField = rightField;
+		this.memoryPages = Math.max(1, memoryPages);
+		this.td = TupleDesc.combine(left.getTupleDesc(), right.getTupleDesc());
+	}
+
+	/**
+	 * @return the schema of the result, the left fields followed by the right
+	 *         fields
+	 */
+	public TupleDesc getTupleDesc() {
+		return this.td;
+	}
+
+	/**
+	 * Runs the join and returns all of the joined tuples.
+	 */
+	public ArrayList<Tuple> execute() throws IOException {
+		ArrayList<Tuple> result = new ArrayList<>();
+		execute(result::add);
+		return result;
+	}
+
+	/**
+	 * Runs the join, passing each joined tuple to the consumer as soon as it is
+	 * produced.
+	 */
+	public void execute(Consumer<Tuple> out) throws IOException {
+		join(this.left, this.right, 0, out);
+	}
+
+	private void join(HeapFile l, HeapFile r, int depth, Consumer<Tuple> out) throws IOException {
+		boolean buildLeft = l.getNumPages() <= r.getNumPages();
+		HeapFile build = buildLeft ? l : r;
+		if (build.getNumPages() <= this.memoryPages || depth == MAX_DEPTH) {
+			joinInMemory(l, r, buildLeft, out);
+			return;
+		}
+
+		int fanout = Math.min(MAX_FANOUT, 2 * ((build.getNumPages() + this.memoryPages - 1) / this.memoryPages));
+		File[] leftParts = partition(l, this.leftField, fanout, depth);
+		File[] rightParts = null;
+		try {
+			rightParts = partition(r, this.rightField, fanout, depth);
+			for (int i = 0; i < fanout; i++) {
+				join(new HeapFile(leftParts[i], l.getTupleDesc()), new HeapFile(rightParts[i], r.getTupleDesc()),
+						depth + 1, out);
+				leftParts[i].delete();
+				rightParts[i].delete();
+			}
+		} finally {
+			delete(leftParts);
+			delete(rightParts);
+		}
+	}
+
+	/* split the file into `fanout` temporary heap files on the hash of the key */
+	private File[] partition(HeapFile hf, int field, int fanout, int depth) throws IOException {
+		PageLayout layout = hf.getLayout();
+		Type type = hf.getTupleDesc().getType(field);
+		int fieldOffset = layout.getFieldOffset(field);
+		File[] parts = new File[fanout];
+		PageWriter[] writers = new PageWriter[fanout];
+		try {
+			for (int i = 0; i < fanout; i++) {
+				parts[i] = File.createTempFile("join", ".dat");
+				writers[i] = new PageWriter(parts[i], layout);
+			}
+			for (int pid = 0; pid < hf.getNumPages(); pid++) {
+				byte[] data = hf.readPageData(pid);
+				for (int slot = 0; slot < layout.getNumSlots(); slot++) {
+					if (layout.slotOccupied(data, slot)) {
+						int slotOffset = layout.getSlotOffset(slot);
+						int h = hash(data, slotOffset + fieldOffset, type, depth);
+						writers[(h & 0x7FFFFFFF) % fanout].add(data, slotOffset);
+					}
+				}
+			}
+		} catch (IOException e) {
+			delete(parts);
+			throw e;
+		} finally {
+			for (PageWriter writer : writers) {
+				if (writer != null) {
+					writer.close();
+				}
+			}
+		}
+		return parts;
+	}
+
+	private void joinInMemory(HeapFile l, HeapFile r, boolean buildLeft, Consumer<Tuple> out) {
+		HeapFile build = buildLeft ? l : r;
+		HeapFile probe = buildLeft ? r : l;
+		int buildField = buildLeft ? this.leftField : this.rightField;
+		int probeField = buildLeft ? this.rightField : this.leftField;
+		PageLayout buildLayout = build.getLayout();
+		PageLayout probeLayout = probe.getLayout();
+		Type type = build.getTupleDesc().getType(buildField);
+
+		// string keys with the same hash share a list, so the probe compares them
+		IntObjectMap<ArrayList<Tuple>> table = new IntObjectMap<>();
+		for (int pid = 0; pid < build.getNumPages(); pid++) {
+			byte[] data = build.readPageData(pid);
+			for (int slot = 0; slot < buildLayout.getNumSlots(); slot++) {
+				if (!buildLayout.slotOccupied(data, slot)) {
+					continue;
+				}
+				Tuple t = buildLayout.readTuple(data, pid, slot);
+				Field key = t.getField(buildField);
+				int h = type == Type.INT ? ((IntField) key).getValue() : key.hashCode();
+				ArrayList<Tuple> matches = table.get(h);
+				if (matches == null) {
+					matches = new ArrayList<>(1);
+					table.put(h, matches);
+				}
+				matches.add(t);
+			}
+		}
+		if (table.isEmpty()) {
+			return;
+		}
+
+		int fieldOffset = probeLayout.getFieldOffset(probeField);
+		for (int pid = 0; pid < probe.getNumPages(); pid++) {
+			byte[] data = probe.readPageData(pid);
+			for (int slot = 0; slot < probeLayout.getNumSlots(); slot++) {
+				if (!probeLayout.slotOccupied(data, slot)) {
+					continue;
+				}
+				int offset = probeLayout.getSlotOffset(slot) + fieldOffset;
+				ArrayList<Tuple> matches = table.get(PageLayout.hashField(data, offset, type));
+				if (matches == null) {
+					continue;
+				}
+				Tuple p = null;
+				for (Tuple b : matches) {
+					if (type == Type.STRING && !equalsEncoded((StringField) b.getField(buildField), data, offset)) {
+						continue;
+					}
+					if (p == null) {
+						p = probeLayout.readTuple(data, pid, slot);
+					}
+					out.accept(buildLeft ? merge(b, p) : merge(p, b));
+				}
+			}
+		}
+	}
+
+	private Tuple merge(Tuple l, Tuple r) {
+		Tuple t = new Tuple(this.td);
+		int n = l.getDesc().numFields();
+		for (int i = 0; i < n; i++) {
+			t.setField(i, l.getField(i));
+		}
+		for (int i = 0; i < r.getDesc().numFields(); i++) {
+			t.setField(n + i, r.getField(i));
+		}
+		return t;
+	}
+
+	/* whether the string encoded at the offset equals the field */
+	static boolean equalsEncoded(StringField f, byte[] data, int offset) {
+		String s = f.getValue();
+		if (data[offset] != s.length()) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if ((char) data[offset + 1 + i] != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* hash of an encoded key, different for each partitioning level */
+	private static int hash(byte[] data, int offset, Type type, int depth) {
+		int h = PageLayout.hashField(data, offset, type);
+		h = (h ^ (depth * 0x9E3779B9)) * 0x85EBCA6B;
+		return h ^ (h >>> 15);
+	}
+
+	private static void delete(File[] files) {
+		if (files == null) {
+			return;
+		}
+		for (File f : files) {
+			if (f != null) {
+				f.delete();
+			}
+		}
+	}
+}
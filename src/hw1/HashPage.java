@@ -0,0 +1,181 @@
+package hw1;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A page of a HashIndexFile. Page 0 is the meta page and a few pages hold the
+ * directory of buckets; both are arrays of ints. All other pages are bucket
+ * pages holding (key, pid, slot) entries in no particular order and the page
+ * number of the next overflow page of the bucket, or -1.
+ * <p>
+ * Page format: a kind byte, then for bucket pages the entry count, the
+ * overflow page number and the entries, and for other pages the ints.
+ */
+public class HashPage extends HeapPage {
+	public static final byte META = 0;
+	public static final byte DIRECTORY = 1;
+	public static final byte BUCKET = 2;
+
+	private static final int HEADER_SIZE = 9;
+
+	private Type keyType;
+	private byte kind;
+	private int[] values; // meta and directory pages
+	private int count;
+	private int next;
+	private Field[] keys;
+	private int[] pids;
+	private int[] slots;
+
+	public HashPage(int id, byte[] data, int tableId, Type keyType) {
+		super(id, tableId);
+		this.keyType = keyType;
+		ByteBuffer buf = ByteBuffer.wrap(data);
+		this.kind = buf.get();
+		allocate();
+		if (this.kind != BUCKET) {
+			for (int i = 0; i < this.values.length; i++) {
+				this.values[i] = buf.getInt();
+			}
+			return;
+		}
+		this.count = buf.getInt();
+		this.next = buf.getInt();
+		byte[] key = new byte[BTreePage.keySize(keyType)];
+		for (int i = 0; i < this.count; i++) {
+			buf.get(key);
+			this.keys[i] = keyType == Type.INT ? new IntField(key) : new StringField(key);
+			this.pids[i] = buf.getInt();
+			this.slots[i] = buf.getInt();
+		}
+	}
+
+	/**
+	 * Creates an empty page of the given kind.
+	 */
+	public HashPage(int id, int tableId, Type keyType, byte kind) {
+		super(id, tableId);
+		this.keyType = keyType;
+		this.kind = kind;
+		this.next = -1;
+		allocate();
+	}
+
+	private void allocate() {
+		if (this.kind != BUCKET) {
+			this.values = new int[getCapacity()];
+		} else {
+			this.keys = new Field[getCapacity()];
+			this.pids = new int[getCapacity()];
+			this.slots = new int[getCapacity()];
+		}
+	}
+
+	/**
+	 * @return the number of entries, or of ints, that fit on a page of this kind
+	 */
+	public int getCapacity() {
+		if (this.kind != BUCKET) {
+			return (HeapFile.PAGE_SIZE - 1) / 4;
+		}
+		return (HeapFile.PAGE_SIZE - HEADER_SIZE) / (BTreePage.keySize(this.keyType) + 8);
+	}
+
+	public byte getKind() {
+		return this.kind;
+	}
+
+	public int getValue(int i) {
+		return this.values[i];
+	}
+
+	public void setValue(int i, int value) {
+		this.values[i] = value;
+	}
+
+	public int getCount() {
+		return this.count;
+	}
+
+	public boolean isFull() {
+		return this.count == getCapacity();
+	}
+
+	public int getNext() {
+		return this.next;
+	}
+
+	public void setNext(int next) {
+		this.next = next;
+	}
+
+	public Field getKey(int i) {
+		return this.keys[i];
+	}
+
+	public int getEntryPid(int i) {
+		return this.pids[i];
+	}
+
+	public int getEntrySlot(int i) {
+		return this.slots[i];
+	}
+
+	public void addEntry(Field key, int pid, int slot) {
+		this.keys[this.count] = key;
+		this.pids[this.count] = pid;
+		this.slots[this.count] = slot;
+		this.count++;
+	}
+
+	/**
+	 * Removes entry i by moving the last entry into its place.
+	 */
+	public void deleteEntry(int i) {
+		this.count--;
+		this.keys[i] = this.keys[this.count];
+		this.pids[i] = this.pids[this.count];
+		this.slots[i] = this.slots[this.count];
+		this.keys[this.count] = null;
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear() {
+		for (int i = 0; i < this.count; i++) {
+			this.keys[i] = null;
+		}
+		this.count = 0;
+	}
+
+	@Override
+	public int getNumSlots() {
+		return getCapacity();
+	}
+
+	@Override
+	public int getFirstFreeSlot() {
+		return -1;
+	}
+
+	@Override
+	public byte[] getPageData() {
+		ByteBuffer buf = ByteBuffer.allocate(HeapFile.PAGE_SIZE);
+		buf.put(this.kind);
+		if (this.kind != BUCKET) {
+			for (int value : this.values) {
+				buf.putInt(value);
+			}
+			return buf.array();
+		}
+		buf.putInt(this.count);
+		buf.putInt(this.next);
+		for (int i = 0; i < this.count; i++) {
+			buf.put(this.keys[i].toByteArray());
+			buf.putInt(this.pids[i]);
+			buf.putInt(this.slots[i]);
+		}
+		return buf.array();
+	}
+}
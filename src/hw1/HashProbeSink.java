@@ -0,0 +1,98 @@
+package hw1;
+
+import java.util.ArrayList;
+import java.util.Objects;
+
+/**
+ * Probes the table of a HashBuildSink with the rows pushed into it and
+ * collects the joined tuples, the build fields followed by the probe fields.
+ * Probe keys are hashed and compared in the batch's columns, so probe rows
+ * are only decoded when their key has a match. The forks share the build
+ * table, which is not changed while probing. Like HashJoin, a
+ * dictionary-encoded join field is only joined with one encoded by the same
+ * dictionary.
+ */
+public class HashProbeSink implements PipelineSink {
+
+	private HashBuildSink build;
+	private int field;
+	private TupleDesc td; // known once the first batch has been consumed
+	private ArrayList<Tuple> tuples;
+
+	/**
+	 * @param build the built table, after its pipeline has run
+	 * @param field the join field of the rows pushed into the sink
+	 */
+	public HashProbeSink(HashBuildSink build, int field) {
+		this.build = build;
+		this.field = field;
+		this.tuples = new ArrayList<>();
+	}
+
+	public void consume(RowBatch batch) {
+		TupleDesc buildTd = this.build.getTupleDesc();
+		if (buildTd == null) {
+			return;
+		}
+		Type type = batch.getTupleDesc().getType(this.field);
+		if (this.td == null) {
+			if (buildTd.getType(this.build.getField()) != type) {
+				throw new IllegalArgumentException("join fields have different types");
+			}
+			this.td = TupleDesc.combine(buildTd, batch.getTupleDesc());
+		}
+		int[] ints = batch.getIntColumn(this.field);
+		byte[] strings = batch.getStringColumn(this.field);
+		int[] sel = batch.getSelection();
+		for (int i = 0; i < batch.numSelected(); i++) {
+			int row = sel[i];
+			int offset = row * PageLayout.STRING_SIZE;
+			ArrayList<Tuple> matches = this.build
+					.get(type == Type.INT ? ints[row] : PageLayout.hashField(strings, offset, type));
+			if (matches == null) {
+				continue;
+			}
+			Tuple p = null;
+			for (Tuple b : matches) {
+				if (type == Type.STRING
+						&& !HashJoin.equalsEncoded((StringField) b.getField(this.build.getField()), strings, offset)) {
+					continue;
+				}
+				if (p == null) {
+					p = batch.getTuple(row);
+				}
+				this.tuples.add(join(b, p));
+			}
+		}
+	}
+
+	public PipelineSink fork() {
+		return new HashProbeSink(this.build, this.field);
+	}
+
+	public void open(HeapFile source, int[] fields) {
+		if (!Objects.equals(this.build.getDictionary(), DictionaryFile.dictionaryOf(source, fields[this.field]))) {
+			throw new IllegalArgumentException("join fields are not encoded by the same dictionary");
+		}
+	}
+
+	public void merge(PipelineSink other) {
+		this.tuples.addAll(((HashProbeSink) other).tuples);
+	}
+
+	public ArrayList<Tuple> getTuples() {
+		return this.tuples;
+	}
+
+	private Tuple join(Tuple b, Tuple p) {
+		Tuple t = new Tuple(this.td);
+		int n = b.getDesc().numFields();
+		for (int i = 0; i < n; i++) {
+			t.setField(i, b.getField(i));
+		}
+		for (int i = 0; i < p.getDesc().numFields(); i++) {
+			t.setField(n + i, p.getField(i));
+		}
+		return t;
+	}
+}
@@ -1,12 +1,10 @@
 package hw1;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * A heap file stores a collection of tuples. It is also responsible for
@@ -14,15 +12,18 @@ import java.util.Iterator;
  * It needs to be able to manage page creation as well as correctly manipulating
  * pages
  * when tuples are added or deleted.
+ * <p>
+ * Its pages have fixed-size slots described by a PageLayout, which the
+ * operators that work on raw page images rely on.
  * 
  * @author Sam Madden modified by Doug Shook
  *
  */
-public class HeapFile {
+public class HeapFile extends PageFile {
 
-	public static final int PAGE_SIZE = 4096;
-	private TupleDesc td;
-	private File f;
+	private PageLayout layout;
+	private ZoneMap zoneMap;
+	private CopyOnWriteArrayList<PageBloomFilter> bloomFilters;
 
 	/**
 	 * Creates a new heap file in the given location that can accept tuples of the
@@ -32,160 +33,178 @@ public class HeapFile {
 	 * @param types type of tuples contained in the file
 	 */
 	public HeapFile(File f, TupleDesc type) {
-		// your code here
-		this.td = type;
-		this.f = f;
+		super(f, type);
+		this.layout = new PageLayout(type);
+		this.zoneMap = new ZoneMap(this.layout);
+		this.bloomFilters = new CopyOnWriteArrayList<>();
 	}
 
-	public File getFile() {
-		// your code here
-		return this.f;
+	public PageLayout getLayout() {
+		return this.layout;
 	}
 
-	public TupleDesc getTupleDesc() {
-		// your code here
-		return this.td;
+	/**
+	 * Returns the per-page minimum and maximum of every field, or null for files
+	 * whose pages are not heap pages.
+	 */
+	public ZoneMap getZoneMap() {
+		return this.zoneMap;
 	}
 
 	/**
-	 * Creates a HeapPage object representing the page at the given page number.
-	 * Because it will be necessary to arbitrarily move around the file, a
-	 * RandomAccessFile object
-	 * should be used here.
-	 * 
-	 * @param id the page number to be retrieved
-	 * @return a HeapPage at the given page number
+	 * Keeps a Bloom filter of the values of a field on each page, for equality
+	 * scans. Pages already in the file are added to the filter as they are next
+	 * written or scanned.
+	 *
+	 * @return the filter of the field, which may already have existed
 	 */
-	public HeapPage readPage(int id) {
-		// your code here
-		HeapPage hp = null;
-		try {
-			RandomAccessFile file = new RandomAccessFile(this.f, "r");
-			byte[] heapPageContent = new byte[PAGE_SIZE];
-			file.seek(id * PAGE_SIZE);
-			file.read(heapPageContent);
-			hp = new HeapPage(id, heapPageContent, this.getId());
-			file.close();
-		} catch (Exception e) {
+	public PageBloomFilter addBloomFilter(int field) {
+		synchronized (this.bloomFilters) {
+			PageBloomFilter filter = getBloomFilter(field);
+			if (filter == null) {
+				filter = new PageBloomFilter(this.layout, field);
+				this.bloomFilters.add(filter);
+			}
+			return filter;
 		}
-		return hp;
 	}
 
 	/**
-	 * Returns a unique id number for this heap file. Consider using
-	 * the hash of the File itself.
-	 * 
-	 * @return
+	 * Returns the Bloom filter of a field, or null if it has none.
 	 */
-	public int getId() {
-		// your code here
-		return this.f.hashCode();
+	public PageBloomFilter getBloomFilter(int field) {
+		for (PageBloomFilter filter : this.bloomFilters) {
+			if (filter.getField() == field) {
+				return filter;
+			}
+		}
+		return null;
 	}
 
 	/**
-	 * Writes the given HeapPage to disk. Because of the need to seek through the
-	 * file,
-	 * a RandomAccessFile object should be used in this method.
-	 * 
-	 * @param p the page to write to disk
+	 * Checks the zone map and Bloom filters of a page, without reading it.
+	 *
+	 * @return false if no tuple on the page can satisfy all of the predicates
 	 */
-	public void writePage(HeapPage p) {
-		// your code here
-		try {
-			RandomAccessFile file = new RandomAccessFile(this.f, "rw");
-			file.seek(p.getId() * PAGE_SIZE);
-			file.write(p.getPageData());
-			file.close();
-		} catch (Exception e) {
-			// e.printStackTrace();
+	public boolean mayMatch(int pid, List<Predicate> predicates) {
+		for (Predicate p : predicates) {
+			if (!mayMatch(pid, p)) {
+				return false;
+			}
 		}
+		return true;
+	}
+
+	public boolean mayMatch(int pid, Predicate p) {
+		if (this.getZoneMap() != null && !this.getZoneMap().mayMatch(pid, p)) {
+			return false;
+		}
+		for (PageBloomFilter filter : this.bloomFilters) {
+			if (!filter.mayMatch(pid, p)) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
-	 * Adds a tuple. This method must first find a page with an open slot, creating
-	 * a new page
-	 * if all others are full. It then passes the tuple to this page to be stored.
-	 * It then writes
-	 * the page to disk (see writePage)
-	 * 
-	 * @param t The tuple to be stored
-	 * @return The HeapPage that contains the tuple
+	 * Records the zone and Bloom filters of a page that a scan has read, where
+	 * they are not known yet.
 	 */
-	public HeapPage addTuple(Tuple t) throws IOException {
-		if (t.getDesc() != this.td) {
-			return null;
+	public void observePage(int pid, byte[] data) {
+		if (this.getZoneMap() != null) {
+			this.getZoneMap().observe(pid, data);
 		}
-		// your code here
-		HeapPage hp = null;
-		int numPages = this.getNumPages();
-		boolean inserted = false;
-		for (int i = 0; i < numPages; i++) {
-			hp = this.readPage(i);
-			if (hp.getFirstFreeSlot() == -1) {
-				continue;
-			}
-			try {
-				hp.addTuple(t);
-				inserted = true;
-				break;
-			} catch (Exception e1) {
-			}
+		for (PageBloomFilter filter : this.bloomFilters) {
+			filter.observe(pid, data);
 		}
-		if (!inserted) {
-			byte[] newPageData = new byte[PAGE_SIZE];
-			hp = new HeapPage(numPages, newPageData, this.getId());
-			try {
-				hp.addTuple(t);
-			} catch (Exception e2) {
-			}
+	}
+
+	/* Records the zone and Bloom filters of a page that has been written */
+	@Override
+	void pageWritten(int pid, byte[] data, int offset) {
+		if (this.getZoneMap() != null) {
+			this.getZoneMap().update(pid, data, offset);
+		}
+		for (PageBloomFilter filter : this.bloomFilters) {
+			filter.update(pid, data, offset);
+		}
+	}
+
+	/* Called before pages are appended to the file without going through writePage */
+	void beforePagesWritten() throws IOException {
+	}
+
+	/* Forgets the zones and Bloom filters of pages cut off the end of the file */
+	void pagesTruncated(int numPages) {
+		if (this.getZoneMap() != null) {
+			this.getZoneMap().truncate(numPages);
+		}
+		for (PageBloomFilter filter : this.bloomFilters) {
+			filter.truncate(numPages);
 		}
-		// this.writePage(hp);
-		return hp;
 	}
 
 	/**
-	 * This method will examine the tuple to find out where it is stored, then
-	 * delete it
-	 * from the proper HeapPage. It then writes the modified page to disk.
+	 * Creates a HeapPage object representing the page at the given page number.
+	 * Because it will be necessary to arbitrarily move around the file, a
+	 * RandomAccessFile object
+	 * should be used here.
 	 * 
-	 * @param t the Tuple to be deleted
+	 * @param id the page number to be retrieved
+	 * @return a HeapPage at the given page number
 	 */
-	public void deleteTuple(Tuple t) {
+	@Override
+	public HeapPage readPage(int id) {
 		// your code here
-		HeapPage curr = this.readPage(t.getPid());
+		HeapPage hp = null;
 		try {
-			curr.deleteTuple(t);
+			hp = new HeapPage(id, this.readPageData(id), this.getId());
 		} catch (Exception e) {
-			e.printStackTrace();
 		}
-		this.writePage(curr);
+		return hp;
 	}
 
 	/**
-	 * Returns an ArrayList containing all of the tuples in this HeapFile. It must
-	 * access each HeapPage to do this (see iterator() in HeapPage)
-	 * 
-	 * @return
+	 * Creates an empty page at the given page number, in the page format of
+	 * this file.
 	 */
-	public ArrayList<Tuple> getAllTuples() {
-		// your code here
-		ArrayList<Tuple> result = new ArrayList<>();
-		for (int i = 0; i < this.getNumPages(); i++) {
-			Iterator<Tuple> it = this.readPage(i).iterator();
-			while (it.hasNext()) {
-				result.add(it.next());
-			}
+	@Override
+	public HeapPage createPage(int id) {
+		try {
+			return new HeapPage(id, new byte[PAGE_SIZE], this.getId());
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
 		}
-		return result;
 	}
 
 	/**
-	 * Computes and returns the total number of pages contained in this HeapFile
+	 * Returns the tuples that satisfy the given predicate. The predicate is
+	 * evaluated on the encoded field of each occupied slot, and only matching
+	 * tuples are decoded. Pages whose zone map or Bloom filter rules out a
+	 * match are not read.
 	 * 
-	 * @return the number of pages
+	 * @param p the predicate to filter with
+	 * @return the matching tuples
 	 */
-	public int getNumPages() {
-		// your code here
-		return (int) (this.f.length() / PAGE_SIZE);
+	@Override
+	public ArrayList<Tuple> getMatchingTuples(Predicate p) {
+		p.checkType(this.getTupleDesc());
+		ArrayList<Tuple> result = new ArrayList<>();
+		int fieldOffset = this.layout.getFieldOffset(p.getField());
+		for (int i = 0; i < this.getNumPages(); i++) {
+			if (!this.mayMatch(i, p)) {
+				continue;
+			}
+			byte[] data = this.readPageData(i);
+			this.observePage(i, data);
+			for (int slot = 0; slot < this.layout.getNumSlots(); slot++) {
+				if (this.layout.slotOccupied(data, slot)
+						&& p.matches(data, this.layout.getSlotOffset(slot) + fieldOffset)) {
+					result.add(this.layout.readTuple(data, i, slot));
+				}
+			}
+		}
+		return result;
 	}
 }
@@ -44,6 +44,15 @@ public class HeapPage {
 		dis.close();
 	}
 
+	/**
+	 * Creates a page that keeps its own format, for files other than heap files
+	 * whose pages are cached by the BufferPool.
+	 */
+	protected HeapPage(int id, int tableId) {
+		this.id = id;
+		this.tableId = tableId;
+	}
+
 	public int getId() {
 		// your code here
 		return this.id;
@@ -180,6 +189,13 @@ public class HeapPage {
 		}
 	}
 
+	/**
+	 * Returns the tuple in the given slot, or null if the slot is empty.
+	 */
+	public Tuple getTuple(int slot) {
+		return this.slotOccupied(slot) ? this.tuples[slot] : null;
+	}
+
 	/**
 	 * Suck up tuples from the source file.
 	 */
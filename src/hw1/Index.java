@@ -0,0 +1,36 @@
+package hw1;
+
+/**
+ * An index over one field of a table, mapping values to the page and slot of
+ * the tuples that hold them. The BufferPool keeps every index of a table in
+ * the Catalog up to date as tuples are inserted and deleted.
+ */
+public interface Index {
+
+	/** Returns the indexed field of the table */
+	int getKeyField();
+
+	void insert(int tid, Field key, int pid, int slot) throws Exception;
+
+	/**
+	 * Adds the entry of a tuple that has been stored at its pid and slot.
+	 */
+	default void insert(int tid, Tuple t) throws Exception {
+		insert(tid, t.getField(getKeyField()), t.getPid(), t.getId());
+	}
+
+	/**
+	 * @return whether the entry was found
+	 */
+	boolean delete(int tid, Field key, int pid, int slot) throws Exception;
+
+	/**
+	 * Called by the BufferPool when a transaction that may have changed the
+	 * index commits or aborts, after the pages of the transaction have been
+	 * written or restored and unlocked. Indexes whose pages go through the BufferPool are
+	 * rolled back with them; indexes kept in memory undo the changes of an
+	 * aborted transaction here.
+	 */
+	default void transactionComplete(int tid, boolean commit) {
+	}
+}
@@ -0,0 +1,185 @@
+package hw1;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from primitive longs to objects. Lookups do not
+ * box the key and walk a single pair of arrays with linear probing, so a hit
+ * costs a few memory accesses and no allocation.
+ * <p>
+ * Null values are not allowed; a null entry in the value array marks an empty
+ * slot. Removal uses backward-shift deletion, so there are no tombstones.
+ *
+ * @param <V> the type of the mapped values
+ */
+public class LongObjectMap<V> {
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private Object[] values;
+	private int mask;
+	private int size;
+
+	public LongObjectMap() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize number of entries the map should hold without resizing
+	 */
+	public LongObjectMap(int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+
+	/** Packs two ints into one long key, e.g. (tableId, pid) */
+	public static long pack(int high, int low) {
+		return ((long) high << 32) | (low & 0xFFFFFFFFL);
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int i = slot(key);
+		Object v;
+		while ((v = this.values[i]) != null) {
+			if (this.keys[i] == key) {
+				return (V) v;
+			}
+			i = (i + 1) & this.mask;
+		}
+		return null;
+	}
+
+	public boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Associates the value with the key.
+	 *
+	 * @return the previous value, or null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null) {
+			throw new NullPointerException();
+		}
+		int i = slot(key);
+		Object v;
+		while ((v = this.values[i]) != null) {
+			if (this.keys[i] == key) {
+				this.values[i] = value;
+				return (V) v;
+			}
+			i = (i + 1) & this.mask;
+		}
+		this.keys[i] = key;
+		this.values[i] = value;
+		if (++this.size > maxSize()) {
+			rehash(this.values.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the mapping for the key.
+	 *
+	 * @return the removed value, or null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int i = slot(key);
+		Object v;
+		while ((v = this.values[i]) != null) {
+			if (this.keys[i] == key) {
+				shiftBack(i);
+				this.size--;
+				return (V) v;
+			}
+			i = (i + 1) & this.mask;
+		}
+		return null;
+	}
+
+	public void clear() {
+		Arrays.fill(this.values, null);
+		this.size = 0;
+	}
+
+	/** Returns a snapshot of the keys currently in the map */
+	public long[] keys() {
+		long[] result = new long[this.size];
+		int n = 0;
+		for (int i = 0; i < this.values.length; i++) {
+			if (this.values[i] != null) {
+				result[n++] = this.keys[i];
+			}
+		}
+		return result;
+	}
+
+	/* close the gap at `free` by moving back entries that probed past it */
+	private void shiftBack(int free) {
+		int i = free;
+		while (true) {
+			i = (i + 1) & this.mask;
+			if (this.values[i] == null) {
+				break;
+			}
+			int home = slot(this.keys[i]);
+			// move the entry if its home slot is not in the cyclic range (free, i]
+			if (((i - home) & this.mask) >= ((i - free) & this.mask)) {
+				this.keys[free] = this.keys[i];
+				this.values[free] = this.values[i];
+				free = i;
+			}
+		}
+		this.values[free] = null;
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & this.mask;
+	}
+
+	private int maxSize() {
+		return this.values.length / 4 * 3;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		allocate(capacity);
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int j = slot(oldKeys[i]);
+				while (this.values[j] != null) {
+					j = (j + 1) & this.mask;
+				}
+				this.keys[j] = oldKeys[i];
+				this.values[j] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new long[capacity];
+		this.values = new Object[capacity];
+		this.mask = capacity - 1;
+	}
+
+	private static int capacityFor(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity / 4 * 3 < expectedSize) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+}
@@ -0,0 +1,146 @@
+package hw1;
+
+import java.util.Arrays;
+
+/**
+ * A Bloom filter over the values of one field for each page of a heap file, so
+ * that equality scans can skip the pages that certainly do not hold the value
+ * they look for without reading them. Each filter has about BITS_PER_VALUE
+ * bits per slot of the page and NUM_HASHES hash functions, which gives
+ * roughly one false positive per hundred pages that do not hold the value.
+ * <p>
+ * Like a ZoneMap, the filters are recorded when the HeapFile or a BulkLoader
+ * writes a page and when a scan reads a page whose filter is not known yet.
+ */
+public class PageBloomFilter {
+	private static final int BITS_PER_VALUE = 10;
+	private static final int NUM_HASHES = 7;
+
+	private PageLayout layout;
+	private int field;
+	private Type type;
+	private int mask; // number of bits - 1, a power of two
+	private long[][] filters; // indexed by page, null while unknown
+
+	public PageBloomFilter(PageLayout layout, int field) {
+		this.layout = layout;
+		this.field = field;
+		this.type = layout.getTupleDesc().getType(field);
+		int bits = Integer.highestOneBit(Math.max(64, layout.getNumSlots() * BITS_PER_VALUE - 1)) << 1;
+		this.mask = bits - 1;
+		this.filters = new long[16][];
+	}
+
+	public int getField() {
+		return this.field;
+	}
+
+	/**
+	 * Records the filter of a page that has been written.
+	 *
+	 * @param data   the page image, or several consecutive ones
+	 * @param offset the offset of the page in data
+	 */
+	public void update(int pid, byte[] data, int offset) {
+		long[] filter = compute(data, offset);
+		synchronized (this) {
+			grow(pid);
+			this.filters[pid] = filter;
+		}
+	}
+
+	/**
+	 * Records the filter of a page that has been read, unless it is already
+	 * known. The page may have been written since it was read, so a filter
+	 * recorded meanwhile is never replaced.
+	 */
+	public void observe(int pid, byte[] data) {
+		if (getFilter(pid) != null) {
+			return;
+		}
+		long[] filter = compute(data, 0);
+		synchronized (this) {
+			grow(pid);
+			if (this.filters[pid] == null) {
+				this.filters[pid] = filter;
+			}
+		}
+	}
+
+	private long[] compute(byte[] data, int offset) {
+		long[] filter = new long[(this.mask + 1) / 64];
+		int fieldOffset = this.layout.getFieldOffset(this.field);
+		for (int slot = 0; slot < this.layout.getNumSlots(); slot++) {
+			if ((data[offset + (slot >> 3)] >> (slot & 7) & 1) == 1) {
+				int h = PageLayout.hashField(data, offset + this.layout.getSlotOffset(slot) + fieldOffset, this.type);
+				long x = mix(h);
+				int h1 = (int) x;
+				int h2 = (int) (x >>> 32) | 1;
+				for (int i = 0; i < NUM_HASHES; i++) {
+					int bit = (h1 + i * h2) & this.mask;
+					filter[bit >>> 6] |= 1L << bit;
+				}
+			}
+		}
+		return filter;
+	}
+
+	/**
+	 * Forgets the filters of the pages at or past numPages, after the file has
+	 * been truncated to that many pages.
+	 */
+	public synchronized void truncate(int numPages) {
+		if (numPages < this.filters.length) {
+			Arrays.fill(this.filters, numPages, this.filters.length, null);
+		}
+	}
+
+	/**
+	 * @return false if the page certainly holds no tuple with the given value,
+	 *         true if it may or its filter is not known
+	 */
+	public boolean mayContain(int pid, Field value) {
+		long[] filter = getFilter(pid);
+		if (filter == null) {
+			return true;
+		}
+		// Field.hashCode agrees with PageLayout.hashField
+		long x = mix(value.hashCode());
+		int h1 = (int) x;
+		int h2 = (int) (x >>> 32) | 1;
+		for (int i = 0; i < NUM_HASHES; i++) {
+			int bit = (h1 + i * h2) & this.mask;
+			if ((filter[bit >>> 6] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return false if no tuple on the page can satisfy the predicate, which is
+	 *         only ever decided for equality on the filtered field
+	 */
+	public boolean mayMatch(int pid, Predicate p) {
+		if (p.getField() != this.field || p.getOp() != RelationalOperator.EQ) {
+			return true;
+		}
+		return mayContain(pid, p.getOperand());
+	}
+
+	private void grow(int pid) {
+		if (pid >= this.filters.length) {
+			this.filters = Arrays.copyOf(this.filters, Math.max(pid + 1, 2 * this.filters.length));
+		}
+	}
+
+	private synchronized long[] getFilter(int pid) {
+		return pid < this.filters.length ? this.filters[pid] : null;
+	}
+
+	/* spreads the field hash over 64 bits for the two base hashes */
+	private static long mix(int h) {
+		long x = h * 0x9E3779B97F4A7C15L;
+		return x ^ (x >>> 29);
+	}
+}
@@ -0,0 +1,235 @@
+package hw1;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * A DbFile stored as consecutive pages of PAGE_SIZE bytes. Subclasses give the
+ * page format with readPage and createPage; reading, writing and adding
+ * tuples work the same for every format.
+ */
+public abstract class PageFile implements DbFile {
+
+	public static final int PAGE_SIZE = 4096;
+	private TupleDesc td;
+	private File f;
+
+	/**
+	 * @param f    location of the file
+	 * @param type type of tuples contained in the file
+	 */
+	public PageFile(File f, TupleDesc type) {
+		this.td = type;
+		this.f = f;
+	}
+
+	public File getFile() {
+		return this.f;
+	}
+
+	public TupleDesc getTupleDesc() {
+		return this.td;
+	}
+
+	public abstract HeapPage readPage(int id);
+
+	public abstract HeapPage createPage(int id);
+
+	/* Called with every page image written to the file */
+	void pageWritten(int pid, byte[] data, int offset) {
+	}
+
+	/**
+	 * Replaces the content of this file with the tuples of a heap file with
+	 * fixed-size slots, filling each page of this file's format before starting
+	 * the next. Tuples get new page and slot numbers. This must not run while
+	 * the BufferPool holds pages of this file.
+	 */
+	public void copyFrom(HeapFile source) throws IOException {
+		PageLayout layout = source.getLayout();
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(this.f), 16 * PAGE_SIZE)) {
+			HeapPage page = this.createPage(0);
+			boolean empty = true;
+			for (int pid = 0; pid < source.getNumPages(); pid++) {
+				byte[] data = source.readPageData(pid);
+				for (int slot = 0; slot < layout.getNumSlots(); slot++) {
+					if (!layout.slotOccupied(data, slot)) {
+						continue;
+					}
+					Tuple t = layout.readTuple(data, pid, slot);
+					try {
+						page.addTuple(t);
+					} catch (Exception e) {
+						writePage(out, page);
+						page = this.createPage(page.getId() + 1);
+						try {
+							page.addTuple(t);
+						} catch (Exception e2) {
+							throw new IOException("tuple does not fit on an empty page", e2);
+						}
+					}
+					empty = false;
+				}
+			}
+			if (!empty) {
+				writePage(out, page);
+			}
+		}
+	}
+
+	private void writePage(OutputStream out, HeapPage page) throws IOException {
+		byte[] data = page.getPageData();
+		out.write(data);
+		pageWritten(page.getId(), data, 0);
+	}
+
+	/**
+	 * Reads the raw bytes of the page at the given page number without decoding
+	 * its tuples (see PageLayout).
+	 *
+	 * @param id the page number to be retrieved
+	 * @return the page image, PAGE_SIZE bytes long
+	 */
+	public byte[] readPageData(int id) {
+		byte[] heapPageContent = new byte[PAGE_SIZE];
+		long start = System.nanoTime();
+		try {
+			RandomAccessFile file = new RandomAccessFile(this.f, "r");
+			file.seek((long) id * PAGE_SIZE);
+			file.read(heapPageContent);
+			file.close();
+		} catch (Exception e) {
+		}
+		Database.getStats().recordPageRead(this.getId(), id, System.nanoTime() - start);
+		return heapPageContent;
+	}
+
+	/**
+	 * Returns a unique id number for this file, the hash of the File itself.
+	 */
+	public int getId() {
+		return this.f.hashCode();
+	}
+
+	/**
+	 * Writes the given page to disk. Because of the need to seek through the
+	 * file, a RandomAccessFile object is used in this method.
+	 *
+	 * @param p the page to write to disk
+	 */
+	public void writePage(HeapPage p) {
+		long start = System.nanoTime();
+		byte[] data = p.getPageData();
+		try {
+			RandomAccessFile file = new RandomAccessFile(this.f, "rw");
+			file.seek(p.getId() * PAGE_SIZE);
+			file.write(data);
+			file.close();
+		} catch (Exception e) {
+			// e.printStackTrace();
+		}
+		pageWritten(p.getId(), data, 0);
+		Database.getStats().recordPageWrite(this.getId(), p.getId(), System.nanoTime() - start);
+	}
+
+	/**
+	 * Adds a tuple. This method must first find a page with an open slot, creating
+	 * a new page if all others are full. It then passes the tuple to this page to
+	 * be stored. The page is not written to disk.
+	 *
+	 * @param t The tuple to be stored
+	 * @return The page that contains the tuple
+	 */
+	public HeapPage addTuple(Tuple t) throws IOException {
+		if (t.getDesc() != this.td) {
+			return null;
+		}
+		HeapPage hp = null;
+		int numPages = this.getNumPages();
+		boolean inserted = false;
+		for (int i = 0; i < numPages; i++) {
+			hp = this.readPage(i);
+			if (hp.getFirstFreeSlot() == -1) {
+				continue;
+			}
+			try {
+				hp.addTuple(t);
+				inserted = true;
+				break;
+			} catch (Exception e1) {
+			}
+		}
+		if (!inserted) {
+			hp = this.createPage(numPages);
+			try {
+				hp.addTuple(t);
+			} catch (Exception e2) {
+			}
+		}
+		return hp;
+	}
+
+	/**
+	 * This method will examine the tuple to find out where it is stored, then
+	 * delete it from the proper page. It then writes the modified page to disk.
+	 *
+	 * @param t the Tuple to be deleted
+	 */
+	public void deleteTuple(Tuple t) {
+		HeapPage curr = this.readPage(t.getPid());
+		try {
+			curr.deleteTuple(t);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		this.writePage(curr);
+	}
+
+	/**
+	 * Returns an ArrayList containing all of the tuples in this file. It must
+	 * access each page to do this (see iterator() in HeapPage)
+	 */
+	public ArrayList<Tuple> getAllTuples() {
+		ArrayList<Tuple> result = new ArrayList<>();
+		for (int i = 0; i < this.getNumPages(); i++) {
+			Iterator<Tuple> it = this.readPage(i).iterator();
+			while (it.hasNext()) {
+				result.add(it.next());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the tuples that satisfy the given predicate, decoding every page.
+	 */
+	public ArrayList<Tuple> getMatchingTuples(Predicate p) {
+		p.checkType(this.td);
+		ArrayList<Tuple> result = new ArrayList<>();
+		for (int i = 0; i < this.getNumPages(); i++) {
+			Iterator<Tuple> it = this.readPage(i).iterator();
+			while (it.hasNext()) {
+				Tuple t = it.next();
+				if (p.evaluate(t)) {
+					result.add(t);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Computes and returns the total number of pages contained in this file
+	 *
+	 * @return the number of pages
+	 */
+	public int getNumPages() {
+		return (int) (this.f.length() / PAGE_SIZE);
+	}
+}
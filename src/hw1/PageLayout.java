@@ -0,0 +1,117 @@
+package hw1;
+
+import java.util.Arrays;
+
+/**
+ * Describes where slots and fields live inside the raw bytes of a HeapPage
+ * for a given TupleDesc. This lets scans and loaders work on page images
+ * directly without constructing HeapPage or Tuple objects.
+ * <p>
+ * A page starts with a header bitmap (bit s % 8 of byte s / 8 is set when slot
+ * s is occupied), followed by numSlots fixed-size tuples.
+ */
+public class PageLayout {
+	public static final int INT_SIZE = 4;
+	public static final int STRING_SIZE = 129;
+
+	private TupleDesc td;
+	private int numSlots;
+	private int headerSize;
+	private int tupleSize;
+	private int[] offsets;
+
+	public PageLayout(TupleDesc td) {
+		this.td = td;
+		this.tupleSize = td.getSize();
+		this.numSlots = 8 * HeapFile.PAGE_SIZE / (8 * this.tupleSize + 1);
+		this.headerSize = (this.numSlots + 7) / 8;
+		this.offsets = new int[td.numFields()];
+		int offset = 0;
+		for (int i = 0; i < td.numFields(); i++) {
+			this.offsets[i] = offset;
+			offset += td.getType(i) == Type.INT ? INT_SIZE : STRING_SIZE;
+		}
+	}
+
+	public TupleDesc getTupleDesc() {
+		return this.td;
+	}
+
+	public int getNumSlots() {
+		return this.numSlots;
+	}
+
+	public int getHeaderSize() {
+		return this.headerSize;
+	}
+
+	/**
+	 * @return the offset of the given slot from the start of the page
+	 */
+	public int getSlotOffset(int slot) {
+		return this.headerSize + slot * this.tupleSize;
+	}
+
+	/**
+	 * @return the offset of a field within a tuple
+	 */
+	public int getFieldOffset(int field) {
+		return this.offsets[field];
+	}
+
+	public boolean slotOccupied(byte[] data, int slot) {
+		return (data[slot >> 3] >> (slot & 7) & 1) == 1;
+	}
+
+	public void setSlotOccupied(byte[] data, int slot) {
+		data[slot >> 3] |= 1 << (slot & 7);
+	}
+
+	/**
+	 * Reads a big-endian int, the on-disk format of an IntField
+	 */
+	public static int readInt(byte[] data, int offset) {
+		return (data[offset] << 24) | ((data[offset + 1] & 0xFF) << 16) | ((data[offset + 2] & 0xFF) << 8)
+				| (data[offset + 3] & 0xFF);
+	}
+
+	/**
+	 * Hashes an encoded field. Ints hash to their value and strings the same way
+	 * as String.hashCode, so equal fields hash alike on both sides of a join or
+	 * grouping, without being decoded.
+	 */
+	public static int hashField(byte[] data, int offset, Type type) {
+		if (type == Type.INT) {
+			return readInt(data, offset);
+		}
+		int h = 0;
+		int len = data[offset];
+		for (int i = 1; i <= len; i++) {
+			h = 31 * h + (char) data[offset + i];
+		}
+		return h;
+	}
+
+	/**
+	 * Decodes the tuple stored in the given slot of a page image.
+	 *
+	 * @param data the page image
+	 * @param pid  the id of the page, stored in the tuple
+	 * @param slot an occupied slot
+	 */
+	public Tuple readTuple(byte[] data, int pid, int slot) {
+		Tuple t = new Tuple(this.td);
+		t.setPid(pid);
+		t.setId(slot);
+		int base = getSlotOffset(slot);
+		for (int j = 0; j < this.offsets.length; j++) {
+			int offset = base + this.offsets[j];
+			if (this.td.getType(j) == Type.INT) {
+				t.setField(j, new IntField(readInt(data, offset)));
+			} else {
+				t.setField(j, new StringField(Arrays.copyOfRange(data, offset, offset + STRING_SIZE)));
+			}
+		}
+		return t;
+	}
+}
@@ -0,0 +1,81 @@
+package hw1;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Appends tuples to the end of a heap file page by page. Tuples are copied
+ * into an in-memory page image, and each full page is written sequentially.
+ * Used to spill intermediate results to temporary heap files.
+ */
+public class PageWriter implements Closeable {
+
+	private OutputStream out;
+	private PageLayout layout;
+	private int tupleSize;
+	private byte[] page;
+	private int slot;
+	private long numTuples;
+
+	/**
+	 * @param f      the file to append to
+	 * @param layout the layout of the tuples being written
+	 */
+	public PageWriter(File f, PageLayout layout) throws IOException {
+		this.out = new BufferedOutputStream(new FileOutputStream(f, true), 16 * HeapFile.PAGE_SIZE);
+		this.layout = layout;
+		this.tupleSize = layout.getTupleDesc().getSize();
+		this.page = new byte[HeapFile.PAGE_SIZE];
+	}
+
+	/**
+	 * Copies an encoded tuple from another page image.
+	 *
+	 * @param data       the page image holding the tuple
+	 * @param slotOffset the offset of the tuple in data
+	 */
+	public void add(byte[] data, int slotOffset) throws IOException {
+		System.arraycopy(data, slotOffset, this.page, this.layout.getSlotOffset(this.slot), this.tupleSize);
+		next();
+	}
+
+	public void add(Tuple t) throws IOException {
+		int offset = this.layout.getSlotOffset(this.slot);
+		for (int j = 0; j < t.getDesc().numFields(); j++) {
+			byte[] field = t.getField(j).toByteArray();
+			System.arraycopy(field, 0, this.page, offset, field.length);
+			offset += field.length;
+		}
+		next();
+	}
+
+	public long getNumTuples() {
+		return this.numTuples;
+	}
+
+	private void next() throws IOException {
+		this.layout.setSlotOccupied(this.page, this.slot);
+		this.numTuples++;
+		if (++this.slot == this.layout.getNumSlots()) {
+			flushPage();
+		}
+	}
+
+	private void flushPage() throws IOException {
+		this.out.write(this.page);
+		this.page = new byte[HeapFile.PAGE_SIZE];
+		this.slot = 0;
+	}
+
+	/** Writes the last, partially filled page and closes the file */
+	public void close() throws IOException {
+		if (this.slot > 0) {
+			flushPage();
+		}
+		this.out.close();
+	}
+}
@@ -0,0 +1,78 @@
+package hw1;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.function.IntConsumer;
+
+/**
+ * A file of PaxPages, storing the tuples of each page column by column for
+ * analytic scans that read few fields. Like a SlottedHeapFile, it is read and
+ * written through the BufferPool and Catalog as a DbFile whose pages have
+ * their own format.
+ * <p>
+ * It is not a HeapFile, so the operators that work on raw page images through
+ * a PageLayout take no PAX file; its tuples are read with getAllTuples,
+ * getMatchingTuples, forEachInt or through the BufferPool. It has no zone map
+ * or Bloom filters.
+ */
+public class PaxFile extends PageFile {
+
+	public PaxFile(File f, TupleDesc type) {
+		super(f, type);
+	}
+
+	/**
+	 * Copies the tuples of a heap file with fixed-size slots to a new PAX file.
+	 * Tuples get new page and slot numbers. Any existing content of f is
+	 * replaced.
+	 */
+	public static PaxFile convert(HeapFile source, File f) throws IOException {
+		PaxFile target = new PaxFile(f, source.getTupleDesc());
+		target.copyFrom(source);
+		return target;
+	}
+
+	@Override
+	public HeapPage readPage(int id) {
+		return new PaxPage(id, readPageData(id), this.getId(), this.getTupleDesc());
+	}
+
+	@Override
+	public PaxPage createPage(int id) {
+		return new PaxPage(id, this.getId(), this.getTupleDesc());
+	}
+
+	/**
+	 * Returns the tuples that satisfy the given predicate. The predicate is
+	 * evaluated on the encoded values of its field, and only matching tuples
+	 * are decoded.
+	 */
+	@Override
+	public ArrayList<Tuple> getMatchingTuples(Predicate p) {
+		p.checkType(this.getTupleDesc());
+		ArrayList<Tuple> result = new ArrayList<>();
+		for (int i = 0; i < this.getNumPages(); i++) {
+			PaxPage page = (PaxPage) this.readPage(i);
+			for (int slot = 0; slot < page.getCapacity(); slot++) {
+				if (page.slotOccupied(slot) && page.matches(p, slot)) {
+					result.add(page.getTuple(slot));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Passes every value of an int field to the consumer, in file order,
+	 * without decoding the other fields.
+	 */
+	public void forEachInt(int field, IntConsumer consumer) {
+		if (this.getTupleDesc().getType(field) != Type.INT) {
+			throw new IllegalArgumentException("field " + field + " is not an int field");
+		}
+		for (int i = 0; i < this.getNumPages(); i++) {
+			((PaxPage) this.readPage(i)).forEachInt(field, consumer);
+		}
+	}
+}
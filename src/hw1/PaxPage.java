@@ -0,0 +1,335 @@
+package hw1;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.function.IntConsumer;
+
+/**
+ * A page of a PaxFile, storing its tuples column by column (PAX): the values of
+ * each int field are a contiguous array of ints, and each string field is an
+ * array of offsets into a string region at the end of the page, so a scan of
+ * one field only touches that field's part of the page.
+ * <p>
+ * Page format: the start of the string region as a short, a bitmap of the
+ * occupied slots, then one minipage per field of getCapacity() entries: 4-byte
+ * ints for int fields, 2-byte offsets for string fields. Strings are stored as
+ * a length byte and their characters, from the end of the page downwards.
+ * <p>
+ * The page image is updated in place, so getPageData only copies it.
+ */
+public class PaxPage extends HeapPage {
+	private static final int HEADER_SIZE = 2;
+	/* string length the capacity of a page is planned for */
+	private static final int EXPECTED_STRING_SIZE = 16;
+
+	private TupleDesc td;
+	private byte[] data;
+	private int capacity;
+	private int[] columnOffsets;
+	private int freeEnd; // start of the string region
+	private int stringBytes = -1; // bytes of live strings, counted when first needed
+
+	public PaxPage(int id, byte[] data, int tableId, TupleDesc td) {
+		super(id, tableId);
+		this.td = td;
+		this.data = data;
+		this.capacity = capacity(td);
+		this.columnOffsets = columnOffsets(td, this.capacity);
+		this.freeEnd = readShort(0);
+		if (this.freeEnd == 0) {
+			// a page that has never been written
+			this.freeEnd = HeapFile.PAGE_SIZE;
+		}
+	}
+
+	/**
+	 * Creates an empty page.
+	 */
+	public PaxPage(int id, int tableId, TupleDesc td) {
+		this(id, new byte[HeapFile.PAGE_SIZE], tableId, td);
+	}
+
+	/**
+	 * @return the number of slots of a page for tuples of the given type,
+	 *         planning for strings of EXPECTED_STRING_SIZE characters
+	 */
+	static int capacity(TupleDesc td) {
+		int bits = 1;
+		for (int j = 0; j < td.numFields(); j++) {
+			bits += 8 * (td.getType(j) == Type.INT ? PageLayout.INT_SIZE : 2 + 1 + EXPECTED_STRING_SIZE);
+		}
+		return 8 * (HeapFile.PAGE_SIZE - HEADER_SIZE) / bits;
+	}
+
+	/* start of each field's minipage, followed by the end of the last one */
+	private static int[] columnOffsets(TupleDesc td, int capacity) {
+		int[] offsets = new int[td.numFields() + 1];
+		int offset = HEADER_SIZE + (capacity + 7) / 8;
+		for (int j = 0; j < td.numFields(); j++) {
+			offsets[j] = offset;
+			offset += capacity * (td.getType(j) == Type.INT ? PageLayout.INT_SIZE : 2);
+		}
+		offsets[td.numFields()] = offset;
+		return offsets;
+	}
+
+	/**
+	 * @return the offset of a field's minipage from the start of the page
+	 */
+	public int getColumnOffset(int field) {
+		return this.columnOffsets[field];
+	}
+
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	@Override
+	public int getNumSlots() {
+		return this.capacity;
+	}
+
+	@Override
+	public boolean slotOccupied(int s) {
+		return (this.data[HEADER_SIZE + (s >> 3)] >> (s & 7) & 1) == 1;
+	}
+
+	@Override
+	public void setSlotOccupied(int s, boolean value) {
+		if (value) {
+			this.data[HEADER_SIZE + (s >> 3)] |= 1 << (s & 7);
+		} else {
+			this.data[HEADER_SIZE + (s >> 3)] &= ~(1 << (s & 7));
+		}
+	}
+
+	/* end of the minipages, where the string region can start */
+	private int columnsEnd() {
+		return this.columnOffsets[this.td.numFields()];
+	}
+
+	/* the bytes the string region can still grow by, after compaction */
+	private int getStringSpace() {
+		if (this.stringBytes == -1) {
+			this.stringBytes = 0;
+			for (int slot = 0; slot < this.capacity; slot++) {
+				if (slotOccupied(slot)) {
+					for (int j = 0; j < this.td.numFields(); j++) {
+						if (this.td.getType(j) == Type.STRING) {
+							this.stringBytes += 1 + (this.data[readShort(stringOffset(j, slot))] & 0xFF);
+						}
+					}
+				}
+			}
+		}
+		return HeapFile.PAGE_SIZE - columnsEnd() - this.stringBytes;
+	}
+
+	/**
+	 * Returns the first empty slot if the strings of a tuple of the largest
+	 * possible size still fit on the page, or -1 otherwise.
+	 */
+	@Override
+	public int getFirstFreeSlot() {
+		int maxStrings = 0;
+		for (int j = 0; j < this.td.numFields(); j++) {
+			if (this.td.getType(j) == Type.STRING) {
+				maxStrings += PageLayout.STRING_SIZE;
+			}
+		}
+		return getStringSpace() < maxStrings ? -1 : emptySlot();
+	}
+
+	private int emptySlot() {
+		for (int slot = 0; slot < this.capacity; slot++) {
+			if (!slotOccupied(slot)) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Adds the tuple in the first empty slot, compacting the string region if
+	 * it is fragmented.
+	 *
+	 * @throws Exception if the tuple does not fit or does not belong to the
+	 *                   table
+	 */
+	@Override
+	public void addTuple(Tuple t) throws Exception {
+		if (!t.getDesc().equals(this.td)) {
+			throw new Exception();
+		}
+		int slot = emptySlot();
+		int needed = 0;
+		for (int j = 0; j < this.td.numFields(); j++) {
+			if (this.td.getType(j) == Type.STRING) {
+				needed += 1 + ((StringField) t.getField(j)).getValue().length();
+			}
+		}
+		if (slot == -1 || needed > getStringSpace()) {
+			throw new Exception();
+		}
+		if (this.freeEnd - columnsEnd() < needed) {
+			compact();
+		}
+		for (int j = 0; j < this.td.numFields(); j++) {
+			byte[] field = t.getField(j).toByteArray();
+			if (this.td.getType(j) == Type.INT) {
+				System.arraycopy(field, 0, this.data, this.columnOffsets[j] + slot * PageLayout.INT_SIZE,
+						PageLayout.INT_SIZE);
+			} else {
+				int length = 1 + (field[0] & 0xFF);
+				this.freeEnd -= length;
+				System.arraycopy(field, 0, this.data, this.freeEnd, length);
+				writeShort(stringOffset(j, slot), this.freeEnd);
+				this.stringBytes += length;
+			}
+		}
+		writeShort(0, this.freeEnd);
+		setSlotOccupied(slot, true);
+		t.setPid(this.getId());
+		t.setId(slot);
+	}
+
+	/**
+	 * Removes the tuple from its slot. Its strings are reclaimed by the next
+	 * compaction.
+	 */
+	@Override
+	public void deleteTuple(Tuple t) throws Exception {
+		if (t.getPid() != this.getId() || t.getId() >= this.capacity || !slotOccupied(t.getId())) {
+			throw new Exception();
+		}
+		getStringSpace();
+		for (int j = 0; j < this.td.numFields(); j++) {
+			if (this.td.getType(j) == Type.STRING) {
+				this.stringBytes -= 1 + (this.data[readShort(stringOffset(j, t.getId()))] & 0xFF);
+			}
+		}
+		setSlotOccupied(t.getId(), false);
+	}
+
+	/**
+	 * Rewrites the strings of the occupied slots to the end of the page without
+	 * gaps. Slots are not changed.
+	 */
+	public void compact() {
+		byte[] strings = new byte[HeapFile.PAGE_SIZE];
+		int end = HeapFile.PAGE_SIZE;
+		for (int slot = 0; slot < this.capacity; slot++) {
+			if (!slotOccupied(slot)) {
+				continue;
+			}
+			for (int j = 0; j < this.td.numFields(); j++) {
+				if (this.td.getType(j) == Type.STRING) {
+					int offset = readShort(stringOffset(j, slot));
+					int length = 1 + (this.data[offset] & 0xFF);
+					end -= length;
+					System.arraycopy(this.data, offset, strings, end, length);
+					writeShort(stringOffset(j, slot), end);
+				}
+			}
+		}
+		System.arraycopy(strings, end, this.data, end, HeapFile.PAGE_SIZE - end);
+		this.freeEnd = end;
+		writeShort(0, this.freeEnd);
+	}
+
+	/**
+	 * Evaluates a predicate on the encoded value of its field in an occupied
+	 * slot, without decoding the tuple.
+	 */
+	public boolean matches(Predicate p, int slot) {
+		int field = p.getField();
+		int offset = this.td.getType(field) == Type.INT
+				? this.columnOffsets[field] + slot * PageLayout.INT_SIZE
+				: readShort(stringOffset(field, slot));
+		return p.matches(this.data, offset);
+	}
+
+	/**
+	 * Passes the values of an int field in the occupied slots to the consumer,
+	 * reading only that field's minipage.
+	 */
+	public void forEachInt(int field, IntConsumer consumer) {
+		int offset = this.columnOffsets[field];
+		for (int slot = 0; slot < this.capacity; slot++) {
+			if ((this.data[HEADER_SIZE + (slot >> 3)] >> (slot & 7) & 1) == 1) {
+				consumer.accept(PageLayout.readInt(this.data, offset + slot * PageLayout.INT_SIZE));
+			}
+		}
+	}
+
+	/**
+	 * Reads the int value of a field in an occupied slot.
+	 */
+	public int getInt(int field, int slot) {
+		return PageLayout.readInt(this.data, this.columnOffsets[field] + slot * PageLayout.INT_SIZE);
+	}
+
+	/**
+	 * Reads the string value of a field in an occupied slot.
+	 */
+	public String getString(int field, int slot) {
+		int offset = readShort(stringOffset(field, slot));
+		int length = this.data[offset] & 0xFF;
+		char[] chars = new char[length];
+		for (int k = 0; k < length; k++) {
+			chars[k] = (char) this.data[offset + 1 + k];
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Reads the value of a field in an occupied slot.
+	 */
+	public Field getField(int field, int slot) {
+		return this.td.getType(field) == Type.INT ? new IntField(getInt(field, slot))
+				: new StringField(getString(field, slot));
+	}
+
+	@Override
+	public Tuple getTuple(int slot) {
+		if (slot >= this.capacity || !slotOccupied(slot)) {
+			return null;
+		}
+		Tuple t = new Tuple(this.td);
+		t.setPid(this.getId());
+		t.setId(slot);
+		for (int j = 0; j < this.td.numFields(); j++) {
+			t.setField(j, getField(j, slot));
+		}
+		return t;
+	}
+
+	@Override
+	public byte[] getPageData() {
+		return this.data.clone();
+	}
+
+	@Override
+	public Iterator<Tuple> iterator() {
+		ArrayList<Tuple> tuples = new ArrayList<>();
+		for (int slot = 0; slot < this.capacity; slot++) {
+			if (slotOccupied(slot)) {
+				tuples.add(getTuple(slot));
+			}
+		}
+		return tuples.iterator();
+	}
+
+	private int stringOffset(int field, int slot) {
+		return this.columnOffsets[field] + slot * 2;
+	}
+
+	private int readShort(int offset) {
+		return ((this.data[offset] & 0xFF) << 8) | (this.data[offset + 1] & 0xFF);
+	}
+
+	private void writeShort(int offset, int value) {
+		this.data[offset] = (byte) (value >> 8);
+		this.data[offset + 1] = (byte) value;
+	}
+}
@@ -0,0 +1,121 @@
+package hw1;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A scan of a heap file followed by fused filter and project stages, executed
+ * by several worker threads with morsel-driven parallelism. The file is cut
+ * into morsels of MORSEL_PAGES pages; each worker repeatedly claims the next
+ * morsel, decodes it batch by batch, runs each batch through all of the stages
+ * and pushes it into its own fork of the sink. Workers only synchronize to
+ * claim a morsel and, at the end, when the forks are merged into the sink.
+ * <p>
+ * The sink ends the pipeline: CollectSink decodes the rows and AggregateSink
+ * computes an aggregate. The pipeline breakers HashBuildSink, which builds the
+ * table of a hash join, and SortSink, which sorts the rows into spilled runs,
+ * end one pipeline so that another can start from their result; a
+ * HashProbeSink then joins a second pipeline against the built table. All of
+ * them keep their state per worker and combine it in merge, so a breaker is
+ * the only point where the workers of a pipeline wait for each other.
+ */
+public class Pipeline {
+	public static final int MORSEL_PAGES = 16;
+
+	private HeapFile hf;
+	private ArrayList<Predicate> filters;
+	private int[] projection;
+
+	public Pipeline(HeapFile hf) {
+		this.hf = hf;
+		this.filters = new ArrayList<>();
+	}
+
+	/**
+	 * Adds a filter stage. Predicates refer to the fields of the file and are
+	 * applied before the projection. Pages that the file's zone map or Bloom
+	 * filters rule out are not read.
+	 */
+	public Pipeline filter(Predicate p) {
+		p.checkType(this.hf.getTupleDesc());
+		this.filters.add(p);
+		return this;
+	}
+
+	/**
+	 * Keeps only the given fields of the file, in the given order.
+	 */
+	public Pipeline project(int[] fields) {
+		this.projection = fields.clone();
+		return this;
+	}
+
+	/**
+	 * Runs the pipeline into the sink and returns it.
+	 *
+	 * @param sink       the sink receiving the rows
+	 * @param numThreads the number of workers
+	 */
+	public <S extends PipelineSink> S execute(S sink, int numThreads) throws IOException {
+		int[] fields = this.projection;
+		if (fields == null) {
+			fields = new int[this.hf.getTupleDesc().numFields()];
+			for (int i = 0; i < fields.length; i++) {
+				fields[i] = i;
+			}
+		}
+		sink.open(this.hf, fields);
+		AtomicInteger nextPage = new AtomicInteger();
+		int workers = Math.max(1, Math.min(numThreads, (this.hf.getNumPages() + MORSEL_PAGES - 1) / MORSEL_PAGES));
+		if (workers == 1) {
+			run(sink, nextPage);
+			return sink;
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		try {
+			ArrayList<Future<PipelineSink>> forks = new ArrayList<>();
+			for (int i = 0; i < workers; i++) {
+				forks.add(pool.submit(() -> run(sink.fork(), nextPage)));
+			}
+			for (Future<PipelineSink> fork : forks) {
+				sink.merge(fork.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		return sink;
+	}
+
+	/* the loop of one worker */
+	private PipelineSink run(PipelineSink sink, AtomicInteger nextPage) {
+		int numPages = this.hf.getNumPages();
+		BatchScan scan = new BatchScan(this.hf, 0, 0, RowBatch.DEFAULT_CAPACITY);
+		scan.setZoneFilters(this.filters);
+		BatchOperator op = scan;
+		for (Predicate p : this.filters) {
+			op = new BatchFilter(op, p);
+		}
+		if (this.projection != null) {
+			op = new BatchProject(op, this.projection);
+		}
+		int start;
+		while ((start = nextPage.getAndAdd(MORSEL_PAGES)) < numPages) {
+			scan.setRange(start, Math.min(numPages, start + MORSEL_PAGES));
+			RowBatch batch;
+			while ((batch = op.next()) != null) {
+				sink.consume(batch);
+			}
+		}
+		return sink;
+	}
+}
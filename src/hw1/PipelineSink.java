@@ -0,0 +1,36 @@
+package hw1;
+
+/**
+ * The end of a Pipeline, which the pipeline's workers push batches into. Each
+ * worker consumes into its own fork of the sink, so consume needs no
+ * synchronization; the forks are merged back into the original sink once all
+ * morsels have been processed.
+ */
+public interface PipelineSink {
+
+	/**
+	 * Consumes the selected rows of a batch. The batch is only valid during the
+	 * call.
+	 */
+	public void consume(RowBatch batch);
+
+	/**
+	 * @return an empty sink of the same kind, for one worker
+	 */
+	public PipelineSink fork();
+
+	/**
+	 * Adds the rows consumed by a fork of this sink.
+	 */
+	public void merge(PipelineSink other);
+
+	/**
+	 * Called by the Pipeline before it pushes any batch into the sink.
+	 *
+	 * @param source the file the pipeline scans
+	 * @param fields for each field of the rows pushed into the sink, the field
+	 *               of the file it comes from
+	 */
+	public default void open(HeapFile source, int[] fields) {
+	}
+}
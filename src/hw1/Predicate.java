@@ -0,0 +1,134 @@
+package hw1;
+
+/**
+ * A comparison of one field of a tuple against a constant, i.e.
+ * `field op operand`. It can be evaluated on a Tuple, or directly on the
+ * encoded field bytes of a page image so that rows which do not match are
+ * never decoded.
+ */
+public class Predicate {
+
+	private int field;
+	private RelationalOperator op;
+	private Field operand;
+
+	/* the operand in its on-disk form */
+	private int intOperand;
+	private byte[] stringOperand;
+
+	/**
+	 * @param field   the index of the field to compare
+	 * @param op      the comparison
+	 * @param operand the constant to compare the field to
+	 */
+	public Predicate(int field, RelationalOperator op, Field operand) {
+		this.field = field;
+		this.op = op;
+		this.operand = operand;
+		if (operand.getType() == Type.INT) {
+			this.intOperand = ((IntField) operand).getValue();
+		} else {
+			this.stringOperand = operand.toByteArray();
+		}
+	}
+
+	public int getField() {
+		return this.field;
+	}
+
+	public RelationalOperator getOp() {
+		return this.op;
+	}
+
+	public Field getOperand() {
+		return this.operand;
+	}
+
+	/**
+	 * Checks that the predicate can be evaluated on tuples with the given
+	 * TupleDesc. The encoded paths compare the operand's bytes with the field's,
+	 * so an operand of another type would compare the wrong bytes.
+	 *
+	 * @throws IllegalArgumentException if the field does not exist or is not of
+	 *                                  the operand's type
+	 */
+	public void checkType(TupleDesc td) {
+		if (this.field < 0 || this.field >= td.numFields() || td.getType(this.field) != this.operand.getType()) {
+			throw new IllegalArgumentException("field " + this.field + " cannot be compared to " + this.operand);
+		}
+	}
+
+	public boolean evaluate(Tuple t) {
+		return t.getField(this.field).compare(this.op, this.operand);
+	}
+
+	/**
+	 * Evaluates the predicate on an encoded field, which must be of the
+	 * operand's type (see checkType).
+	 *
+	 * @param data   a page image
+	 * @param offset the offset of the compared field within the page
+	 */
+	public boolean matches(byte[] data, int offset) {
+		return test(this.op, compare(data, offset));
+	}
+
+	/**
+	 * Compares an encoded field with the operand.
+	 *
+	 * @return a negative number, zero or a positive number as the field is
+	 *         smaller than, equal to or greater than the operand
+	 */
+	public int compare(byte[] data, int offset) {
+		if (this.stringOperand == null) {
+			return Integer.compare(PageLayout.readInt(data, offset), this.intOperand);
+		}
+		return compareStrings(data, offset, this.stringOperand, 0);
+	}
+
+	/**
+	 * Compares an encoded string with another one (length byte followed by
+	 * characters), with the same ordering as String.compareTo on the decoded
+	 * StringFields.
+	 */
+	public static int compareStrings(byte[] data, int offset, byte[] other) {
+		return compareStrings(data, offset, other, 0);
+	}
+
+	public static int compareStrings(byte[] data, int offset, byte[] other, int otherOffset) {
+		int len = data[offset];
+		int otherLen = other[otherOffset];
+		int n = Math.min(len, otherLen);
+		for (int i = 1; i <= n; i++) {
+			// StringField widens each byte to a char, sign extension included
+			char a = (char) data[offset + i];
+			char b = (char) other[otherOffset + i];
+			if (a != b) {
+				return a - b;
+			}
+		}
+		return len - otherLen;
+	}
+
+	/**
+	 * @param cmp the result of comparing the field to the operand
+	 * @return whether the comparison yields true
+	 */
+	public static boolean test(RelationalOperator op, int cmp) {
+		switch (op) {
+		case EQ:
+			return cmp == 0;
+		case NOTEQ:
+			return cmp != 0;
+		case GT:
+			return cmp > 0;
+		case GTE:
+			return cmp >= 0;
+		case LT:
+			return cmp < 0;
+		case LTE:
+			return cmp <= 0;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,462 @@
+package hw1;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+import hw4.BufferPool;
+import hw4.Permissions;
+
+/**
+ * A sorted index over a string field of a HeapFile for prefix (LIKE
+ * 'prefix%') and range lookups. The entries are front coded in PrefixPages, so
+ * that sorted strings sharing long prefixes take a few bytes each instead of
+ * the 129 bytes of a StringField, and the first string of each page is kept
+ * in memory to find where a lookup starts. Pages are read through the
+ * BufferPool with read locks.
+ * <p>
+ * Tuples inserted after build are kept in memory in sorted order and deleted
+ * ones are remembered by position, and both are merged into the results of
+ * lookups. Each transaction's changes are logged until it completes, and
+ * undone if it aborts. Once no transaction has changes pending and the
+ * changes outnumber an eighth of the entries in the file, the file is
+ * rewritten with them merged in.
+ */
+public class PrefixIndexFile extends HeapFile implements Index {
+
+	/* an entry that is not in the file */
+	private static class Entry {
+		String key;
+		int pid;
+		int slot;
+
+		Entry(String key, int pid, int slot) {
+			this.key = key;
+			this.pid = pid;
+			this.slot = slot;
+		}
+	}
+
+	/* one change made by a transaction that has not completed */
+	private static class Change {
+		boolean insert;
+		boolean inFile; // a deleted entry of the file rather than of inserted
+		Entry entry;
+
+		Change(boolean insert, boolean inFile, Entry entry) {
+			this.insert = insert;
+			this.inFile = inFile;
+			this.entry = entry;
+		}
+	}
+
+	private static final TupleDesc ENTRY_DESC = new TupleDesc(new Type[] { Type.STRING, Type.INT, Type.INT },
+			new String[] { "key", "pid", "slot" });
+
+	/* the fewest changes that are merged into the file */
+	private static final int MIN_MERGE = 1024;
+
+	private static final Comparator<Entry> ORDER = Comparator.comparing((Entry e) -> e.key)
+			.thenComparingInt(e -> e.pid).thenComparingInt(e -> e.slot);
+
+	private HeapFile table;
+	private int keyField;
+	private int numSlots;
+	private String[] firstKeys;
+	private int numEntries; // in the file
+	private int generation; // counts the rewrites of the file
+	private TreeSet<Entry> inserted;
+	private RoaringBitmap deleted; // positions pid * numSlots + slot of removed file entries
+	private IntObjectMap<ArrayList<Change>> changes; // tid -> the changes of the transaction, in order
+
+	/**
+	 * Opens an index file that has been created with build.
+	 *
+	 * @param f        the index file
+	 * @param table    the indexed table
+	 * @param keyField the indexed field of the table, a string
+	 */
+	public PrefixIndexFile(File f, HeapFile table, int keyField) {
+		super(f, ENTRY_DESC);
+		if (table.getTupleDesc().getType(keyField) != Type.STRING) {
+			throw new IllegalArgumentException("a prefix index needs a string field");
+		}
+		this.table = table;
+		this.keyField = keyField;
+		this.numSlots = table.getLayout().getNumSlots();
+		readFirstKeys();
+		this.inserted = new TreeSet<>(ORDER);
+		this.deleted = new RoaringBitmap();
+		this.changes = new IntObjectMap<>();
+	}
+
+	/**
+	 * Builds the index of a table from a sorted scan of its entries. The entries
+	 * are sorted with a SortSink, which keeps at most
+	 * ExternalSort.DEFAULT_MEMORY_PAGES pages of them in memory and spills the
+	 * rest to sorted runs, and are written as they stream out of the merge. Any
+	 * existing content of f is replaced, so this must not run while the
+	 * BufferPool holds pages of the index.
+	 */
+	public static PrefixIndexFile build(File f, HeapFile table, int keyField) throws IOException {
+		PageLayout layout = table.getLayout();
+		SortSink sorter = new SortSink(new int[] { 0, 1, 2 }, new boolean[] { true, true, true },
+				ExternalSort.DEFAULT_MEMORY_PAGES, ExternalSort.DEFAULT_FAN_IN);
+		for (int pid = 0; pid < table.getNumPages(); pid++) {
+			byte[] data = table.readPageData(pid);
+			for (int slot = 0; slot < layout.getNumSlots(); slot++) {
+				if (layout.slotOccupied(data, slot)) {
+					Tuple entry = new Tuple(ENTRY_DESC);
+					entry.setField(0, layout.readTuple(data, pid, slot).getField(keyField));
+					entry.setField(1, new IntField(pid));
+					entry.setField(2, new IntField(slot));
+					sorter.add(entry);
+				}
+			}
+		}
+
+		try (EntryWriter out = new EntryWriter(f)) {
+			sorter.output(e -> out.add(((StringField) e.getField(0)).getValue(),
+					((IntField) e.getField(1)).getValue(), ((IntField) e.getField(2)).getValue()));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return new PrefixIndexFile(f, table, keyField);
+	}
+
+	private void readFirstKeys() {
+		this.firstKeys = new String[getNumPages()];
+		this.numEntries = 0;
+		for (int pid = 0; pid < this.firstKeys.length; pid++) {
+			PrefixPage page = (PrefixPage) readPage(pid);
+			this.firstKeys[pid] = page.getCount() == 0 ? "" : page.getKey(0);
+			this.numEntries += page.getCount();
+		}
+	}
+
+	/* writes entries in key order to consecutive PrefixPages of a file */
+	private static class EntryWriter implements Closeable {
+		private OutputStream out;
+		private PrefixPage page;
+
+		public EntryWriter(File f) throws IOException {
+			this.out = new BufferedOutputStream(new FileOutputStream(f), 16 * PAGE_SIZE);
+			this.page = new PrefixPage(0, 0);
+		}
+
+		public void add(String key, int pid, int slot) {
+			if (!this.page.add(key, pid, slot)) {
+				write();
+				this.page = new PrefixPage(this.page.getId() + 1, 0);
+				this.page.add(key, pid, slot);
+			}
+		}
+
+		public void add(Entry e) {
+			add(e.key, e.pid, e.slot);
+		}
+
+		private void write() {
+			try {
+				this.out.write(this.page.getPageData());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		public void close() throws IOException {
+			try {
+				if (this.page.getCount() > 0) {
+					write();
+				}
+			} finally {
+				this.out.close();
+			}
+		}
+	}
+
+	/** Index pages have no zone map */
+	@Override
+	public ZoneMap getZoneMap() {
+		return null;
+	}
+
+	@Override
+	public HeapPage readPage(int id) {
+		return new PrefixPage(id, readPageData(id), this.getId());
+	}
+
+	public HeapFile getTable() {
+		return this.table;
+	}
+
+	public int getKeyField() {
+		return this.keyField;
+	}
+
+	public synchronized void insert(int tid, Field key, int pid, int slot) {
+		Entry e = new Entry(((StringField) key).getValue(), pid, slot);
+		this.inserted.add(e);
+		log(tid, new Change(true, false, e));
+	}
+
+	public synchronized boolean delete(int tid, Field key, int pid, int slot) {
+		Entry e = new Entry(((StringField) key).getValue(), pid, slot);
+		if (this.inserted.remove(e)) {
+			log(tid, new Change(false, false, e));
+			return true;
+		}
+		int position = pid * this.numSlots + slot;
+		if (this.deleted.contains(position)) {
+			return false;
+		}
+		this.deleted.add(position);
+		log(tid, new Change(false, true, e));
+		return true;
+	}
+
+	/**
+	 * Forgets the changes of a committed transaction, or undoes those of an
+	 * aborted one in reverse order. The changes of completed transactions are
+	 * then merged into the file if there are enough of them.
+	 */
+	public synchronized void transactionComplete(int tid, boolean commit) {
+		ArrayList<Change> log = this.changes.remove(tid);
+		if (log != null && !commit) {
+			for (int i = log.size() - 1; i >= 0; i--) {
+				Change change = log.get(i);
+				if (change.insert) {
+					this.inserted.remove(change.entry);
+				} else if (change.inFile) {
+					this.deleted.remove(change.entry.pid * this.numSlots + change.entry.slot);
+				} else {
+					this.inserted.add(change.entry);
+				}
+			}
+		}
+		if (this.changes.isEmpty()
+				&& this.inserted.size() + this.deleted.getCardinality() > Math.max(MIN_MERGE, this.numEntries / 8)) {
+			merge();
+		}
+	}
+
+	/*
+	 * Rewrites the file with the inserted entries and without the deleted ones.
+	 * This runs within BufferPool.transactionComplete, which holds the pool, so
+	 * no page of the index is read meanwhile. The merge is put off while a
+	 * transaction holds a page of the index, and if the file cannot be written
+	 * the changes simply stay in memory.
+	 */
+	private void merge() {
+		try {
+			Database.getBufferPool().discardPages(this.getId());
+		} catch (IllegalStateException e) {
+			return;
+		}
+		File tmp = new File(getFile().getPath() + ".tmp");
+		Iterator<Entry> added = this.inserted.iterator();
+		Entry next = added.hasNext() ? added.next() : null;
+		try (EntryWriter out = new EntryWriter(tmp)) {
+			for (int pid = 0; pid < this.firstKeys.length; pid++) {
+				PrefixPage page = (PrefixPage) readPage(pid);
+				for (int i = 0; i < page.getCount(); i++) {
+					Entry e = new Entry(page.getKey(i), page.getEntryPid(i), page.getEntrySlot(i));
+					if (this.deleted.contains(e.pid * this.numSlots + e.slot)) {
+						continue;
+					}
+					while (next != null && ORDER.compare(next, e) < 0) {
+						out.add(next);
+						next = added.hasNext() ? added.next() : null;
+					}
+					out.add(e);
+				}
+			}
+			while (next != null) {
+				out.add(next);
+				next = added.hasNext() ? added.next() : null;
+			}
+		} catch (IOException | UncheckedIOException e) {
+			tmp.delete();
+			return;
+		}
+		try {
+			Files.move(tmp.toPath(), getFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			tmp.delete();
+			return;
+		}
+		this.inserted.clear();
+		this.deleted = new RoaringBitmap();
+		readFirstKeys();
+		this.generation++;
+	}
+
+	private void log(int tid, Change change) {
+		ArrayList<Change> log = this.changes.get(tid);
+		if (log == null) {
+			log = new ArrayList<>();
+			this.changes.put(tid, log);
+		}
+		log.add(change);
+	}
+
+	/**
+	 * Passes the entries whose key starts with the prefix to the consumer, in
+	 * key order.
+	 */
+	public void prefix(int tid, String prefix, EntryConsumer consumer) throws Exception {
+		scan(tid, prefix, k -> k.compareTo(prefix) < 0, k -> !k.startsWith(prefix), consumer);
+	}
+
+	/**
+	 * Passes the entries whose key lies between two bounds to the consumer, in
+	 * key order.
+	 *
+	 * @param lowOp  GT or GTE, or null for no lower bound
+	 * @param highOp LT or LTE, or null for no upper bound
+	 */
+	public void scan(int tid, RelationalOperator lowOp, Field low, RelationalOperator highOp, Field high,
+			EntryConsumer consumer) throws Exception {
+		if ((lowOp != null && lowOp != RelationalOperator.GT && lowOp != RelationalOperator.GTE)
+				|| (highOp != null && highOp != RelationalOperator.LT && highOp != RelationalOperator.LTE)) {
+			throw new IllegalArgumentException("invalid bounds " + lowOp + ", " + highOp);
+		}
+		String lowKey = lowOp == null ? null : ((StringField) low).getValue();
+		String highKey = highOp == null ? null : ((StringField) high).getValue();
+		Predicate<String> below = k -> lowKey != null
+				&& (lowOp == RelationalOperator.GT ? k.compareTo(lowKey) <= 0 : k.compareTo(lowKey) < 0);
+		Predicate<String> above = k -> highKey != null
+				&& (highOp == RelationalOperator.LT ? k.compareTo(highKey) >= 0 : k.compareTo(highKey) > 0);
+		scan(tid, lowKey, below, above, consumer);
+	}
+
+	/**
+	 * Returns the tuples whose key starts with the prefix, in key order. The
+	 * tuples are read through the BufferPool with read locks.
+	 */
+	public ArrayList<Tuple> findPrefix(int tid, String prefix) throws Exception {
+		ArrayList<Entry> entries = new ArrayList<>();
+		prefix(tid, prefix, (key, pid, slot) -> entries.add(new Entry(((StringField) key).getValue(), pid, slot)));
+		return fetch(tid, entries);
+	}
+
+	/**
+	 * Returns the tuples whose key lies between two bounds, in key order.
+	 *
+	 * @see #scan(int, RelationalOperator, Field, RelationalOperator, Field,
+	 *      EntryConsumer)
+	 */
+	public ArrayList<Tuple> search(int tid, RelationalOperator lowOp, Field low, RelationalOperator highOp,
+			Field high) throws Exception {
+		ArrayList<Entry> entries = new ArrayList<>();
+		scan(tid, lowOp, low, highOp, high,
+				(key, pid, slot) -> entries.add(new Entry(((StringField) key).getValue(), pid, slot)));
+		return fetch(tid, entries);
+	}
+
+	/*
+	 * Passes on the entries from start on that are neither below the range nor,
+	 * at which point the scan stops, above it.
+	 */
+	private void scan(int tid, String start, Predicate<String> below, Predicate<String> above,
+			EntryConsumer consumer) throws Exception {
+		ArrayList<Entry> result;
+		while (true) {
+			int generation;
+			int first;
+			int numPages;
+			synchronized (this) {
+				generation = this.generation;
+				first = start == null ? 0 : startPage(start);
+				numPages = this.firstKeys.length;
+			}
+
+			ArrayList<Entry> found = new ArrayList<>();
+			scan: for (int pid = first; pid < numPages; pid++) {
+				PrefixPage page = (PrefixPage) Database.getBufferPool().getPage(tid, this.getId(), pid,
+						Permissions.READ_ONLY);
+				for (int i = 0; i < page.getCount(); i++) {
+					String key = page.getKey(i);
+					if (below.test(key)) {
+						continue;
+					}
+					if (above.test(key)) {
+						break scan;
+					}
+					found.add(new Entry(key, page.getEntryPid(i), page.getEntrySlot(i)));
+				}
+			}
+
+			synchronized (this) {
+				if (generation != this.generation) {
+					// the file was rewritten before its pages were locked
+					continue;
+				}
+				result = new ArrayList<>(found.size());
+				for (Entry e : found) {
+					if (!this.deleted.contains(e.pid * this.numSlots + e.slot)) {
+						result.add(e);
+					}
+				}
+				int fromFile = result.size();
+				for (Entry e : start == null ? this.inserted
+						: this.inserted.tailSet(new Entry(start, Integer.MIN_VALUE, Integer.MIN_VALUE))) {
+					if (above.test(e.key)) {
+						break;
+					}
+					if (!below.test(e.key)) {
+						result.add(e);
+					}
+				}
+				if (result.size() > fromFile) {
+					Collections.sort(result, ORDER);
+				}
+			}
+			break;
+		}
+		for (Entry e : result) {
+			consumer.accept(new StringField(e.key), e.pid, e.slot);
+		}
+	}
+
+	/* the last page whose first key is smaller than key, where entries equal to key can begin */
+	private int startPage(String key) {
+		int lo = 0;
+		int hi = this.firstKeys.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (this.firstKeys[mid].compareTo(key) < 0) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return Math.max(0, lo - 1);
+	}
+
+	/* the tuples of the entries that still hold the entry's key */
+	private ArrayList<Tuple> fetch(int tid, ArrayList<Entry> entries) throws Exception {
+		BufferPool bp = Database.getBufferPool();
+		ArrayList<Tuple> tuples = new ArrayList<>(entries.size());
+		for (Entry e : entries) {
+			HeapPage hp = bp.getPage(tid, this.table.getId(), e.pid, Permissions.READ_ONLY);
+			Tuple t = hp.getTuple(e.slot);
+			if (t != null && ((StringField) t.getField(this.keyField)).getValue().equals(e.key)) {
+				tuples.add(t);
+			}
+		}
+		return tuples;
+	}
+}
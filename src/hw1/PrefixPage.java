@@ -0,0 +1,129 @@
+package hw1;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A leaf page of a PrefixIndexFile: (string, pid, slot) entries in sorted
+ * order with front coding, so that each string is stored as the length of the
+ * prefix it shares with the string before it and the remaining characters.
+ * The first entry of a page is stored whole, so every page can be decoded on
+ * its own.
+ * <p>
+ * Page format: the entry count as a short, then per entry the shared length
+ * and suffix length as bytes, the suffix, the pid as an int and the slot as a
+ * short. Characters take one byte each, as in StringField.
+ */
+public class PrefixPage extends HeapPage {
+	private static final int HEADER_SIZE = 2;
+	/* the most entries a page can hold, with empty suffixes */
+	private static final int MAX_ENTRIES = (HeapFile.PAGE_SIZE - HEADER_SIZE) / 8;
+
+	private int count;
+	private String[] keys;
+	private int[] pids;
+	private int[] slots;
+	private int size; // encoded size so far, while building
+
+	public PrefixPage(int id, byte[] data, int tableId) {
+		super(id, tableId);
+		ByteBuffer buf = ByteBuffer.wrap(data);
+		this.count = buf.getShort();
+		this.keys = new String[this.count];
+		this.pids = new int[this.count];
+		this.slots = new int[this.count];
+		char[] chars = new char[PageLayout.STRING_SIZE];
+		for (int i = 0; i < this.count; i++) {
+			int shared = buf.get() & 0xFF;
+			int suffix = buf.get() & 0xFF;
+			for (int j = 0; j < suffix; j++) {
+				chars[shared + j] = (char) buf.get();
+			}
+			this.keys[i] = new String(chars, 0, shared + suffix);
+			this.pids[i] = buf.getInt();
+			this.slots[i] = buf.getShort() & 0xFFFF;
+		}
+	}
+
+	/**
+	 * Creates an empty page to be filled with add.
+	 */
+	public PrefixPage(int id, int tableId) {
+		super(id, tableId);
+		this.keys = new String[MAX_ENTRIES];
+		this.pids = new int[MAX_ENTRIES];
+		this.slots = new int[MAX_ENTRIES];
+		this.size = HEADER_SIZE;
+	}
+
+	/**
+	 * Appends an entry, which must not be smaller than the last one.
+	 *
+	 * @return false if the page has no room for it
+	 */
+	public boolean add(String key, int pid, int slot) {
+		int shared = this.count == 0 ? 0 : sharedPrefix(this.keys[this.count - 1], key);
+		int entrySize = 2 + key.length() - shared + 4 + 2;
+		if (this.size + entrySize > HeapFile.PAGE_SIZE || this.count == this.keys.length) {
+			return false;
+		}
+		this.keys[this.count] = key;
+		this.pids[this.count] = pid;
+		this.slots[this.count] = slot;
+		this.count++;
+		this.size += entrySize;
+		return true;
+	}
+
+	public int getCount() {
+		return this.count;
+	}
+
+	public String getKey(int i) {
+		return this.keys[i];
+	}
+
+	public int getEntryPid(int i) {
+		return this.pids[i];
+	}
+
+	public int getEntrySlot(int i) {
+		return this.slots[i];
+	}
+
+	@Override
+	public int getNumSlots() {
+		return this.count;
+	}
+
+	@Override
+	public int getFirstFreeSlot() {
+		return -1;
+	}
+
+	@Override
+	public byte[] getPageData() {
+		ByteBuffer buf = ByteBuffer.allocate(HeapFile.PAGE_SIZE);
+		buf.putShort((short) this.count);
+		for (int i = 0; i < this.count; i++) {
+			String key = this.keys[i];
+			int shared = i == 0 ? 0 : sharedPrefix(this.keys[i - 1], key);
+			buf.put((byte) shared);
+			buf.put((byte) (key.length() - shared));
+			for (int j = shared; j < key.length(); j++) {
+				buf.put((byte) key.charAt(j));
+			}
+			buf.putInt(this.pids[i]);
+			buf.putShort((short) this.slots[i]);
+		}
+		return buf.array();
+	}
+
+	private static int sharedPrefix(String a, String b) {
+		int n = Math.min(a.length(), b.length());
+		int i = 0;
+		while (i < n && a.charAt(i) == b.charAt(i)) {
+			i++;
+		}
+		return i;
+	}
+}
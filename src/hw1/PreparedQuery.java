@@ -0,0 +1,301 @@
+package hw1;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A query that has been parsed, resolved against the Catalog and planned
+ * once, and can then be executed many times with different parameters.
+ * Queries have the form
+ * 
+ * <pre>
+ * SELECT * | field, ... FROM table [WHERE field op value [AND field op value]...]
+ * </pre>
+ * 
+ * where op is one of =, !=, <>, <, <=, >, >= and value is an integer, a
+ * 'quoted string' or a ? parameter.
+ */
+public class PreparedQuery {
+
+	private Catalog catalog;
+	private int catalogVersion;
+	private HeapFile hf;
+	private int[] projection;
+	private TupleDesc td;
+
+	/* one entry per condition of the WHERE clause */
+	private int[] fields;
+	private RelationalOperator[] ops;
+	private Field[] constants; // null for parameters
+	private int numParameters;
+
+	/**
+	 * Parses and plans a query.
+	 *
+	 * @throws IllegalArgumentException if the query is not valid
+	 * @throws NoSuchElementException   if a table or field does not exist
+	 */
+	public PreparedQuery(Catalog catalog, String query) {
+		this(catalog, tokenize(query));
+	}
+
+	PreparedQuery(Catalog catalog, List<String> tokens) {
+		this.catalog = catalog;
+		this.catalogVersion = catalog.getVersion();
+		int pos = expect(tokens, 0, "SELECT");
+
+		ArrayList<String> names = new ArrayList<>();
+		if (token(tokens, pos).equals("*")) {
+			pos++;
+		} else {
+			names.add(token(tokens, pos++));
+			while (token(tokens, pos).equals(",")) {
+				names.add(token(tokens, pos + 1));
+				pos += 2;
+			}
+		}
+		pos = expect(tokens, pos, "FROM");
+		int tableId = catalog.getTableId(token(tokens, pos++));
+		this.hf = catalog.getHeapFile(tableId);
+		TupleDesc in = this.hf.getTupleDesc();
+
+		if (names.isEmpty()) {
+			this.projection = new int[in.numFields()];
+			for (int i = 0; i < this.projection.length; i++) {
+				this.projection[i] = i;
+			}
+		} else {
+			this.projection = new int[names.size()];
+			for (int i = 0; i < this.projection.length; i++) {
+				this.projection[i] = in.nameToId(names.get(i));
+			}
+		}
+		Type[] types = new Type[this.projection.length];
+		String[] fieldNames = new String[this.projection.length];
+		for (int i = 0; i < this.projection.length; i++) {
+			types[i] = in.getType(this.projection[i]);
+			fieldNames[i] = in.getFieldName(this.projection[i]);
+		}
+		this.td = new TupleDesc(types, fieldNames);
+
+		ArrayList<Integer> fields = new ArrayList<>();
+		ArrayList<RelationalOperator> ops = new ArrayList<>();
+		ArrayList<Field> constants = new ArrayList<>();
+		if (pos < tokens.size()) {
+			pos = expect(tokens, pos, "WHERE");
+			while (true) {
+				if (pos + 3 > tokens.size()) {
+					throw new IllegalArgumentException("incomplete condition");
+				}
+				int field = in.nameToId(tokens.get(pos));
+				fields.add(field);
+				ops.add(parseOp(tokens.get(pos + 1)));
+				String value = tokens.get(pos + 2);
+				if (value.equals("?")) {
+					constants.add(null);
+					this.numParameters++;
+				} else {
+					Field constant = parseValue(value);
+					checkType(in, field, constant);
+					constants.add(constant);
+				}
+				pos += 3;
+				if (pos == tokens.size()) {
+					break;
+				}
+				pos = expect(tokens, pos, "AND");
+			}
+		}
+		this.fields = new int[fields.size()];
+		for (int i = 0; i < this.fields.length; i++) {
+			this.fields[i] = fields.get(i);
+		}
+		this.ops = ops.toArray(new RelationalOperator[0]);
+		this.constants = constants.toArray(new Field[0]);
+	}
+
+	/* a copy of a plan, with its own constants */
+	private PreparedQuery(PreparedQuery plan) {
+		this.catalog = plan.catalog;
+		this.catalogVersion = plan.catalogVersion;
+		this.hf = plan.hf;
+		this.projection = plan.projection;
+		this.td = plan.td;
+		this.fields = plan.fields;
+		this.ops = plan.ops;
+		this.constants = plan.constants.clone();
+	}
+
+	/**
+	 * Returns a copy of this plan in which some of the parameters are replaced
+	 * by constants.
+	 *
+	 * @param values one entry per parameter, in order: its value, or null to
+	 *               keep the parameter
+	 */
+	PreparedQuery bind(List<Field> values) {
+		if (values.size() != this.numParameters) {
+			throw new IllegalArgumentException("expected " + this.numParameters + " values, got " + values.size());
+		}
+		PreparedQuery bound = new PreparedQuery(this);
+		int next = 0;
+		for (int i = 0; i < this.constants.length; i++) {
+			if (this.constants[i] != null) {
+				continue;
+			}
+			Field value = values.get(next++);
+			if (value == null) {
+				bound.numParameters++;
+			} else {
+				checkType(this.hf.getTupleDesc(), this.fields[i], value);
+				bound.constants[i] = value;
+			}
+		}
+		return bound;
+	}
+
+	public TupleDesc getTupleDesc() {
+		return this.td;
+	}
+
+	public int getNumParameters() {
+		return this.numParameters;
+	}
+
+	/**
+	 * @return whether the tables this plan was made from are unchanged
+	 */
+	public boolean isValid(Catalog catalog) {
+		return catalog == this.catalog && catalog.getVersion() == this.catalogVersion;
+	}
+
+	/**
+	 * Runs the query.
+	 *
+	 * @param parameters the values of the ? parameters, in order
+	 * @return the result tuples, in file order
+	 */
+	public ArrayList<Tuple> execute(Field... parameters) throws IOException {
+		if (parameters.length != this.numParameters) {
+			throw new IllegalArgumentException(
+					"expected " + this.numParameters + " parameters, got " + parameters.length);
+		}
+		Pipeline pipeline = new Pipeline(this.hf);
+		int next = 0;
+		for (int i = 0; i < this.fields.length; i++) {
+			Field value = this.constants[i];
+			if (value == null) {
+				value = parameters[next++];
+				checkType(this.hf.getTupleDesc(), this.fields[i], value);
+			}
+			pipeline.filter(new Predicate(this.fields[i], this.ops[i], value));
+		}
+		// a single worker keeps the tuples in file order
+		return pipeline.project(this.projection).execute(new CollectSink(), 1).getTuples();
+	}
+
+	/**
+	 * Splits a query into tokens. Keywords are upper-cased, so queries that only
+	 * differ in spacing or keyword case give the same tokens.
+	 */
+	static List<String> tokenize(String query) {
+		ArrayList<String> tokens = new ArrayList<>();
+		int i = 0;
+		while (i < query.length()) {
+			char c = query.charAt(i);
+			int start = i;
+			if (Character.isWhitespace(c)) {
+				i++;
+				continue;
+			} else if (c == '\'') {
+				i = query.indexOf('\'', i + 1);
+				if (i == -1) {
+					throw new IllegalArgumentException("unterminated string in " + query);
+				}
+				i++;
+			} else if (Character.isLetter(c) || c == '_') {
+				while (i < query.length() && (Character.isLetterOrDigit(query.charAt(i)) || query.charAt(i) == '_')) {
+					i++;
+				}
+			} else if (Character.isDigit(c) || (c == '-' && i + 1 < query.length()
+					&& Character.isDigit(query.charAt(i + 1)))) {
+				i++;
+				while (i < query.length() && Character.isDigit(query.charAt(i))) {
+					i++;
+				}
+			} else if ((c == '<' || c == '>' || c == '!') && i + 1 < query.length()
+					&& (query.charAt(i + 1) == '=' || (c == '<' && query.charAt(i + 1) == '>'))) {
+				i += 2;
+			} else {
+				i++;
+			}
+			String token = query.substring(start, i);
+			String upper = token.toUpperCase();
+			if (upper.equals("SELECT") || upper.equals("FROM") || upper.equals("WHERE") || upper.equals("AND")) {
+				token = upper;
+			}
+			tokens.add(token);
+		}
+		return tokens;
+	}
+
+	/**
+	 * @return whether the token is an integer or string literal
+	 */
+	static boolean isLiteral(String token) {
+		char c = token.charAt(0);
+		return c == '\'' || Character.isDigit(c) || (c == '-' && token.length() > 1);
+	}
+
+	static Field parseValue(String token) {
+		if (token.charAt(0) == '\'') {
+			return new StringField(token.substring(1, token.length() - 1));
+		}
+		try {
+			return new IntField(Integer.parseInt(token));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("invalid value " + token);
+		}
+	}
+
+	private static RelationalOperator parseOp(String token) {
+		switch (token) {
+		case "=":
+			return RelationalOperator.EQ;
+		case "!=":
+		case "<>":
+			return RelationalOperator.NOTEQ;
+		case "<":
+			return RelationalOperator.LT;
+		case "<=":
+			return RelationalOperator.LTE;
+		case ">":
+			return RelationalOperator.GT;
+		case ">=":
+			return RelationalOperator.GTE;
+		}
+		throw new IllegalArgumentException("unknown operator " + token);
+	}
+
+	private static void checkType(TupleDesc td, int field, Field value) {
+		if (value.getType() != td.getType(field)) {
+			throw new IllegalArgumentException(td.getFieldName(field) + " is not of type " + value.getType());
+		}
+	}
+
+	private static String token(List<String> tokens, int pos) {
+		if (pos >= tokens.size()) {
+			throw new IllegalArgumentException("unexpected end of query");
+		}
+		return tokens.get(pos);
+	}
+
+	private static int expect(List<String> tokens, int pos, String keyword) {
+		if (pos >= tokens.size() || !tokens.get(pos).equals(keyword)) {
+			throw new IllegalArgumentException("expected " + keyword);
+		}
+		return pos + 1;
+	}
+}
@@ -0,0 +1,113 @@
+package hw1;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded, least recently used cache of PreparedQuery plans keyed by
+ * normalized query text. Normalizing collapses spacing and keyword case and
+ * replaces every literal by a ? parameter, so queries of the same shape with
+ * different constants share one plan. Plans made before a change to the
+ * catalog are discarded and planned again.
+ */
+public class QueryCache {
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private LinkedHashMap<String, PreparedQuery> plans;
+
+	public QueryCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public QueryCache(int capacity) {
+		this.plans = new LinkedHashMap<String, PreparedQuery>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedQuery> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Runs a query, planning it only if no valid plan of the same shape is
+	 * cached.
+	 *
+	 * @param query      the query text, see PreparedQuery
+	 * @param parameters the values of the ? parameters written in the query
+	 */
+	public ArrayList<Tuple> execute(String query, Field... parameters) throws IOException {
+		List<String> tokens = PreparedQuery.tokenize(query);
+		ArrayList<Field> values = new ArrayList<>();
+		String key = normalize(tokens, values);
+		int next = 0;
+		for (int i = 0; i < values.size(); i++) {
+			if (values.get(i) == null) {
+				if (next == parameters.length) {
+					throw new IllegalArgumentException("missing parameter " + (next + 1));
+				}
+				values.set(i, parameters[next++]);
+			}
+		}
+		if (next != parameters.length) {
+			throw new IllegalArgumentException("too many parameters");
+		}
+		return prepare(key, tokens).execute(values.toArray(new Field[0]));
+	}
+
+	/**
+	 * Returns the plan of a query, which may contain ? parameters. The plan is
+	 * shared with the queries of the same shape; the literals of this query
+	 * are bound into the returned copy.
+	 */
+	public PreparedQuery prepare(String query) {
+		List<String> tokens = PreparedQuery.tokenize(query);
+		ArrayList<Field> values = new ArrayList<>();
+		PreparedQuery plan = prepare(normalize(tokens, values), tokens);
+		for (Field value : values) {
+			if (value != null) {
+				return plan.bind(values);
+			}
+		}
+		return plan;
+	}
+
+	public synchronized int size() {
+		return this.plans.size();
+	}
+
+	public synchronized void clear() {
+		this.plans.clear();
+	}
+
+	/*
+	 * replaces the literals of the tokens by ?, and returns the cache key. Each
+	 * ? of the result adds the literal's value to `values`, or null for a ?
+	 * written in the query
+	 */
+	private static String normalize(List<String> tokens, List<Field> values) {
+		StringBuilder key = new StringBuilder();
+		for (int i = 0; i < tokens.size(); i++) {
+			String token = tokens.get(i);
+			if (PreparedQuery.isLiteral(token)) {
+				values.add(PreparedQuery.parseValue(token));
+				tokens.set(i, "?");
+			} else if (token.equals("?")) {
+				values.add(null);
+			}
+			key.append(tokens.get(i)).append(' ');
+		}
+		return key.toString();
+	}
+
+	private synchronized PreparedQuery prepare(String key, List<String> tokens) {
+		Catalog catalog = Database.getCatalog();
+		PreparedQuery plan = this.plans.get(key);
+		if (plan == null || !plan.isValid(catalog)) {
+			plan = new PreparedQuery(catalog, tokens);
+			this.plans.put(key, plan);
+		}
+		return plan;
+	}
+}
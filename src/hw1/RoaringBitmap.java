@@ -0,0 +1,378 @@
+package hw1;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of non-negative ints. The values are split on their upper
+ * 16 bits into chunks, and each chunk keeps its lower 16 bits in a container:
+ * a sorted array while it holds at most ARRAY_LIMIT values, a 2^16 bit bitmap
+ * once it holds more. Sparse chunks so cost two bytes per value and dense
+ * chunks one bit, and intersections and unions work a chunk at a time.
+ */
+public class RoaringBitmap {
+	static final int ARRAY_LIMIT = 4096;
+
+	private char[] keys;
+	private Container[] containers;
+	private int size;
+
+	public RoaringBitmap() {
+		this.keys = new char[4];
+		this.containers = new Container[4];
+	}
+
+	public void add(int x) {
+		char key = (char) (x >>> 16);
+		int i = indexOf(key);
+		if (i < 0) {
+			i = -i - 1;
+			insertContainer(i, key, new ArrayContainer());
+		}
+		this.containers[i] = this.containers[i].add((char) x);
+	}
+
+	public void remove(int x) {
+		int i = indexOf((char) (x >>> 16));
+		if (i < 0) {
+			return;
+		}
+		Container c = this.containers[i].remove((char) x);
+		if (c.getCardinality() == 0) {
+			System.arraycopy(this.keys, i + 1, this.keys, i, this.size - i - 1);
+			System.arraycopy(this.containers, i + 1, this.containers, i, this.size - i - 1);
+			this.containers[--this.size] = null;
+		} else {
+			this.containers[i] = c;
+		}
+	}
+
+	public boolean contains(int x) {
+		int i = indexOf((char) (x >>> 16));
+		return i >= 0 && this.containers[i].contains((char) x);
+	}
+
+	public int getCardinality() {
+		int n = 0;
+		for (int i = 0; i < this.size; i++) {
+			n += this.containers[i].getCardinality();
+		}
+		return n;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Passes the values to the consumer in ascending order.
+	 */
+	public void forEach(IntConsumer consumer) {
+		for (int i = 0; i < this.size; i++) {
+			this.containers[i].forEach(this.keys[i] << 16, consumer);
+		}
+	}
+
+	/**
+	 * @return the values in ascending order
+	 */
+	public int[] toArray() {
+		int[] values = new int[getCardinality()];
+		int[] k = { 0 };
+		forEach(x -> values[k[0]++] = x);
+		return values;
+	}
+
+	/**
+	 * @return the values that are in both bitmaps
+	 */
+	public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+		RoaringBitmap result = new RoaringBitmap();
+		int i = 0;
+		int j = 0;
+		while (i < a.size && j < b.size) {
+			if (a.keys[i] < b.keys[j]) {
+				i++;
+			} else if (a.keys[i] > b.keys[j]) {
+				j++;
+			} else {
+				Container c = a.containers[i].and(b.containers[j]);
+				if (c.getCardinality() > 0) {
+					result.insertContainer(result.size, a.keys[i], c);
+				}
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the values that are in either bitmap
+	 */
+	public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+		RoaringBitmap result = new RoaringBitmap();
+		int i = 0;
+		int j = 0;
+		while (i < a.size || j < b.size) {
+			if (j == b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+				result.insertContainer(result.size, a.keys[i], a.containers[i].copy());
+				i++;
+			} else if (i == a.size || a.keys[i] > b.keys[j]) {
+				result.insertContainer(result.size, b.keys[j], b.containers[j].copy());
+				j++;
+			} else {
+				result.insertContainer(result.size, a.keys[i], a.containers[i].or(b.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	private int indexOf(char key) {
+		return Arrays.binarySearch(this.keys, 0, this.size, key);
+	}
+
+	private void insertContainer(int i, char key, Container c) {
+		if (this.size == this.keys.length) {
+			this.keys = Arrays.copyOf(this.keys, 2 * this.size);
+			this.containers = Arrays.copyOf(this.containers, 2 * this.size);
+		}
+		System.arraycopy(this.keys, i, this.keys, i + 1, this.size - i);
+		System.arraycopy(this.containers, i, this.containers, i + 1, this.size - i);
+		this.keys[i] = key;
+		this.containers[i] = c;
+		this.size++;
+	}
+
+	/* the lower 16 bits of the values of one chunk; updates return the container to use from then on */
+	private abstract static class Container {
+		abstract Container add(char x);
+
+		abstract Container remove(char x);
+
+		abstract boolean contains(char x);
+
+		abstract int getCardinality();
+
+		abstract Container and(Container other);
+
+		abstract Container or(Container other);
+
+		abstract Container copy();
+
+		abstract void forEach(int high, IntConsumer consumer);
+	}
+
+	private static class ArrayContainer extends Container {
+		private char[] values;
+		private int n;
+
+		ArrayContainer() {
+			this.values = new char[4];
+		}
+
+		ArrayContainer(char[] values, int n) {
+			this.values = values;
+			this.n = n;
+		}
+
+		Container add(char x) {
+			int i = Arrays.binarySearch(this.values, 0, this.n, x);
+			if (i >= 0) {
+				return this;
+			}
+			if (this.n == ARRAY_LIMIT) {
+				return toBitmap().add(x);
+			}
+			i = -i - 1;
+			if (this.n == this.values.length) {
+				this.values = Arrays.copyOf(this.values, Math.min(ARRAY_LIMIT, Math.max(4, 2 * this.n)));
+			}
+			System.arraycopy(this.values, i, this.values, i + 1, this.n - i);
+			this.values[i] = x;
+			this.n++;
+			return this;
+		}
+
+		Container remove(char x) {
+			int i = Arrays.binarySearch(this.values, 0, this.n, x);
+			if (i >= 0) {
+				System.arraycopy(this.values, i + 1, this.values, i, this.n - i - 1);
+				this.n--;
+			}
+			return this;
+		}
+
+		boolean contains(char x) {
+			return Arrays.binarySearch(this.values, 0, this.n, x) >= 0;
+		}
+
+		int getCardinality() {
+			return this.n;
+		}
+
+		Container and(Container other) {
+			char[] result = new char[this.n];
+			int k = 0;
+			if (other instanceof ArrayContainer) {
+				ArrayContainer o = (ArrayContainer) other;
+				int i = 0;
+				int j = 0;
+				while (i < this.n && j < o.n) {
+					if (this.values[i] < o.values[j]) {
+						i++;
+					} else if (this.values[i] > o.values[j]) {
+						j++;
+					} else {
+						result[k++] = this.values[i];
+						i++;
+						j++;
+					}
+				}
+			} else {
+				for (int i = 0; i < this.n; i++) {
+					if (other.contains(this.values[i])) {
+						result[k++] = this.values[i];
+					}
+				}
+			}
+			return new ArrayContainer(result, k);
+		}
+
+		Container or(Container other) {
+			if (other instanceof BitmapContainer) {
+				return other.or(this);
+			}
+			ArrayContainer o = (ArrayContainer) other;
+			if (this.n + o.n > ARRAY_LIMIT) {
+				BitmapContainer result = toBitmap();
+				for (int j = 0; j < o.n; j++) {
+					result.add(o.values[j]);
+				}
+				return result.n <= ARRAY_LIMIT ? result.toArray() : result;
+			}
+			char[] result = new char[this.n + o.n];
+			int i = 0;
+			int j = 0;
+			int k = 0;
+			while (i < this.n || j < o.n) {
+				if (j == o.n || (i < this.n && this.values[i] < o.values[j])) {
+					result[k++] = this.values[i++];
+				} else if (i == this.n || this.values[i] > o.values[j]) {
+					result[k++] = o.values[j++];
+				} else {
+					result[k++] = this.values[i++];
+					j++;
+				}
+			}
+			return new ArrayContainer(result, k);
+		}
+
+		Container copy() {
+			return new ArrayContainer(Arrays.copyOf(this.values, this.n), this.n);
+		}
+
+		void forEach(int high, IntConsumer consumer) {
+			for (int i = 0; i < this.n; i++) {
+				consumer.accept(high | this.values[i]);
+			}
+		}
+
+		private BitmapContainer toBitmap() {
+			BitmapContainer bitmap = new BitmapContainer();
+			for (int i = 0; i < this.n; i++) {
+				bitmap.add(this.values[i]);
+			}
+			return bitmap;
+		}
+	}
+
+	private static class BitmapContainer extends Container {
+		private long[] words;
+		private int n;
+
+		BitmapContainer() {
+			this.words = new long[1 << 10];
+		}
+
+		Container add(char x) {
+			long bit = 1L << x;
+			if ((this.words[x >>> 6] & bit) == 0) {
+				this.words[x >>> 6] |= bit;
+				this.n++;
+			}
+			return this;
+		}
+
+		Container remove(char x) {
+			long bit = 1L << x;
+			if ((this.words[x >>> 6] & bit) != 0) {
+				this.words[x >>> 6] &= ~bit;
+				this.n--;
+			}
+			return this.n <= ARRAY_LIMIT ? toArray() : this;
+		}
+
+		boolean contains(char x) {
+			return (this.words[x >>> 6] & (1L << x)) != 0;
+		}
+
+		int getCardinality() {
+			return this.n;
+		}
+
+		Container and(Container other) {
+			if (other instanceof ArrayContainer) {
+				return other.and(this);
+			}
+			BitmapContainer result = new BitmapContainer();
+			long[] o = ((BitmapContainer) other).words;
+			for (int i = 0; i < this.words.length; i++) {
+				result.words[i] = this.words[i] & o[i];
+				result.n += Long.bitCount(result.words[i]);
+			}
+			return result.n <= ARRAY_LIMIT ? result.toArray() : result;
+		}
+
+		Container or(Container other) {
+			BitmapContainer result = (BitmapContainer) copy();
+			if (other instanceof ArrayContainer) {
+				other.forEach(0, x -> result.add((char) x));
+				return result;
+			}
+			long[] o = ((BitmapContainer) other).words;
+			result.n = 0;
+			for (int i = 0; i < result.words.length; i++) {
+				result.words[i] |= o[i];
+				result.n += Long.bitCount(result.words[i]);
+			}
+			return result;
+		}
+
+		Container copy() {
+			BitmapContainer c = new BitmapContainer();
+			System.arraycopy(this.words, 0, c.words, 0, this.words.length);
+			c.n = this.n;
+			return c;
+		}
+
+		void forEach(int high, IntConsumer consumer) {
+			for (int i = 0; i < this.words.length; i++) {
+				long word = this.words[i];
+				while (word != 0) {
+					consumer.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+		}
+
+		private ArrayContainer toArray() {
+			char[] values = new char[this.n];
+			int[] k = { 0 };
+			forEach(0, x -> values[k[0]++] = (char) x);
+			return new ArrayContainer(values, this.n);
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package hw1;
+
+/**
+ * A batch of rows stored column by column. IntField columns are int arrays and
+ * StringField columns are byte arrays holding one encoded 129-byte slice per
+ * row (length byte followed by characters, as on disk).
+ * <p>
+ * Operators do not remove rows from a batch. Instead the selection vector
+ * lists, in increasing order, the rows that are still part of the result.
+ */
+public class RowBatch {
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private TupleDesc td;
+	private int capacity;
+	private int size;
+	private int[][] ints;
+	private byte[][] strings;
+	private int[] selection;
+	private int numSelected;
+
+	public RowBatch(TupleDesc td) {
+		this(td, DEFAULT_CAPACITY);
+	}
+
+	public RowBatch(TupleDesc td, int capacity) {
+		this.td = td;
+		this.capacity = capacity;
+		this.ints = new int[td.numFields()][];
+		this.strings = new byte[td.numFields()][];
+		for (int i = 0; i < td.numFields(); i++) {
+			if (td.getType(i) == Type.INT) {
+				this.ints[i] = new int[capacity];
+			} else {
+				this.strings[i] = new byte[capacity * PageLayout.STRING_SIZE];
+			}
+		}
+		this.selection = new int[capacity];
+	}
+
+	/* a batch sharing the columns and selection of another one */
+	private RowBatch(RowBatch other, TupleDesc td, int[][] ints, byte[][] strings) {
+		this.td = td;
+		this.capacity = other.capacity;
+		this.size = other.size;
+		this.ints = ints;
+		this.strings = strings;
+		this.selection = other.selection;
+		this.numSelected = other.numSelected;
+	}
+
+	public TupleDesc getTupleDesc() {
+		return this.td;
+	}
+
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * @return the number of rows stored in the batch, selected or not
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	public boolean isFull() {
+		return this.size == this.capacity;
+	}
+
+	public int[] getIntColumn(int field) {
+		return this.ints[field];
+	}
+
+	public byte[] getStringColumn(int field) {
+		return this.strings[field];
+	}
+
+	public int[] getSelection() {
+		return this.selection;
+	}
+
+	public int numSelected() {
+		return this.numSelected;
+	}
+
+	public void setNumSelected(int numSelected) {
+		this.numSelected = numSelected;
+	}
+
+	/** Empties the batch so that it can be refilled */
+	public void clear() {
+		this.size = 0;
+		this.numSelected = 0;
+	}
+
+	/**
+	 * Appends the tuple in the given slot of a page image and selects it.
+	 */
+	public void addRow(byte[] data, int slotOffset, PageLayout layout) {
+		int row = this.size++;
+		for (int j = 0; j < this.ints.length; j++) {
+			int offset = slotOffset + layout.getFieldOffset(j);
+			if (this.ints[j] != null) {
+				this.ints[j][row] = PageLayout.readInt(data, offset);
+			} else {
+				System.arraycopy(data, offset, this.strings[j], row * PageLayout.STRING_SIZE,
+						PageLayout.STRING_SIZE);
+			}
+		}
+		this.selection[this.numSelected++] = row;
+	}
+
+	/**
+	 * Returns a view of this batch that only contains the given fields, in the
+	 * given order. The columns are shared, not copied.
+	 */
+	public RowBatch project(int[] fields, TupleDesc projected) {
+		int[][] ints = new int[fields.length][];
+		byte[][] strings = new byte[fields.length][];
+		for (int i = 0; i < fields.length; i++) {
+			ints[i] = this.ints[fields[i]];
+			strings[i] = this.strings[fields[i]];
+		}
+		return new RowBatch(this, projected, ints, strings);
+	}
+
+	/**
+	 * Decodes a row of the batch into a Tuple.
+	 *
+	 * @param row a row index, e.g. an entry of the selection vector
+	 */
+	public Tuple getTuple(int row) {
+		Tuple t = new Tuple(this.td);
+		for (int j = 0; j < this.ints.length; j++) {
+			if (this.ints[j] != null) {
+				t.setField(j, new IntField(this.ints[j][row]));
+			} else {
+				byte[] s = new byte[PageLayout.STRING_SIZE];
+				System.arraycopy(this.strings[j], row * PageLayout.STRING_SIZE, s, 0, PageLayout.STRING_SIZE);
+				t.setField(j, new StringField(s));
+			}
+		}
+		return t;
+	}
+}
@@ -0,0 +1,42 @@
+package hw1;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A file of SlottedPages, storing tuples as variable-length records. It is
+ * read and written through the BufferPool and Catalog like a HeapFile with
+ * fixed-size slots.
+ * <p>
+ * It is not a HeapFile, since it has no PageLayout, so the operators that work
+ * on raw page images take no slotted file; its tuples are read with
+ * getAllTuples, getMatchingTuples or through the BufferPool. It has no zone
+ * map or Bloom filters.
+ */
+public class SlottedHeapFile extends PageFile {
+
+	public SlottedHeapFile(File f, TupleDesc type) {
+		super(f, type);
+	}
+
+	/**
+	 * Copies the tuples of a heap file with fixed-size slots to a new slotted
+	 * file, filling each page before starting the next. Tuples get new page and
+	 * slot numbers. Any existing content of f is replaced.
+	 */
+	public static SlottedHeapFile convert(HeapFile source, File f) throws IOException {
+		SlottedHeapFile target = new SlottedHeapFile(f, source.getTupleDesc());
+		target.copyFrom(source);
+		return target;
+	}
+
+	@Override
+	public HeapPage readPage(int id) {
+		return new SlottedPage(id, readPageData(id), this.getId(), this.getTupleDesc());
+	}
+
+	@Override
+	public SlottedPage createPage(int id) {
+		return new SlottedPage(id, this.getId(), this.getTupleDesc());
+	}
+}
@@ -0,0 +1,258 @@
+package hw1;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * A page of a SlottedHeapFile, holding variable-length records. Strings take
+ * one length byte plus their characters instead of the 129 bytes of the fixed
+ * format, so pages with short strings hold many more tuples.
+ * <p>
+ * Page format: the number of directory entries and the start of the record
+ * area as shorts, then the slot directory with an offset and a length (both
+ * shorts) per slot. Records are stored from the end of the page downwards, and
+ * a slot whose length is 0 is empty. A tuple keeps its slot, and so its id,
+ * while it lives on the page; compact moves records without changing slots.
+ * <p>
+ * The page image is updated in place, so getPageData only copies it.
+ */
+public class SlottedPage extends HeapPage {
+	private static final int HEADER_SIZE = 4;
+	private static final int ENTRY_SIZE = 4;
+
+	private TupleDesc td;
+	private byte[] data;
+	private int numEntries;
+	private int freeEnd; // start of the record area
+	private int recordBytes; // bytes taken by live records
+
+	public SlottedPage(int id, byte[] data, int tableId, TupleDesc td) {
+		super(id, tableId);
+		this.td = td;
+		this.data = data;
+		this.numEntries = readShort(0);
+		this.freeEnd = readShort(2);
+		if (this.freeEnd == 0) {
+			// a page that has never been written
+			this.freeEnd = HeapFile.PAGE_SIZE;
+		}
+		for (int i = 0; i < this.numEntries; i++) {
+			this.recordBytes += getLength(i);
+		}
+	}
+
+	/**
+	 * Creates an empty page.
+	 */
+	public SlottedPage(int id, int tableId, TupleDesc td) {
+		this(id, new byte[HeapFile.PAGE_SIZE], tableId, td);
+	}
+
+	/**
+	 * @return the number of entries in the slot directory, including empty ones
+	 */
+	@Override
+	public int getNumSlots() {
+		return this.numEntries;
+	}
+
+	@Override
+	public boolean slotOccupied(int s) {
+		return s < this.numEntries && getLength(s) != 0;
+	}
+
+	/**
+	 * @return the bytes that are not taken by records or the directory
+	 */
+	public int getFreeSpace() {
+		return HeapFile.PAGE_SIZE - HEADER_SIZE - this.numEntries * ENTRY_SIZE - this.recordBytes;
+	}
+
+	/**
+	 * Returns the slot the next tuple will be stored in, if a tuple of the
+	 * largest possible size still fits on the page, or -1 otherwise. Smaller
+	 * tuples may still fit when this returns -1.
+	 */
+	@Override
+	public int getFirstFreeSlot() {
+		if (getFreeSpace() < this.td.getSize() + ENTRY_SIZE) {
+			return -1;
+		}
+		return nextSlot();
+	}
+
+	/* the first empty slot of the directory, or a new one at its end */
+	private int nextSlot() {
+		for (int i = 0; i < this.numEntries; i++) {
+			if (getLength(i) == 0) {
+				return i;
+			}
+		}
+		return this.numEntries;
+	}
+
+	/**
+	 * Adds the tuple in the first empty slot, compacting the page if its free
+	 * space is fragmented.
+	 *
+	 * @throws Exception if the tuple does not fit or does not belong to the
+	 *                   table
+	 */
+	@Override
+	public void addTuple(Tuple t) throws Exception {
+		if (!t.getDesc().equals(this.td)) {
+			throw new Exception();
+		}
+		byte[] record = encode(t);
+		int slot = nextSlot();
+		int needed = record.length + (slot == this.numEntries ? ENTRY_SIZE : 0);
+		if (needed > getFreeSpace()) {
+			throw new Exception();
+		}
+		if (this.freeEnd - directoryEnd() < needed) {
+			compact();
+		}
+		if (slot == this.numEntries) {
+			this.numEntries++;
+		}
+		this.freeEnd -= record.length;
+		System.arraycopy(record, 0, this.data, this.freeEnd, record.length);
+		setEntry(slot, this.freeEnd, record.length);
+		this.recordBytes += record.length;
+		writeHeader();
+		t.setPid(this.getId());
+		t.setId(slot);
+	}
+
+	/**
+	 * Removes the tuple from its slot. Its bytes are reclaimed by the next
+	 * compaction.
+	 */
+	@Override
+	public void deleteTuple(Tuple t) throws Exception {
+		if (t.getPid() != this.getId() || !slotOccupied(t.getId())) {
+			throw new Exception();
+		}
+		this.recordBytes -= getLength(t.getId());
+		setEntry(t.getId(), 0, 0);
+		// empty slots at the end of the directory are dropped
+		while (this.numEntries > 0 && getLength(this.numEntries - 1) == 0) {
+			this.numEntries--;
+		}
+		writeHeader();
+	}
+
+	/**
+	 * Moves the records to the end of the page without gaps, so that all free
+	 * space is contiguous. Slots are not changed.
+	 */
+	public void compact() {
+		byte[] packed = new byte[HeapFile.PAGE_SIZE];
+		int end = HeapFile.PAGE_SIZE;
+		for (int i = 0; i < this.numEntries; i++) {
+			int length = getLength(i);
+			if (length != 0) {
+				end -= length;
+				System.arraycopy(this.data, getOffset(i), packed, end, length);
+				setEntry(i, end, length);
+			}
+		}
+		int directoryEnd = directoryEnd();
+		System.arraycopy(this.data, 0, packed, 0, directoryEnd);
+		this.data = packed;
+		this.freeEnd = end;
+		writeHeader();
+	}
+
+	@Override
+	public Tuple getTuple(int slot) {
+		return slotOccupied(slot) ? decode(slot) : null;
+	}
+
+	@Override
+	public byte[] getPageData() {
+		return this.data.clone();
+	}
+
+	@Override
+	public Iterator<Tuple> iterator() {
+		ArrayList<Tuple> tuples = new ArrayList<>();
+		for (int i = 0; i < this.numEntries; i++) {
+			if (getLength(i) != 0) {
+				tuples.add(decode(i));
+			}
+		}
+		return tuples.iterator();
+	}
+
+	/* ints as 4 big-endian bytes, strings as a length byte and their characters */
+	private byte[] encode(Tuple t) {
+		int size = 0;
+		for (int j = 0; j < this.td.numFields(); j++) {
+			size += this.td.getType(j) == Type.INT ? PageLayout.INT_SIZE
+					: 1 + ((StringField) t.getField(j)).getValue().length();
+		}
+		byte[] record = new byte[size];
+		int offset = 0;
+		for (int j = 0; j < this.td.numFields(); j++) {
+			byte[] field = t.getField(j).toByteArray();
+			int length = this.td.getType(j) == Type.INT ? PageLayout.INT_SIZE : 1 + (field[0] & 0xFF);
+			System.arraycopy(field, 0, record, offset, length);
+			offset += length;
+		}
+		return record;
+	}
+
+	private Tuple decode(int slot) {
+		Tuple t = new Tuple(this.td);
+		t.setPid(this.getId());
+		t.setId(slot);
+		int offset = getOffset(slot);
+		for (int j = 0; j < this.td.numFields(); j++) {
+			if (this.td.getType(j) == Type.INT) {
+				t.setField(j, new IntField(PageLayout.readInt(this.data, offset)));
+				offset += PageLayout.INT_SIZE;
+			} else {
+				int length = this.data[offset] & 0xFF;
+				char[] chars = new char[length];
+				for (int k = 0; k < length; k++) {
+					chars[k] = (char) this.data[offset + 1 + k];
+				}
+				t.setField(j, new StringField(new String(chars)));
+				offset += 1 + length;
+			}
+		}
+		return t;
+	}
+
+	private int directoryEnd() {
+		return HEADER_SIZE + this.numEntries * ENTRY_SIZE;
+	}
+
+	private int getOffset(int slot) {
+		return readShort(HEADER_SIZE + slot * ENTRY_SIZE);
+	}
+
+	private int getLength(int slot) {
+		return readShort(HEADER_SIZE + slot * ENTRY_SIZE + 2);
+	}
+
+	private void setEntry(int slot, int offset, int length) {
+		writeShort(HEADER_SIZE + slot * ENTRY_SIZE, offset);
+		writeShort(HEADER_SIZE + slot * ENTRY_SIZE + 2, length);
+	}
+
+	private void writeHeader() {
+		writeShort(0, this.numEntries);
+		writeShort(2, this.freeEnd);
+	}
+
+	private int readShort(int offset) {
+		return ((this.data[offset] & 0xFF) << 8) | (this.data[offset + 1] & 0xFF);
+	}
+
+	private void writeShort(int offset, int value) {
+		this.data[offset] = (byte) (value >> 8);
+		this.data[offset + 1] = (byte) value;
+	}
+}
@@ -0,0 +1,139 @@
+package hw1;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.function.Consumer;
+
+/**
+ * A pipeline breaker that sorts the rows pushed into it. Each worker's fork
+ * collects its rows and, whenever it holds memoryPages pages of them, sorts
+ * them and spills them to a run, as in ExternalSort. Merging the forks only
+ * moves their runs, so the workers do not synchronize until the pipeline ends;
+ * the runs are then merged with a loser tree when the output is read.
+ */
+public class SortSink implements PipelineSink {
+
+	private int[] fields;
+	private boolean[] ascending;
+	private int memoryPages;
+	private int fanIn;
+	private Comparator<Tuple> comparator;
+
+	/* known once the first batch has been consumed */
+	private PageLayout layout;
+	private int memoryRows;
+
+	private ArrayList<Tuple> chunk;
+	private ArrayList<File> runs;
+
+	public SortSink(int field, boolean ascending) {
+		this(new int[] { field }, new boolean[] { ascending }, ExternalSort.DEFAULT_MEMORY_PAGES,
+				ExternalSort.DEFAULT_FAN_IN);
+	}
+
+	/**
+	 * @param fields      the sort fields of the rows pushed into the sink, most
+	 *                    significant first
+	 * @param ascending   the direction of each sort field
+	 * @param memoryPages the number of pages each fork sorts in memory per run
+	 * @param fanIn       the maximum number of runs merged at once, at least 2
+	 */
+	public SortSink(int[] fields, boolean[] ascending, int memoryPages, int fanIn) {
+		if (memoryPages < 1 || fanIn < 2) {
+			throw new IllegalArgumentException();
+		}
+		this.fields = fields.clone();
+		this.ascending = ascending.clone();
+		this.memoryPages = memoryPages;
+		this.fanIn = fanIn;
+		this.comparator = new TupleComparator(fields, ascending);
+		this.chunk = new ArrayList<>();
+		this.runs = new ArrayList<>();
+	}
+
+	public void consume(RowBatch batch) {
+		int[] sel = batch.getSelection();
+		for (int i = 0; i < batch.numSelected(); i++) {
+			add(batch.getTuple(sel[i]));
+		}
+	}
+
+	/**
+	 * Adds one row, for callers that sort outside of a pipeline. All rows must
+	 * have the same TupleDesc.
+	 */
+	public void add(Tuple t) {
+		if (this.layout == null) {
+			this.layout = new PageLayout(t.getDesc());
+			this.memoryRows = this.memoryPages * this.layout.getNumSlots();
+		}
+		this.chunk.add(t);
+		if (this.chunk.size() >= this.memoryRows) {
+			spill();
+		}
+	}
+
+	public PipelineSink fork() {
+		return new SortSink(this.fields, this.ascending, this.memoryPages, this.fanIn);
+	}
+
+	public void merge(PipelineSink other) {
+		SortSink o = (SortSink) other;
+		if (o.layout == null) {
+			return;
+		}
+		if (this.layout == null) {
+			this.layout = o.layout;
+			this.memoryRows = o.memoryRows;
+		}
+		this.runs.addAll(o.runs);
+		this.chunk.addAll(o.chunk);
+		if (this.chunk.size() >= this.memoryRows) {
+			spill();
+		}
+	}
+
+	/**
+	 * Passes the rows to the consumer in order. The output can only be read
+	 * once, since the runs are deleted as they are merged.
+	 */
+	public void output(Consumer<Tuple> out) throws IOException {
+		if (this.runs.isEmpty()) {
+			// everything fits in memory
+			this.chunk.sort(this.comparator);
+			this.chunk.forEach(out);
+			this.chunk = new ArrayList<>();
+			return;
+		}
+		if (!this.chunk.isEmpty()) {
+			spill();
+		}
+		ArrayList<File> runs = this.runs;
+		this.runs = new ArrayList<>();
+		ExternalSort.mergeRuns(runs, this.layout, this.comparator, this.fanIn, out);
+	}
+
+	/**
+	 * @return the rows in order, see output
+	 */
+	public ArrayList<Tuple> getTuples() throws IOException {
+		ArrayList<Tuple> result = new ArrayList<>();
+		output(result::add);
+		return result;
+	}
+
+	/* sorts the chunk into a new run */
+	private void spill() {
+		try {
+			File run = ExternalSort.writeRun(this.chunk, this.layout, this.comparator);
+			// a failed pipeline never reads, and so never deletes, its runs
+			run.deleteOnExit();
+			this.runs.add(run);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		this.chunk = new ArrayList<>();
+	}
+}
@@ -0,0 +1,108 @@
+package hw1;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Maps the strings of a table to dense int codes, 0, 1, 2, ... in the order
+ * the strings were first seen. Codes only preserve equality, not the order of
+ * the strings, and codes of different dictionaries are unrelated.
+ * <p>
+ * The whole dictionary is kept in memory. It is stored in its own file as one
+ * string per code; new strings are appended to the file by flush.
+ */
+public class StringDictionary {
+
+	private File f;
+	private ArrayList<String> strings;
+	private HashMap<String, Integer> codes;
+	private int numSaved; // strings already in the file
+
+	/**
+	 * Opens the dictionary stored in f, which need not exist yet.
+	 */
+	public StringDictionary(File f) throws IOException {
+		this.f = f;
+		this.strings = new ArrayList<>();
+		this.codes = new HashMap<>();
+		if (f.exists()) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+				while (true) {
+					String s;
+					try {
+						s = in.readUTF();
+					} catch (EOFException e) {
+						break;
+					}
+					this.codes.put(s, this.strings.size());
+					this.strings.add(s);
+				}
+			}
+		}
+		this.numSaved = this.strings.size();
+	}
+
+	public File getFile() {
+		return this.f;
+	}
+
+	/**
+	 * @return the number of strings in the dictionary
+	 */
+	public synchronized int size() {
+		return this.strings.size();
+	}
+
+	/**
+	 * @return the code of a string, or -1 if it is not in the dictionary
+	 */
+	public synchronized int getCode(String s) {
+		Integer code = this.codes.get(s);
+		return code == null ? -1 : code;
+	}
+
+	/**
+	 * Returns the code of a string, adding the string if it is new.
+	 */
+	public synchronized int add(String s) {
+		Integer code = this.codes.get(s);
+		if (code == null) {
+			code = this.strings.size();
+			this.codes.put(s, code);
+			this.strings.add(s);
+		}
+		return code;
+	}
+
+	/**
+	 * @throws IndexOutOfBoundsException if the code is not in the dictionary
+	 */
+	public synchronized String getString(int code) {
+		return this.strings.get(code);
+	}
+
+	/**
+	 * Appends the strings added since the last flush to the file.
+	 */
+	public synchronized void flush() throws IOException {
+		if (this.numSaved == this.strings.size()) {
+			return;
+		}
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(this.f, true)))) {
+			for (int i = this.numSaved; i < this.strings.size(); i++) {
+				out.writeUTF(this.strings.get(i));
+			}
+		}
+		this.numSaved = this.strings.size();
+	}
+}
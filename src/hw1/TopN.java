@@ -0,0 +1,94 @@
+package hw1;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Returns the first n tuples of a heap file ordered on one field, without
+ * sorting the whole file. A bounded heap keeps the best n tuples seen so far;
+ * once it is full, each row's encoded sort field is compared against the
+ * worst tuple in the heap and losing rows are never decoded, and pages whose
+ * zone (see ZoneMap) holds no better value are not read at all.
+ * <p>
+ * Tuples with equal values are ordered by page and slot, so the result is
+ * the first n tuples of a stable sort of the file.
+ */
+public class TopN {
+
+	private HeapFile hf;
+	private int field;
+	private boolean ascending;
+	private int n;
+	private Comparator<Tuple> comparator;
+
+	/**
+	 * @param hf        the input
+	 * @param field     the field to order on
+	 * @param ascending whether the smallest (true) or largest values come first
+	 * @param n         the number of tuples to return
+	 */
+	public TopN(HeapFile hf, int field, boolean ascending, int n) {
+		this.hf = hf;
+		this.field = field;
+		this.ascending = ascending;
+		this.n = n;
+		this.comparator = new TupleComparator(field, ascending).thenComparingInt(Tuple::getPid)
+				.thenComparingInt(Tuple::getId);
+	}
+
+	/**
+	 * @return at most n tuples, in order
+	 */
+	public ArrayList<Tuple> execute() {
+		if (this.n <= 0) {
+			return new ArrayList<>();
+		}
+		// the root of the heap is the worst tuple kept so far
+		PriorityQueue<Tuple> heap = new PriorityQueue<>(this.n, this.comparator.reversed());
+		PageLayout layout = this.hf.getLayout();
+		int fieldOffset = layout.getFieldOffset(this.field);
+		boolean intField = this.hf.getTupleDesc().getType(this.field) == Type.INT;
+		int worstInt = 0;
+		byte[] worstString = null;
+		// once the heap is full, only pages with a value better than the worst can contribute
+		Predicate better = null;
+		for (int pid = 0; pid < this.hf.getNumPages(); pid++) {
+			if (better != null && !this.hf.mayMatch(pid, better)) {
+				continue;
+			}
+			byte[] data = this.hf.readPageData(pid);
+			this.hf.observePage(pid, data);
+			for (int slot = 0; slot < layout.getNumSlots(); slot++) {
+				if (!layout.slotOccupied(data, slot)) {
+					continue;
+				}
+				int offset = layout.getSlotOffset(slot) + fieldOffset;
+				if (heap.size() == this.n) {
+					int cmp = intField ? Integer.compare(PageLayout.readInt(data, offset), worstInt)
+							: Predicate.compareStrings(data, offset, worstString);
+					// rows are read in (pid, slot) order, so a tie loses to the tuples kept
+					if (this.ascending ? cmp >= 0 : cmp <= 0) {
+						continue;
+					}
+					heap.poll();
+				}
+				heap.add(layout.readTuple(data, pid, slot));
+				if (heap.size() == this.n) {
+					Field worst = heap.peek().getField(this.field);
+					if (intField) {
+						worstInt = ((IntField) worst).getValue();
+					} else {
+						worstString = worst.toByteArray();
+					}
+					better = new Predicate(this.field, this.ascending ? RelationalOperator.LT : RelationalOperator.GT,
+							worst);
+				}
+			}
+		}
+		ArrayList<Tuple> result = new ArrayList<>(heap);
+		Collections.sort(result, this.comparator);
+		return result;
+	}
+}
@@ -0,0 +1,47 @@
+package hw1;
+
+import java.util.Comparator;
+
+/**
+ * Orders tuples on one or more fields, each ascending or descending. Fields
+ * compare the same way as Field.compare: IntFields numerically and
+ * StringFields with String.compareTo.
+ */
+public class TupleComparator implements Comparator<Tuple> {
+
+	private int[] fields;
+	private boolean[] ascending;
+
+	public TupleComparator(int field, boolean ascending) {
+		this(new int[] { field }, new boolean[] { ascending });
+	}
+
+	/**
+	 * @param fields    the sort fields, most significant first
+	 * @param ascending the direction of each sort field
+	 */
+	public TupleComparator(int[] fields, boolean[] ascending) {
+		if (fields.length != ascending.length) {
+			throw new IllegalArgumentException();
+		}
+		this.fields = fields.clone();
+		this.ascending = ascending.clone();
+	}
+
+	public int compare(Tuple a, Tuple b) {
+		for (int i = 0; i < this.fields.length; i++) {
+			int cmp = compareFields(a.getField(this.fields[i]), b.getField(this.fields[i]));
+			if (cmp != 0) {
+				return this.ascending[i] ? cmp : -cmp;
+			}
+		}
+		return 0;
+	}
+
+	public static int compareFields(Field a, Field b) {
+		if (a.getType() == Type.INT) {
+			return Integer.compare(((IntField) a).getValue(), ((IntField) b).getValue());
+		}
+		return ((StringField) a).getValue().compareTo(((StringField) b).getValue());
+	}
+}
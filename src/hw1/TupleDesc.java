@@ -61,7 +61,7 @@ public class TupleDesc {
 	public int nameToId(String name) throws NoSuchElementException {
 		// your code here
 		for (int i = 0; i < this.numFields(); i++) {
-			if (this.fields[i] == name) {
+			if (this.fields[i] != null && this.fields[i].equals(name)) {
 				return i;
 			}
 		}
@@ -130,6 +130,28 @@ public class TupleDesc {
 		return false;
 	}
 
+	/**
+	 * Merge two TupleDescs into one, with td1.numFields + td2.numFields fields,
+	 * with the first td1.numFields coming from td1 and the remaining from td2.
+	 *
+	 * @param td1 The TupleDesc with the first fields of the new TupleDesc
+	 * @param td2 The TupleDesc with the last fields of the TupleDesc
+	 * @return the new TupleDesc
+	 */
+	public static TupleDesc combine(TupleDesc td1, TupleDesc td2) {
+		Type[] types = new Type[td1.numFields() + td2.numFields()];
+		String[] fields = new String[types.length];
+		for (int i = 0; i < td1.numFields(); i++) {
+			types[i] = td1.types[i];
+			fields[i] = td1.fields[i];
+		}
+		for (int i = 0; i < td2.numFields(); i++) {
+			types[td1.numFields() + i] = td2.types[i];
+			fields[td1.numFields() + i] = td2.fields[i];
+		}
+		return new TupleDesc(types, fields);
+	}
+
 	public int hashCode() {
 		// If you want to use TupleDesc as keys for HashMap, implement this so
 		// that equal objects have equals hashCode() results
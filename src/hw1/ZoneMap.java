@@ -0,0 +1,174 @@
+package hw1;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the smallest and largest value of every field on each page of a heap
+ * file, so that scans can skip the pages on which no tuple can satisfy a
+ * predicate without reading them. The zone of a page is stored as two encoded
+ * rows, the minimum of every field followed by the maximum, and a page
+ * without tuples has an empty zone.
+ * <p>
+ * Zones are recorded when the HeapFile or a BulkLoader writes a page, and when
+ * a scan reads a page whose zone is not known yet. Writes made to the file by
+ * other means are not seen.
+ */
+public class ZoneMap {
+	private static final byte[] EMPTY = new byte[0];
+
+	private PageLayout layout;
+	private TupleDesc td;
+	private int tupleSize;
+	private byte[][] zones; // indexed by page, null while unknown
+
+	public ZoneMap(PageLayout layout) {
+		this.layout = layout;
+		this.td = layout.getTupleDesc();
+		this.tupleSize = this.td.getSize();
+		this.zones = new byte[16][];
+	}
+
+	/**
+	 * Records the zone of a page that has been written.
+	 *
+	 * @param data   the page image, or several consecutive ones
+	 * @param offset the offset of the page in data
+	 */
+	public void update(int pid, byte[] data, int offset) {
+		byte[] zone = compute(data, offset);
+		synchronized (this) {
+			grow(pid);
+			this.zones[pid] = zone;
+		}
+	}
+
+	/**
+	 * Records the zone of a page that has been read, unless it is already known.
+	 * The page may have been written since it was read, so a zone recorded
+	 * meanwhile is never replaced.
+	 */
+	public void observe(int pid, byte[] data) {
+		if (getZone(pid) != null) {
+			return;
+		}
+		byte[] zone = compute(data, 0);
+		synchronized (this) {
+			grow(pid);
+			if (this.zones[pid] == null) {
+				this.zones[pid] = zone;
+			}
+		}
+	}
+
+	/**
+	 * Forgets the zones of the pages at or past numPages, after the file has
+	 * been truncated to that many pages.
+	 */
+	public synchronized void truncate(int numPages) {
+		if (numPages < this.zones.length) {
+			Arrays.fill(this.zones, numPages, this.zones.length, null);
+		}
+	}
+
+	public boolean isKnown(int pid) {
+		return getZone(pid) != null;
+	}
+
+	/**
+	 * @return whether the page is known to hold no tuples
+	 */
+	public boolean isEmpty(int pid) {
+		return getZone(pid) == EMPTY;
+	}
+
+	/**
+	 * @return false if no tuple on the page can satisfy the predicate, true if
+	 *         some may or the zone of the page is not known
+	 */
+	public boolean mayMatch(int pid, Predicate p) {
+		byte[] zone = getZone(pid);
+		if (zone == null) {
+			return true;
+		}
+		if (zone == EMPTY) {
+			return false;
+		}
+		int offset = this.layout.getFieldOffset(p.getField());
+		int cmpMin = p.compare(zone, offset);
+		int cmpMax = p.compare(zone, this.tupleSize + offset);
+		switch (p.getOp()) {
+		case EQ:
+			return cmpMin <= 0 && cmpMax >= 0;
+		case NOTEQ:
+			return cmpMin != 0 || cmpMax != 0;
+		case GT:
+			return cmpMax > 0;
+		case GTE:
+			return cmpMax >= 0;
+		case LT:
+			return cmpMin < 0;
+		case LTE:
+			return cmpMin <= 0;
+		}
+		return true;
+	}
+
+	/**
+	 * @return false if no tuple on the page can satisfy all of the predicates
+	 */
+	public boolean mayMatch(int pid, List<Predicate> predicates) {
+		for (Predicate p : predicates) {
+			if (!mayMatch(pid, p)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void grow(int pid) {
+		if (pid >= this.zones.length) {
+			this.zones = Arrays.copyOf(this.zones, Math.max(pid + 1, 2 * this.zones.length));
+		}
+	}
+
+	private synchronized byte[] getZone(int pid) {
+		return pid < this.zones.length ? this.zones[pid] : null;
+	}
+
+	private byte[] compute(byte[] data, int base) {
+		byte[] zone = null;
+		for (int slot = 0; slot < this.layout.getNumSlots(); slot++) {
+			if ((data[base + (slot >> 3)] >> (slot & 7) & 1) == 0) {
+				continue;
+			}
+			int slotOffset = base + this.layout.getSlotOffset(slot);
+			if (zone == null) {
+				zone = new byte[2 * this.tupleSize];
+				System.arraycopy(data, slotOffset, zone, 0, this.tupleSize);
+				System.arraycopy(data, slotOffset, zone, this.tupleSize, this.tupleSize);
+				continue;
+			}
+			for (int j = 0; j < this.td.numFields(); j++) {
+				Type type = this.td.getType(j);
+				int size = type == Type.INT ? PageLayout.INT_SIZE : PageLayout.STRING_SIZE;
+				int field = slotOffset + this.layout.getFieldOffset(j);
+				int min = this.layout.getFieldOffset(j);
+				int max = this.tupleSize + min;
+				if (compareFields(data, field, zone, min, type) < 0) {
+					System.arraycopy(data, field, zone, min, size);
+				} else if (compareFields(data, field, zone, max, type) > 0) {
+					System.arraycopy(data, field, zone, max, size);
+				}
+			}
+		}
+		return zone == null ? EMPTY : zone;
+	}
+
+	private static int compareFields(byte[] a, int aOffset, byte[] b, int bOffset, Type type) {
+		if (type == Type.INT) {
+			return Integer.compare(PageLayout.readInt(a, aOffset), PageLayout.readInt(b, bOffset));
+		}
+		return Predicate.compareStrings(a, aOffset, b, bOffset);
+	}
+}
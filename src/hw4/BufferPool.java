@@ -2,13 +2,17 @@ package hw4;
 
 import java.io.*;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.concurrent.atomic.LongAdder;
 
 import hw1.Catalog;
 import hw1.Database;
+import hw1.DbFile;
+import hw1.Field;
 import hw1.HeapPage;
+import hw1.Index;
+import hw1.IntObjectMap;
+import hw1.LongObjectMap;
 import hw1.Tuple;
 
 /**
@@ -19,6 +23,13 @@ import hw1.Tuple;
  * The BufferPool is also responsible for locking; when a transaction fetches
  * a page, BufferPool which check that the transaction has the appropriate
  * locks to read/write the page.
+ * <p>
+ * Every method that reads or changes the frame table, the LRU list or the
+ * locks is synchronized on the pool, so resize and quota changes can run while
+ * other threads use the pool. Lock conflicts abort the requesting transaction
+ * instead of waiting for the lock. Pages are read from disk while holding the
+ * monitor, on a miss in getPage and when an abort rereads its dirty pages, so
+ * a cold read delays every other thread that uses the pool.
  */
 public class BufferPool {
   /** Bytes per page, including header. */
@@ -33,18 +44,37 @@ public class BufferPool {
 
   private int numPages;
 
+  /* Optional bounds on the number of frames a single table may occupy */
+  private class Quota {
+    public int minPages;
+    public int maxPages;
+
+    public Quota(int minPages, int maxPages) {
+      this.minPages = minPages;
+      this.maxPages = maxPages;
+    }
+  }
+
   /* Use a nested class `Frame` to hold one HeapPage within the bufferPool */
   private class Frame {
     public boolean dirty;
     public Permissions perm; // the lock held by the page
     public HeapPage hp;
     public int counter; // number of transactions have the lock
+    public int tableId;
+    public int pid;
+    public Frame prev; // neighbours in the LRU list
+    public Frame next;
+    public LongAdder[] stats; // the hit and miss counters of the table
 
-    public Frame(Permissions perm, HeapPage hp) {
+    public Frame(Permissions perm, HeapPage hp, int tableId, int pid) {
       this.perm = perm;
       this.hp = hp;
       this.counter = 1;
       this.dirty = false;
+      this.tableId = tableId;
+      this.pid = pid;
+      this.stats = Database.getStats().tableCounters(tableId);
     }
   }
 
@@ -57,30 +87,36 @@ public class BufferPool {
       this.tableId = tableId;
       this.pid = pid;
     }
-
-    public boolean compareTo(int tableId, int pid) {
-      if (this.tableId == tableId && this.pid == pid) {
-        return true;
-      }
-      return false;
-    }
   }
 
-  /* Keep track of all the locks acquired by a transaction */
-  private HashMap<Integer, ArrayList<Page>> transactions;
+  /**
+   * Keep track of all the locks acquired by a transaction
+   * tid -> ((tableId << 32 | pageId) -> Page)
+   */
+  private IntObjectMap<LongObjectMap<Page>> transactions;
 
   /**
    * Keep track of all the transactions in cache
-   * tableId -> pageId -> Frame
+   * (tableId << 32 | pageId) -> Frame
    */
-  private HashMap<Integer, HashMap<Integer, Frame>> cache;
+  private LongObjectMap<Frame> cache;
+
+  /* Number of frames held by each table, tableId -> {count} */
+  private IntObjectMap<int[]> residents;
 
   /**
    * Least recently used HeapPage in the buffer pool to determine which
-   * heapPage will be removed first
-   * the first page in `LRU` is the least recently accessed page
+   * heapPage will be removed first. The frames form a doubly linked list;
+   * `lruHead` is the least recently accessed page, `lruTail` the most recent.
+   */
+  private Frame lruHead;
+  private Frame lruTail;
+
+  /**
+   * Per-table frame quotas, tableId -> Quota. Tables without an entry may use
+   * any number of frames and have no reserved frames.
    */
-  private LinkedList<Page> LRU;
+  private IntObjectMap<Quota> quotas;
 
   /**
    * Creates a BufferPool that caches up to numPages pages.
@@ -89,9 +125,78 @@ public class BufferPool {
    */
   public BufferPool(int numPages) {
     this.numPages = numPages;
-    this.transactions = new HashMap<Integer, ArrayList<Page>>();
-    this.cache = new HashMap<Integer, HashMap<Integer, Frame>>();
-    this.LRU = new LinkedList<Page>();
+    this.transactions = new IntObjectMap<LongObjectMap<Page>>();
+    this.cache = new LongObjectMap<Frame>(numPages);
+    this.residents = new IntObjectMap<int[]>();
+    this.quotas = new IntObjectMap<Quota>();
+  }
+
+  /** Return the maximum number of pages this buffer pool can hold. */
+  public int getNumPages() {
+    return this.numPages;
+  }
+
+  /**
+   * Grow or shrink the buffer pool while keeping its cached pages and locks.
+   * When shrinking, clean pages are evicted in LRU order until the pool fits
+   * in the new capacity. Throws an exception and keeps the old capacity if
+   * there are not enough clean pages to evict.
+   *
+   * @param numPages the new maximum number of pages in this buffer pool
+   */
+  public synchronized void resize(int numPages) throws Exception {
+    if (numPages <= 0 || numPages < reservedPages(-1)) {
+      throw new IllegalArgumentException();
+    }
+    while (this.cache.size() > numPages) {
+      evictPage(-1);
+    }
+    this.numPages = numPages;
+  }
+
+  /**
+   * Limit the number of frames the given table may occupy. The table keeps at
+   * least minPages frames when other tables need space, and never holds more
+   * than maxPages frames; its own least recently used page is evicted instead.
+   *
+   * @param tableId  the table to restrict
+   * @param minPages frames reserved for this table, may be 0
+   * @param maxPages maximum frames for this table
+   */
+  public synchronized void setTableQuota(int tableId, int minPages, int maxPages) {
+    if (minPages < 0 || maxPages < 1 || minPages > maxPages
+        || reservedPages(tableId) + minPages > this.numPages) {
+      throw new IllegalArgumentException();
+    }
+    this.quotas.put(tableId, new Quota(minPages, maxPages));
+  }
+
+  /** Remove any quota previously set for the given table */
+  public synchronized void clearTableQuota(int tableId) {
+    this.quotas.remove(tableId);
+  }
+
+  /**
+   * Drops every cached page of a table or index, for a file that is about to
+   * be replaced on disk. Nothing is dropped if a page of the file is locked or
+   * dirty.
+   *
+   * @throws IllegalStateException if a page of the file is locked or dirty
+   */
+  public synchronized void discardPages(int tableId) {
+    ArrayList<Frame> frames = new ArrayList<Frame>();
+    for (Frame frame = this.lruHead; frame != null; frame = frame.next) {
+      if (frame.tableId != tableId) {
+        continue;
+      }
+      if (frame.perm != null || frame.dirty) {
+        throw new IllegalStateException("page " + frame.pid + " of file " + tableId + " is in use");
+      }
+      frames.add(frame);
+    }
+    for (Frame frame : frames) {
+      removeFrame(frame);
+    }
   }
 
   /**
@@ -110,68 +215,73 @@ public class BufferPool {
    * @param pid     the ID of the requested page
    * @param perm    the requested permissions on the page
    */
-  public HeapPage getPage(int tid, int tableId, int pid, Permissions perm)
+  public synchronized HeapPage getPage(int tid, int tableId, int pid, Permissions perm)
       throws Exception {
     HeapPage hp = null;
+    StorageStats stats = Database.getStats();
+    long key = LongObjectMap.pack(tableId, pid);
+    LongObjectMap<Page> locks = lockedPages(tid);
+    boolean locked = locks.containsKey(key);
     // check if the page is inside the buffer pool
-    if (this.cache.containsKey(tableId) && this.cache.get(tableId).containsKey(pid)) {
-      Frame frame = this.cache.get(tableId).get(pid);
-      int lockIdx = getLockIdx(tid, tableId, pid);
+    Frame frame = this.cache.get(key);
+    if (frame != null) {
+      stats.recordPageHit(frame.stats);
       // when the frame has lock (READ/WRITE)
       if (frame.perm != null) {
         // when the frame has a write lock and the transaction doesn't have the lock for
         // this page => this page is locked by another transaction
-        if (frame.perm.permLevel == Permissions.READ_WRITE.permLevel && lockIdx == -1) {
+        if (frame.perm.permLevel == Permissions.READ_WRITE.permLevel && !locked) {
+          stats.recordLockConflict(tid, tableId, pid);
           transactionComplete(tid, false); // abort to resolve deadlock
           throw new Exception();
         }
         // when the frame has a read lock
         if (frame.perm.permLevel == Permissions.READ_ONLY.permLevel) {
           // when the current transaction doesn't have the lock and also acquire read lock
-          if (perm.permLevel == Permissions.READ_ONLY.permLevel && lockIdx == -1) {
+          if (perm.permLevel == Permissions.READ_ONLY.permLevel && !locked) {
             frame.counter++;
           }
           if (perm.permLevel == Permissions.READ_WRITE.permLevel) {
             // when the current transaction is the only transaction that has the read lock
             // => this lock can be upgraded to READ_WRITE lock
-            if (lockIdx != -1 && frame.counter == 1) {
+            if (locked && frame.counter == 1) {
               frame.perm = Permissions.READ_WRITE;
             } else {
+              stats.recordLockConflict(tid, tableId, pid);
               transactionComplete(tid, false); // abort to resolve deadlock
               throw new Exception();
             }
           }
         }
+      } else {
+        // the lock on this page has been released => grant the requested lock
+        frame.perm = perm;
+        frame.counter = 1;
       }
       hp = frame.hp;
     } else {
       // retrieve the heapPage from disk
+      stats.recordPageMiss(tableId);
       Catalog catalog = Database.getCatalog();
       hp = catalog.getDbFile(tableId).readPage(pid);
 
       // store the heapPage inside the cache
-      Frame frame = new Frame(perm, hp);
-      if (!hasSpaces()) {
-        evictPage();
-      }
-      if (!this.cache.containsKey(tableId)) {
-        this.cache.put(tableId, new HashMap<Integer, Frame>());
+      frame = new Frame(perm, hp, tableId, pid);
+      if (!hasSpaces() || atMaxQuota(tableId)) {
+        evictPage(tableId);
       }
-      this.cache.get(tableId).put(pid, frame);
-    }
-
-    // if the transactions doesn't have this tid => initialized
-    if (!this.transactions.containsKey(tid)) {
-      this.transactions.put(tid, new ArrayList<Page>());
+      this.cache.put(key, frame);
+      residentCounter(tableId)[0]++;
     }
 
     // if the transaction doesn't have this lock => add to current transaction
-    if (getLockIdx(tid, tableId, pid) == -1) {
-      this.transactions.get(tid).add(new Page(tableId, pid));
+    if (!locked) {
+      stats.recordLockAcquired();
+      locks.put(key, new Page(tableId, pid));
     }
 
     // move current page to the back
-    updatePageLRU(tableId, pid);
+    updatePageLRU(frame);
     return hp;
   }
 
@@ -185,8 +295,8 @@ public class BufferPool {
    * @param tableID the ID of the table containing the page to unlock
    * @param pid     the ID of the page to unlock
    */
-  public void releasePage(int tid, int tableId, int pid) {
-    Frame frame = this.cache.get(tableId).get(pid);
+  public synchronized void releasePage(int tid, int tableId, int pid) {
+    Frame frame = this.cache.get(LongObjectMap.pack(tableId, pid));
     // when the page only has one lock (READ/WRITE) => remove
     if (frame.counter == 1) {
       frame.perm = null;
@@ -197,8 +307,8 @@ public class BufferPool {
   }
 
   /** Return true if the specified transaction has a lock on the specified page */
-  public boolean holdsLock(int tid, int tableId, int pid) {
-    return getLockIdx(tid, tableId, pid) != -1;
+  public synchronized boolean holdsLock(int tid, int tableId, int pid) {
+    return holds(tid, tableId, pid);
   }
 
   /**
@@ -208,26 +318,47 @@ public class BufferPool {
    * @param tid    the ID of the transaction requesting the unlock
    * @param commit a flag indicating whether we should commit or abort
    */
-  public void transactionComplete(int tid, boolean commit)
+  public synchronized void transactionComplete(int tid, boolean commit)
       throws IOException {
+    long start = System.nanoTime();
     Catalog catalog = Database.getCatalog();
-    Iterator i = this.transactions.get(tid).iterator();
-    while (i.hasNext()) {
-      Page page = (Page) i.next();
-      Frame frame = this.cache.get(page.tableId).get(page.pid);
+    LongObjectMap<Page> locks = this.transactions.remove(tid);
+    long[] keys = locks == null ? new long[0] : locks.keys();
+    // the tables the transaction locked pages of, whose indexes it may have changed
+    IntObjectMap<Boolean> tables = new IntObjectMap<Boolean>();
+    for (long key : keys) {
+      tables.put((int) (key >>> 32), Boolean.TRUE);
+    }
+    for (long key : keys) {
+      Page page = locks.get(key);
+      Frame frame = this.cache.get(key);
+      if (frame == null) {
+        // a clean page that has been evicted since it was read
+        continue;
+      }
       if (frame.dirty) {
         if (commit) {
           // write the page back to disk
           flushPage(page.tableId, page.pid);
+        } else if (page.pid >= catalog.getDbFile(page.tableId).getNumPages()) {
+          // a page the transaction allocated past the end of the file
+          removeFrame(frame);
+          continue;
         } else {
           // read the page from the disk to buffer pool to cover the changes
           frame.hp = catalog.getDbFile(page.tableId).readPage(page.pid);
         }
+        frame.dirty = false;
       }
       releasePage(tid, page.tableId, page.pid);
-      // remove the current lock from transaction `tid`
-      i.remove();
     }
+    // after the pages are unlocked, so that an index can rewrite its own file
+    for (int tableId : tables.keys()) {
+      for (Index index : catalog.getIndexes(tableId)) {
+        index.transactionComplete(tid, commit);
+      }
+    }
+    Database.getStats().recordTransactionComplete(tid, commit, System.nanoTime() - start);
   }
 
   /**
@@ -241,19 +372,110 @@ public class BufferPool {
    * @param tableId the table to add the tuple to
    * @param t       the tuple to add
    */
-  public void insertTuple(int tid, int tableId, Tuple t)
+  public synchronized void insertTuple(int tid, int tableId, Tuple t)
       throws Exception {
     Catalog catalog = Database.getCatalog();
     HeapPage hp = catalog.getDbFile(tableId).addTuple(t);
     int pid = hp.getId();
-    Frame frame = cache.get(tableId).get(pid);
-    int lockIdx = this.getLockIdx(tid, tableId, pid);
-    if (lockIdx == -1 || frame.perm == null ||
+    Frame frame = cache.get(LongObjectMap.pack(tableId, pid));
+    if (!holds(tid, tableId, pid) || frame == null || frame.perm == null ||
         frame.perm.permLevel == Permissions.READ_ONLY.permLevel) {
       throw new Exception();
     }
     frame.dirty = true;
     frame.hp = hp;
+    updateIndex(tid, tableId, t, true);
+  }
+
+  /**
+   * Add a batch of tuples to the specified table on behalf of transaction tid.
+   * Pages of the table that are already in the buffer pool are filled first,
+   * then the last page of the file, and then new pages are allocated in the
+   * buffer pool. Partially filled pages further back in the file that are not
+   * cached are not searched. A write lock is acquired once per page, and each
+   * page is marked dirty once. Pages held by other transactions are skipped.
+   * <p>
+   * New pages stay in the buffer pool until the transaction commits, so the
+   * batch must fit in the frames that are not already dirty.
+   *
+   * @param tid     the transaction adding the tuples
+   * @param tableId the table to add the tuples to
+   * @param tuples  the tuples to add
+   */
+  public synchronized void insertTuples(int tid, int tableId, Iterable<Tuple> tuples)
+      throws Exception {
+    Iterator<Tuple> it = tuples.iterator();
+    if (!it.hasNext()) {
+      return;
+    }
+    Tuple t = it.next();
+    DbFile hf = Database.getCatalog().getDbFile(tableId);
+    int numPages = hf.getNumPages();
+
+    // collect cached pages with free slots first, filling them reorders the LRU
+    ArrayList<Integer> candidates = new ArrayList<Integer>();
+    boolean lastPageCached = false;
+    for (Frame frame = this.lruHead; frame != null; frame = frame.next) {
+      if (frame.tableId != tableId) {
+        continue;
+      }
+      numPages = Math.max(numPages, frame.pid + 1);
+      lastPageCached |= frame.pid == hf.getNumPages() - 1;
+      if (frame.hp.getFirstFreeSlot() != -1 && canWrite(tid, frame)) {
+        candidates.add(frame.pid);
+      }
+    }
+    if (!lastPageCached && hf.getNumPages() > 0) {
+      candidates.add(hf.getNumPages() - 1);
+    }
+
+    for (int i = 0; i < candidates.size() && t != null; i++) {
+      HeapPage hp = getPage(tid, tableId, candidates.get(i), Permissions.READ_WRITE);
+      t = fillPage(tid, this.cache.get(LongObjectMap.pack(tableId, hp.getId())), t, it);
+    }
+
+    // allocate new pages for the remaining tuples
+    while (t != null) {
+      int pid = numPages++;
+      HeapPage hp = hf.createPage(pid);
+      Frame frame = new Frame(Permissions.READ_WRITE, hp, tableId, pid);
+      if (!hasSpaces() || atMaxQuota(tableId)) {
+        evictPage(tableId);
+      }
+      this.cache.put(LongObjectMap.pack(tableId, pid), frame);
+      residentCounter(tableId)[0]++;
+      updatePageLRU(frame);
+      lockedPages(tid).put(LongObjectMap.pack(tableId, pid), new Page(tableId, pid));
+      Database.getStats().recordLockAcquired();
+      t = fillPage(tid, frame, t, it);
+    }
+  }
+
+  /*
+   * Add tuples to the page of the frame until it is full. Returns the first
+   * tuple that did not fit, or null when all tuples have been added.
+   */
+  private Tuple fillPage(int tid, Frame frame, Tuple t, Iterator<Tuple> it) throws Exception {
+    HeapPage hp = frame.hp;
+    while (t != null && hp.getFirstFreeSlot() != -1) {
+      hp.addTuple(t);
+      // dirty before the index is updated, so the frame cannot be evicted meanwhile
+      frame.dirty = true;
+      updateIndex(tid, frame.tableId, t, true);
+      t = it.hasNext() ? it.next() : null;
+    }
+    return t;
+  }
+
+  /* Whether tid can take a write lock on the frame without a conflict */
+  private boolean canWrite(int tid, Frame frame) {
+    if (frame.perm == null) {
+      return true;
+    }
+    if (!holds(tid, frame.tableId, frame.pid)) {
+      return false;
+    }
+    return frame.perm.permLevel == Permissions.READ_WRITE.permLevel || frame.counter == 1;
   }
 
   /**
@@ -267,70 +489,160 @@ public class BufferPool {
    * @param tableId the ID of the table that contains the tuple to be deleted
    * @param t       the tuple to add
    */
-  public void deleteTuple(int tid, int tableId, Tuple t)
+  public synchronized void deleteTuple(int tid, int tableId, Tuple t)
       throws Exception {
     int pid = t.getPid();
     HeapPage hp = getPage(tid, tableId, pid, Permissions.READ_WRITE);
     hp.deleteTuple(t);
     // set the page to be dirty
-    this.cache.get(tableId).get(pid).dirty = true;
+    this.cache.get(LongObjectMap.pack(tableId, pid)).dirty = true;
+    updateIndex(tid, tableId, t, false);
+  }
+
+  /**
+   * Marks a page that tid holds a write lock on as dirty, for files such as
+   * indexes that change their pages in place. The page is written back when
+   * the transaction commits and reread from disk when it aborts.
+   */
+  public synchronized void markDirty(int tid, int tableId, int pid) throws Exception {
+    Frame frame = this.cache.get(LongObjectMap.pack(tableId, pid));
+    if (frame == null || frame.perm == null || frame.perm.permLevel != Permissions.READ_WRITE.permLevel
+        || !holds(tid, tableId, pid)) {
+      throw new Exception();
+    }
+    frame.dirty = true;
+  }
+
+  /* Adds or removes the entry of a tuple in the indexes of the table */
+  private void updateIndex(int tid, int tableId, Tuple t, boolean insert) throws Exception {
+    for (Index index : Database.getCatalog().getIndexes(tableId)) {
+      if (insert) {
+        index.insert(tid, t);
+      } else {
+        index.delete(tid, t.getField(index.getKeyField()), t.getPid(), t.getId());
+      }
+    }
   }
 
   private synchronized void flushPage(int tableId, int pid) throws IOException {
-    HeapPage hp = this.cache.get(tableId).get(pid).hp;
+    HeapPage hp = this.cache.get(LongObjectMap.pack(tableId, pid)).hp;
     Catalog catalog = Database.getCatalog();
     catalog.getDbFile(tableId).writePage(hp);
+    Database.getStats().recordDirtyFlush();
   }
 
   /**
    * Discards a page from the buffer pool.
    * Flushes the page to disk to ensure dirty pages are updated on disk.
+   *
+   * @param tableId the table that needs a frame, or -1 when shrinking. A table
+   *                at its maximum quota evicts one of its own pages; otherwise
+   *                tables at their minimum quota are skipped.
    */
-  private synchronized void evictPage() throws Exception {
-    Iterator i = this.LRU.iterator();
-    while (i.hasNext()) {
-      Page page = (Page) i.next();
-      if (!this.cache.get(page.tableId).get(page.pid).dirty) {
-        i.remove();
-        this.cache.get(page.tableId).remove(page.pid);
+  private synchronized void evictPage(int tableId) throws Exception {
+    boolean ownPage = tableId != -1 && atMaxQuota(tableId);
+    for (Frame frame = this.lruHead; frame != null; frame = frame.next) {
+      if (ownPage ? frame.tableId != tableId : atMinQuota(frame.tableId)) {
+        continue;
+      }
+      if (!frame.dirty) {
+        removeFrame(frame);
+        Database.getStats().recordEviction(frame.tableId, frame.pid);
         return;
       }
     }
     throw new Exception();
   }
 
+  private void removeFrame(Frame frame) {
+    unlinkLRU(frame);
+    this.cache.remove(LongObjectMap.pack(frame.tableId, frame.pid));
+    residentCounter(frame.tableId)[0]--;
+  }
+
   private boolean hasSpaces() {
-    return this.LRU.size() < this.numPages;
+    return this.cache.size() < this.numPages;
   }
 
-  private int getLockIdx(int tid, int tableId, int pid) {
-    ArrayList<Page> pages = this.transactions.get(tid);
-    if (pages != null) {
-      int i = 0;
-      for (Page page : this.transactions.get(tid)) {
-        if (page.compareTo(tableId, pid)) {
-          return i;
-        }
-        i++;
-      }
+  private int residentPages(int tableId) {
+    int[] count = this.residents.get(tableId);
+    return count == null ? 0 : count[0];
+  }
+
+  private int[] residentCounter(int tableId) {
+    int[] count = this.residents.get(tableId);
+    if (count == null) {
+      count = new int[1];
+      this.residents.put(tableId, count);
     }
-    return -1;
+    return count;
+  }
+
+  private boolean atMaxQuota(int tableId) {
+    Quota quota = this.quotas.get(tableId);
+    return quota != null && residentPages(tableId) >= quota.maxPages;
   }
 
-  private void updatePageLRU(int tableId, int pid) {
-    Iterator i = this.LRU.iterator();
-    boolean found = false;
-    while (i.hasNext()) {
-      Page page = (Page) i.next();
-      if (page.compareTo(tableId, pid)) {
-        i.remove();
-        this.LRU.add(page);
-        found = true;
-        break;
+  private boolean atMinQuota(int tableId) {
+    Quota quota = this.quotas.get(tableId);
+    return quota != null && residentPages(tableId) <= quota.minPages;
+  }
+
+  /* Total frames reserved by table quotas, ignoring the given table */
+  private int reservedPages(int excludedTableId) {
+    int reserved = 0;
+    for (int tableId : this.quotas.keys()) {
+      if (tableId != excludedTableId) {
+        reserved += this.quotas.get(tableId).minPages;
       }
     }
-    if (!found) {
-      this.LRU.add(new Page(tableId, pid));
+    return reserved;
+  }
+
+  private boolean holds(int tid, int tableId, int pid) {
+    LongObjectMap<Page> locks = this.transactions.get(tid);
+    return locks != null && locks.containsKey(LongObjectMap.pack(tableId, pid));
+  }
+
+  /* The pages locked by a transaction, created on first use */
+  private LongObjectMap<Page> lockedPages(int tid) {
+    LongObjectMap<Page> locks = this.transactions.get(tid);
+    if (locks == null) {
+      locks = new LongObjectMap<Page>();
+      this.transactions.put(tid, locks);
+    }
+    return locks;
+  }
+
+  private void updatePageLRU(Frame frame) {
+    if (frame == this.lruTail) {
+      return;
+    }
+    if (frame.prev != null || frame == this.lruHead) {
+      unlinkLRU(frame);
+    }
+    frame.prev = this.lruTail;
+    frame.next = null;
+    if (this.lruTail != null) {
+      this.lruTail.next = frame;
+    } else {
+      this.lruHead = frame;
+    }
+    this.lruTail = frame;
+  }
+
+  private void unlinkLRU(Frame frame) {
+    if (frame.prev != null) {
+      frame.prev.next = frame.next;
+    } else {
+      this.lruHead = frame.next;
+    }
+    if (frame.next != null) {
+      frame.next.prev = frame.prev;
+    } else {
+      this.lruTail = frame.prev;
     }
+    frame.prev = null;
+    frame.next = null;
   }
 }
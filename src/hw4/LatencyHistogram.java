@@ -0,0 +1,80 @@
+package hw4;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with power-of-two buckets. Recording a sample
+ * is a couple of LongAdder increments, so it can sit on the hot path of
+ * concurrent readers and writers.
+ */
+public class LatencyHistogram {
+  private static final int NUM_BUCKETS = 64;
+
+  /* bucket i holds samples in [2^(i-1), 2^i) nanoseconds */
+  private final LongAdder[] buckets;
+  private final LongAdder count;
+  private final LongAdder totalNanos;
+
+  public LatencyHistogram() {
+    this.buckets = new LongAdder[NUM_BUCKETS];
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      this.buckets[i] = new LongAdder();
+    }
+    this.count = new LongAdder();
+    this.totalNanos = new LongAdder();
+  }
+
+  /**
+   * Records one sample.
+   *
+   * @param nanos the measured latency in nanoseconds
+   */
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    this.buckets[Math.min(NUM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos))].increment();
+    this.count.increment();
+    this.totalNanos.add(nanos);
+  }
+
+  public long getCount() {
+    return this.count.sum();
+  }
+
+  public long getMeanNanos() {
+    long n = this.count.sum();
+    return n == 0 ? 0 : this.totalNanos.sum() / n;
+  }
+
+  /**
+   * Returns an upper bound of the given percentile, accurate to a factor of two.
+   *
+   * @param percentile a value between 0 and 100
+   * @return latency in nanoseconds that at least `percentile` percent of the
+   *         samples did not exceed
+   */
+  public long getPercentileNanos(double percentile) {
+    long n = this.count.sum();
+    if (n == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(n * percentile / 100.0);
+    long seen = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      seen += this.buckets[i].sum();
+      if (seen >= rank) {
+        return i == 0 ? 0 : 1L << Math.min(i, 62);
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  public void reset() {
+    for (LongAdder bucket : this.buckets) {
+      bucket.reset();
+    }
+    this.count.reset();
+    this.totalNanos.reset();
+  }
+}
@@ -0,0 +1,76 @@
+package hw4;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Custom Java Flight Recorder events emitted by {@link StorageStats}. They are
+ * only committed while a recording has them enabled.
+ */
+public class StorageEvents {
+
+  @Name("hw4.PageIO")
+  @Label("Page I/O")
+  @Category({ "Database", "Storage" })
+  @StackTrace(false)
+  public static class PageIO extends Event {
+    @Label("Table Id")
+    public int tableId;
+
+    @Label("Page Id")
+    public int pid;
+
+    @Label("Write")
+    public boolean write;
+
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    public long latency;
+  }
+
+  @Name("hw4.PageEvict")
+  @Label("Page Evict")
+  @Category({ "Database", "Buffer Pool" })
+  @StackTrace(false)
+  public static class PageEvict extends Event {
+    @Label("Table Id")
+    public int tableId;
+
+    @Label("Page Id")
+    public int pid;
+  }
+
+  @Name("hw4.LockConflict")
+  @Label("Lock Conflict")
+  @Category({ "Database", "Buffer Pool" })
+  public static class LockConflict extends Event {
+    @Label("Transaction Id")
+    public int tid;
+
+    @Label("Table Id")
+    public int tableId;
+
+    @Label("Page Id")
+    public int pid;
+  }
+
+  @Name("hw4.TransactionComplete")
+  @Label("Transaction Complete")
+  @Category({ "Database", "Buffer Pool" })
+  @StackTrace(false)
+  public static class TransactionComplete extends Event {
+    @Label("Transaction Id")
+    public int tid;
+
+    @Label("Commit")
+    public boolean commit;
+
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    public long latency;
+  }
+}
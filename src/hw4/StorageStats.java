@@ -0,0 +1,275 @@
+package hw4;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import hw1.IntObjectMap;
+
+/**
+ * StorageStats collects counters and latency histograms for the buffer pool
+ * and the heap files underneath it. All counters are LongAdders so that
+ * concurrent transactions do not contend on a single cache line.
+ * <p>
+ * The statistics are exposed through JMX under {@link #OBJECT_NAME}. Page
+ * reads and writes, evictions, lock conflicts and completed transactions are
+ * also emitted as JFR events (see {@link StorageEvents}); page hits and misses,
+ * dirty flushes and lock acquisitions are too frequent for per-operation
+ * events and are only counted.
+ */
+public class StorageStats implements StorageStatsMBean {
+  public static final String OBJECT_NAME = "hw4:type=StorageStats";
+
+  private final LongAdder hits;
+  private final LongAdder misses;
+  private final LongAdder evictions;
+  private final LongAdder dirtyFlushes;
+  private final LongAdder lockAcquisitions;
+  private final LongAdder lockConflicts;
+  private final LongAdder aborts;
+
+  /*
+   * tableId -> {hits, misses}, guarded by its own monitor. The arrays are never
+   * replaced, so the buffer pool caches them in its frames.
+   */
+  private final IntObjectMap<LongAdder[]> tables;
+
+  private final LatencyHistogram pageReads;
+  private final LatencyHistogram pageWrites;
+  private final LatencyHistogram commits;
+
+  public StorageStats() {
+    this.hits = new LongAdder();
+    this.misses = new LongAdder();
+    this.evictions = new LongAdder();
+    this.dirtyFlushes = new LongAdder();
+    this.lockAcquisitions = new LongAdder();
+    this.lockConflicts = new LongAdder();
+    this.aborts = new LongAdder();
+    this.tables = new IntObjectMap<LongAdder[]>();
+    this.pageReads = new LatencyHistogram();
+    this.pageWrites = new LatencyHistogram();
+    this.commits = new LatencyHistogram();
+  }
+
+  /**
+   * Registers this object with the platform MBean server. Only one instance can
+   * be registered at a time; later calls replace the earlier registration.
+   *
+   * @throws JMException if the MBean server rejects the registration
+   */
+  public void register() throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(OBJECT_NAME);
+    if (server.isRegistered(name)) {
+      server.unregisterMBean(name);
+    }
+    server.registerMBean(this, name);
+  }
+
+  public void recordPageHit(int tableId) {
+    recordPageHit(tableCounters(tableId));
+  }
+
+  /* Records a hit given the counters returned by tableCounters */
+  void recordPageHit(LongAdder[] counters) {
+    this.hits.increment();
+    counters[0].increment();
+  }
+
+  public void recordPageMiss(int tableId) {
+    this.misses.increment();
+    tableCounters(tableId)[1].increment();
+  }
+
+  public void recordEviction(int tableId, int pid) {
+    this.evictions.increment();
+    StorageEvents.PageEvict event = new StorageEvents.PageEvict();
+    if (event.isEnabled()) {
+      event.tableId = tableId;
+      event.pid = pid;
+      event.commit();
+    }
+  }
+
+  public void recordDirtyFlush() {
+    this.dirtyFlushes.increment();
+  }
+
+  public void recordPageRead(int tableId, int pid, long nanos) {
+    this.pageReads.record(nanos);
+    recordPageIO(tableId, pid, false, nanos);
+  }
+
+  public void recordPageWrite(int tableId, int pid, long nanos) {
+    this.pageWrites.record(nanos);
+    recordPageIO(tableId, pid, true, nanos);
+  }
+
+  public void recordLockAcquired() {
+    this.lockAcquisitions.increment();
+  }
+
+  public void recordLockConflict(int tid, int tableId, int pid) {
+    this.lockConflicts.increment();
+    StorageEvents.LockConflict event = new StorageEvents.LockConflict();
+    if (event.isEnabled()) {
+      event.tid = tid;
+      event.tableId = tableId;
+      event.pid = pid;
+      event.commit();
+    }
+  }
+
+  public void recordTransactionComplete(int tid, boolean commit, long nanos) {
+    if (commit) {
+      this.commits.record(nanos);
+    } else {
+      this.aborts.increment();
+    }
+    StorageEvents.TransactionComplete event = new StorageEvents.TransactionComplete();
+    if (event.isEnabled()) {
+      event.tid = tid;
+      event.commit = commit;
+      event.latency = nanos;
+      event.commit();
+    }
+  }
+
+  private void recordPageIO(int tableId, int pid, boolean write, long nanos) {
+    StorageEvents.PageIO event = new StorageEvents.PageIO();
+    if (event.isEnabled()) {
+      event.tableId = tableId;
+      event.pid = pid;
+      event.write = write;
+      event.latency = nanos;
+      event.commit();
+    }
+  }
+
+  /* The {hits, misses} counters of a table, created on first use */
+  LongAdder[] tableCounters(int tableId) {
+    synchronized (this.tables) {
+      LongAdder[] counters = this.tables.get(tableId);
+      if (counters == null) {
+        counters = new LongAdder[] { new LongAdder(), new LongAdder() };
+        this.tables.put(tableId, counters);
+      }
+      return counters;
+    }
+  }
+
+  private LongAdder[] findTableCounters(int tableId) {
+    synchronized (this.tables) {
+      return this.tables.get(tableId);
+    }
+  }
+
+  public LatencyHistogram getPageReadLatency() {
+    return this.pageReads;
+  }
+
+  public LatencyHistogram getPageWriteLatency() {
+    return this.pageWrites;
+  }
+
+  public LatencyHistogram getCommitLatency() {
+    return this.commits;
+  }
+
+  public long getPageHits() {
+    return this.hits.sum();
+  }
+
+  public long getPageMisses() {
+    return this.misses.sum();
+  }
+
+  public double getHitRate() {
+    long hits = this.hits.sum();
+    long total = hits + this.misses.sum();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  public long getTableHits(int tableId) {
+    LongAdder[] counters = findTableCounters(tableId);
+    return counters == null ? 0 : counters[0].sum();
+  }
+
+  public long getTableMisses(int tableId) {
+    LongAdder[] counters = findTableCounters(tableId);
+    return counters == null ? 0 : counters[1].sum();
+  }
+
+  public long getEvictions() {
+    return this.evictions.sum();
+  }
+
+  public long getDirtyFlushes() {
+    return this.dirtyFlushes.sum();
+  }
+
+  public long getLockAcquisitions() {
+    return this.lockAcquisitions.sum();
+  }
+
+  public long getLockConflicts() {
+    return this.lockConflicts.sum();
+  }
+
+  public long getAborts() {
+    return this.aborts.sum();
+  }
+
+  public long getCommits() {
+    return this.commits.getCount();
+  }
+
+  public long getPageReadMeanMicros() {
+    return this.pageReads.getMeanNanos() / 1000;
+  }
+
+  public long getPageReadP99Micros() {
+    return this.pageReads.getPercentileNanos(99) / 1000;
+  }
+
+  public long getPageWriteMeanMicros() {
+    return this.pageWrites.getMeanNanos() / 1000;
+  }
+
+  public long getPageWriteP99Micros() {
+    return this.pageWrites.getPercentileNanos(99) / 1000;
+  }
+
+  public long getCommitMeanMicros() {
+    return this.commits.getMeanNanos() / 1000;
+  }
+
+  public long getCommitP99Micros() {
+    return this.commits.getPercentileNanos(99) / 1000;
+  }
+
+  public void reset() {
+    this.hits.reset();
+    this.misses.reset();
+    this.evictions.reset();
+    this.dirtyFlushes.reset();
+    this.lockAcquisitions.reset();
+    this.lockConflicts.reset();
+    this.aborts.reset();
+    // reset rather than drop the table counters, frames may hold them
+    synchronized (this.tables) {
+      for (int tableId : this.tables.keys()) {
+        for (LongAdder counter : this.tables.get(tableId)) {
+          counter.reset();
+        }
+      }
+    }
+    this.pageReads.reset();
+    this.pageWrites.reset();
+    this.commits.reset();
+  }
+}
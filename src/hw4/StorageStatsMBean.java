@@ -0,0 +1,43 @@
+package hw4;
+
+/**
+ * JMX management interface of {@link StorageStats}. Latencies are reported in
+ * microseconds.
+ */
+public interface StorageStatsMBean {
+  public long getPageHits();
+
+  public long getPageMisses();
+
+  public double getHitRate();
+
+  public long getTableHits(int tableId);
+
+  public long getTableMisses(int tableId);
+
+  public long getEvictions();
+
+  public long getDirtyFlushes();
+
+  public long getLockAcquisitions();
+
+  public long getLockConflicts();
+
+  public long getAborts();
+
+  public long getCommits();
+
+  public long getPageReadMeanMicros();
+
+  public long getPageReadP99Micros();
+
+  public long getPageWriteMeanMicros();
+
+  public long getPageWriteP99Micros();
+
+  public long getCommitMeanMicros();
+
+  public long getCommitP99Micros();
+
+  public void reset();
+}
@@ -6,21 +6,68 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeSet;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import hw1.AggregateOperator;
+import hw1.AggregateSink;
+import hw1.BTreeFile;
+import hw1.BatchAggregate;
+import hw1.BatchFilter;
+import hw1.BatchOperator;
+import hw1.BatchProject;
+import hw1.BatchScan;
+import hw1.BitmapIndex;
+import hw1.BulkLoader;
 import hw1.Catalog;
+import hw1.CollectSink;
+import hw1.CompiledScan;
 import hw1.Database;
+import hw1.DictionaryFile;
+import hw1.ExternalSort;
+import hw1.Field;
+import hw1.FilterKernels;
+import hw1.HashAggregate;
+import hw1.HashBuildSink;
+import hw1.HashIndexFile;
+import hw1.HashJoin;
+import hw1.HashProbeSink;
 import hw1.HeapFile;
 import hw1.HeapPage;
 import hw1.IntField;
+import hw1.IntObjectMap;
+import hw1.LongObjectMap;
+import hw1.PageBloomFilter;
+import hw1.PaxFile;
+import hw1.Pipeline;
+import hw1.Predicate;
+import hw1.PrefixIndexFile;
+import hw1.PreparedQuery;
+import hw1.QueryCache;
+import hw1.RelationalOperator;
+import hw1.RoaringBitmap;
+import hw1.RowBatch;
+import hw1.SlottedHeapFile;
+import hw1.SortSink;
 import hw1.StringField;
+import hw1.Type;
+import hw1.TopN;
 import hw1.Tuple;
+import hw1.TupleComparator;
 import hw1.TupleDesc;
 import hw4.BufferPool;
+import hw4.LatencyHistogram;
 import hw4.Permissions;
+import hw4.StorageStats;
 
 public class HW4Tests {
 
@@ -49,7 +96,7 @@ public class HW4Tests {
 
 		int tableId = c.getTableId("test");
 		td = c.getTupleDesc(tableId);
-		hf = c.getDbFile(tableId);
+		hf = c.getHeapFile(tableId);
 
 		Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
 
@@ -365,4 +412,1417 @@ public class HW4Tests {
 				!overlappingLocksTable0 && !overlappingLocksTable1);
 	}
 
+	@Test
+	public void testResizeKeepsPages() throws Exception {
+		bp.getPage(0, tid, 0, Permissions.READ_WRITE);
+		bp.resize(BufferPool.DEFAULT_PAGES * 2);
+		assertTrue("resizing should keep locks", bp.holdsLock(0, tid, 0));
+		for (int i = 0; i < 60; i++) {
+			bp.getPage(0, tid2, i, Permissions.READ_ONLY);
+		}
+		assertTrue(bp.getNumPages() == BufferPool.DEFAULT_PAGES * 2);
+	}
+
+	@Test
+	public void testShrink() throws Exception {
+		for (int i = 0; i < 50; i++) {
+			bp.getPage(0, tid2, i, Permissions.READ_ONLY);
+		}
+		bp.resize(10);
+		for (int i = 50; i < 55; i++) {
+			bp.getPage(0, tid2, i, Permissions.READ_ONLY);
+		}
+		assertTrue(bp.getNumPages() == 10);
+	}
+
+	@Test
+	public void testTableQuota() throws Exception {
+		bp.setTableQuota(tid2, 0, 5);
+		bp.setTableQuota(tid, 1, 1);
+		bp.getPage(0, tid, 0, Permissions.READ_WRITE);
+		for (int i = 0; i < 5; i++) {
+			bp.getPage(1, tid2, i, Permissions.READ_WRITE);
+			Tuple t = new Tuple(td);
+			t.setPid(i);
+			t.setId(0);
+			bp.deleteTuple(1, tid2, t);
+		}
+		// all five frames of tid2 are dirty, so it may not take a sixth one
+		try {
+			bp.getPage(1, tid2, 5, Permissions.READ_WRITE);
+		} catch (Exception e) {
+			assertTrue(bp.holdsLock(0, tid, 0));
+			return;
+		}
+		fail("Should not exceed the table quota");
+	}
+
+	@Test
+	public void testStats() throws Exception {
+		StorageStats stats = Database.getStats();
+		stats.reset();
+		bp.getPage(0, tid, 0, Permissions.READ_ONLY);
+		bp.getPage(0, tid, 0, Permissions.READ_ONLY);
+		bp.transactionComplete(0, true);
+		assertTrue(stats.getTableMisses(tid) == 1);
+		assertTrue(stats.getTableHits(tid) == 1);
+		assertTrue(stats.getPageReadLatency().getCount() == 1);
+		assertTrue(stats.getCommits() == 1);
+		assertTrue(stats.getHitRate() == 0.5);
+	}
+
+	@Test
+	public void testInsertTuples() throws Exception {
+		int before = hf.getAllTuples().size();
+		ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+		for (int i = 0; i < 100; i++) {
+			Tuple t = new Tuple(td);
+			t.setField(0, new IntField(i));
+			t.setField(1, new StringField("batch" + i));
+			tuples.add(t);
+		}
+		bp.insertTuples(0, tid, tuples);
+		assertTrue(bp.holdsLock(0, tid, 0));
+		bp.transactionComplete(0, true);
+
+		assertTrue(hf.getAllTuples().size() == before + 100);
+		assertTrue(hf.getNumPages() > 1);
+	}
+
+	@Test
+	public void testPrimaryKeyIndex() throws Exception {
+		c.addTable(hf, "test", "c1");
+		BTreeFile index = c.createIndex(tid);
+		index.getFile().deleteOnExit();
+		ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+		for (int i = 0; i < 500; i++) {
+			Tuple t = new Tuple(td);
+			t.setField(0, new IntField(1000 + i));
+			t.setField(1, new StringField("key" + i));
+			tuples.add(t);
+		}
+		bp.insertTuples(0, tid, tuples);
+		bp.transactionComplete(0, true);
+
+		ArrayList<Tuple> found = index.find(1, new IntField(1250));
+		assertTrue(found.size() == 1);
+		assertTrue(found.get(0).getField(1).equals(new StringField("key250")));
+		assertTrue(index.search(1, RelationalOperator.GTE, new IntField(1400)).size() == 100);
+		assertTrue(index.search(1, RelationalOperator.GT, new IntField(1000), RelationalOperator.LT,
+				new IntField(1010)).size() == 9);
+
+		bp.deleteTuple(1, tid, found.get(0));
+		assertTrue(index.find(1, new IntField(1250)).isEmpty());
+		bp.transactionComplete(1, true);
+	}
+
+	@Test
+	public void testHashIndex() throws Exception {
+		HashIndexFile index = c.createHashIndex(tid, "c2");
+		index.getFile().deleteOnExit();
+		ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+		for (int i = 0; i < 300; i++) {
+			Tuple t = new Tuple(td);
+			t.setField(0, new IntField(i));
+			t.setField(1, new StringField("key" + (i % 30)));
+			tuples.add(t);
+		}
+		bp.insertTuples(0, tid, tuples);
+		bp.transactionComplete(0, true);
+
+		ArrayList<Tuple> found = index.find(1, new StringField("key7"));
+		assertTrue(found.size() == 10);
+		bp.deleteTuple(1, tid, found.get(0));
+		assertTrue(index.find(1, new StringField("key7")).size() == 9);
+		bp.transactionComplete(1, true);
+
+		// a rebuild after a bulk load does not see the old index through the BufferPool
+		new BulkLoader(hf).load(tuples.subList(0, 30).iterator());
+		index = c.createHashIndex(tid, "c2");
+		assertTrue(index.find(2, new StringField("key7")).size() == 10);
+		assertTrue(index.find(2, new StringField("key12")).size() == 11);
+		bp.transactionComplete(2, true);
+	}
+
+	@Test
+	public void testCoveringIndex() throws Exception {
+		BTreeFile index = c.createCoveringIndex(tid, "c2", "c1");
+		index.getFile().deleteOnExit();
+		ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+		for (int i = 0; i < 300; i++) {
+			Tuple t = new Tuple(td);
+			t.setField(0, new IntField(i));
+			t.setField(1, new StringField("key" + (i % 30)));
+			tuples.add(t);
+		}
+		bp.insertTuples(0, tid, tuples);
+		bp.transactionComplete(0, true);
+
+		assertTrue(c.getCoveringIndex(tid, 0, 1) == index);
+		StorageStats stats = Database.getStats();
+		long tableReads = stats.getTableHits(tid) + stats.getTableMisses(tid);
+		ArrayList<Tuple> found = index.project(1, RelationalOperator.GTE, new StringField("key7"),
+				RelationalOperator.LTE, new StringField("key7"), 0);
+		assertTrue(found.size() == 10);
+		assertTrue(((IntField) found.get(0).getField(0)).getValue() % 30 == 7);
+		assertTrue(stats.getTableHits(tid) + stats.getTableMisses(tid) == tableReads);
+		bp.transactionComplete(1, true);
+
+		// a rebuild after a bulk load does not see the old index through the BufferPool
+		new BulkLoader(hf).load(tuples.subList(0, 30).iterator());
+		index = c.createCoveringIndex(tid, "c2", "c1");
+		assertTrue(index.project(2, RelationalOperator.GTE, new StringField("key7"), RelationalOperator.LTE,
+				new StringField("key7"), 0).size() == 11);
+		bp.transactionComplete(2, true);
+	}
+
+	@Test
+	public void testSlottedFile() throws Exception {
+		File f = File.createTempFile("test", ".slotted.dat");
+		f.deleteOnExit();
+		SlottedHeapFile sf = SlottedHeapFile.convert(hf, f);
+		c.addTable(sf, "slotted", "c1");
+		// index builds read fixed-size slots
+		try {
+			c.createIndex(sf.getId());
+			fail("Should have thrown an exception");
+		} catch (IllegalArgumentException e) {
+		}
+		int before = hf.getAllTuples().size();
+		assertTrue(sf.getAllTuples().size() == before);
+		assertTrue(sf.getNumPages() <= hf.getNumPages());
+
+		ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+		for (int i = 0; i < 500; i++) {
+			Tuple t = new Tuple(td);
+			t.setField(0, new IntField(1000 + i));
+			t.setField(1, new StringField("key" + i));
+			tuples.add(t);
+		}
+		bp.insertTuples(0, sf.getId(), tuples);
+		bp.transactionComplete(0, true);
+		assertTrue(sf.getAllTuples().size() == before + 500);
+
+		ArrayList<Tuple> found = sf.getMatchingTuples(new Predicate(0, RelationalOperator.EQ, new IntField(1250)));
+		assertTrue(found.size() == 1);
+		assertTrue(found.get(0).getField(1).equals(new StringField("key250")));
+		bp.deleteTuple(1, sf.getId(), found.get(0));
+		bp.transactionComplete(1, true);
+		assertTrue(sf.getAllTuples().size() == before + 499);
+	}
+
+	@Test
+	public void testPaxFile() throws Exception {
+		File f = File.createTempFile("test", ".pax.dat");
+		f.deleteOnExit();
+		PaxFile pf = PaxFile.convert(hf, f);
+		c.addTable(pf, "pax", "c1");
+		try {
+			c.getHeapFile(pf.getId());
+			fail("Should have thrown an exception");
+		} catch (IllegalArgumentException e) {
+		}
+		ArrayList<Tuple> all = hf.getAllTuples();
+		assertTrue(pf.getAllTuples().size() == all.size());
+
+		long expected = 0;
+		for (Tuple t : all) {
+			expected += ((IntField) t.getField(0)).getValue();
+		}
+		long[] sum = { 0 };
+		pf.forEachInt(0, v -> sum[0] += v);
+		assertTrue(sum[0] == expected);
+
+		Predicate p = new Predicate(1, RelationalOperator.EQ, all.get(0).getField(1));
+		assertTrue(pf.getMatchingTuples(p).size() == hf.getMatchingTuples(p).size());
+	}
+
+	@Test
+	public void testDictionaryFile() throws Exception {
+		File f = File.createTempFile("test", ".dict.dat");
+		f.deleteOnExit();
+		new File(f.getPath() + ".dict").deleteOnExit();
+		DictionaryFile df = DictionaryFile.convert(hf, f);
+		c.addTable(df, "dict", "c1");
+		assertTrue(df.getAllTuples().size() == hf.getAllTuples().size());
+		assertTrue(df.getNumPages() <= hf.getNumPages());
+
+		Tuple t = new Tuple(td);
+		t.setField(0, new IntField(4242));
+		t.setField(1, new StringField("dictionary"));
+		ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+		tuples.add(df.encode(t));
+		bp.insertTuples(0, df.getId(), tuples);
+		bp.transactionComplete(0, true);
+
+		ArrayList<Tuple> found = df.getMatchingDecoded(new Predicate(1, RelationalOperator.EQ,
+				new StringField("dictionary")));
+		assertTrue(found.size() == 1);
+		assertTrue(found.get(0).getField(0).equals(new IntField(4242)));
+		assertTrue(new DictionaryFile(df.getFile(), td).getDictionary().getCode("dictionary") != -1);
+	}
+
+	@Test
+	public void testBulkLoadCsv() throws Exception {
+		File csv = File.createTempFile("load", ".csv");
+		csv.deleteOnExit();
+		ArrayList<String> lines = new ArrayList<String>();
+		for (int i = 0; i < 3000; i++) {
+			lines.add(i + ",row" + i);
+		}
+		Files.write(csv.toPath(), lines);
+
+		int before = hf.getAllTuples().size();
+		assertTrue(new BulkLoader(hf).loadCsv(csv) == 3000);
+		ArrayList<Tuple> all = hf.getAllTuples();
+		assertTrue(all.size() == before + 3000);
+		Tuple last = all.get(all.size() - 1);
+		assertTrue(last.getField(0).equals(new IntField(2999)));
+		assertTrue(last.getField(1).equals(new StringField("row2999")));
+	}
+
+	@Test
+	public void testBulkLoadFailureLeavesFileUnchanged() throws Exception {
+		File csv = File.createTempFile("load", ".csv");
+		csv.deleteOnExit();
+		ArrayList<String> lines = new ArrayList<String>();
+		// several chunks of pages are written before the bad row is reached
+		for (int i = 0; i < 10000; i++) {
+			lines.add(i + ",row" + i);
+		}
+		lines.add("not a row");
+		Files.write(csv.toPath(), lines);
+
+		long length = hf.getFile().length();
+		int before = hf.getAllTuples().size();
+		try {
+			new BulkLoader(hf, 1).loadCsv(csv);
+			fail("Should have thrown an exception");
+		} catch (IllegalArgumentException e) {
+		}
+		assertTrue(hf.getFile().length() == length);
+		assertTrue(hf.getAllTuples().size() == before);
+	}
+
+	/* the selected rows of every batch, as strings */
+	private ArrayList<String> batchRows(BatchOperator op) {
+		ArrayList<String> rows = new ArrayList<String>();
+		RowBatch batch;
+		while ((batch = op.next()) != null) {
+			for (int i = 0; i < batch.numSelected(); i++) {
+				rows.add(batch.getTuple(batch.getSelection()[i]).toString());
+			}
+		}
+		return rows;
+	}
+
+	/* the tuples of the file that satisfy all predicates, as strings */
+	private ArrayList<String> matchingRows(HeapFile f, Predicate... predicates) {
+		ArrayList<String> rows = new ArrayList<String>();
+		for (Tuple t : f.getAllTuples()) {
+			boolean match = true;
+			for (Predicate p : predicates) {
+				match &= p.evaluate(t);
+			}
+			if (match) {
+				rows.add(t.toString());
+			}
+		}
+		return rows;
+	}
+
+	@Test
+	public void testBatchScan() throws Exception {
+		HeapFile f = c.getHeapFile(tid2);
+		int rows = f.getAllTuples().size();
+		// a capacity that does not divide the number of rows leaves a partial last batch
+		assertTrue(rows % 64 != 0);
+		BatchScan scan = new BatchScan(f, 0, f.getNumPages(), 64);
+		int last = 0;
+		RowBatch batch;
+		while ((batch = scan.next()) != null) {
+			assertTrue(batch.numSelected() == batch.getSize());
+			last = batch.getSize();
+		}
+		assertTrue(last == rows % 64);
+
+		scan.rewind();
+		assertTrue(batchRows(scan).equals(matchingRows(f)));
+
+		scan.setRange(0, 0);
+		assertTrue(scan.next() == null);
+	}
+
+	@Test
+	public void testBatchFilter() throws Exception {
+		HeapFile f = c.getHeapFile(tid2);
+		Predicate gt = new Predicate(0, RelationalOperator.GT, new IntField(200));
+		Predicate lte = new Predicate(0, RelationalOperator.LTE, new IntField(400));
+		Predicate str = new Predicate(1, RelationalOperator.EQ, new StringField("hi"));
+
+		// the first filter sees full batches, the second one a partial selection
+		BatchOperator op = new BatchFilter(new BatchFilter(new BatchScan(f, 0, f.getNumPages(), 64), gt), lte);
+		assertTrue(batchRows(op).equals(matchingRows(f, gt, lte)));
+
+		op = new BatchFilter(new BatchFilter(new BatchScan(f, 0, f.getNumPages(), 64), gt), str);
+		assertTrue(batchRows(op).equals(matchingRows(f, gt, str)));
+
+		for (RelationalOperator o : RelationalOperator.values()) {
+			Predicate p = new Predicate(0, o, new IntField(300));
+			op = new BatchFilter(new BatchScan(f, 0, f.getNumPages(), 100), p);
+			assertTrue(batchRows(op).equals(matchingRows(f, p)));
+		}
+
+		Predicate none = new Predicate(0, RelationalOperator.GT, new IntField(Integer.MAX_VALUE));
+		assertTrue(new BatchFilter(new BatchScan(f), none).next() == null);
+	}
+
+	@Test
+	public void testBatchProject() throws Exception {
+		HeapFile f = c.getHeapFile(tid2);
+		BatchProject project = new BatchProject(new BatchScan(f, 0, f.getNumPages(), 64), new int[] { 1, 0 });
+		assertTrue(project.getTupleDesc().getFieldName(0).equals("c2"));
+		ArrayList<String> expected = new ArrayList<String>();
+		for (Tuple t : f.getAllTuples()) {
+			expected.add(t.getField(1) + ", " + t.getField(0));
+		}
+		assertTrue(batchRows(project).equals(expected));
+	}
+
+	@Test
+	public void testBatchAggregate() throws Exception {
+		HeapFile f = c.getHeapFile(tid2);
+		Predicate gt = new Predicate(0, RelationalOperator.GT, new IntField(200));
+		long count = 0;
+		long sum = 0;
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (Tuple t : f.getAllTuples()) {
+			if (gt.evaluate(t)) {
+				int v = ((IntField) t.getField(0)).getValue();
+				count++;
+				sum += v;
+				min = Math.min(min, v);
+				max = Math.max(max, v);
+			}
+		}
+		long[] expected = { max, min, sum / count, count, sum };
+		AggregateOperator[] ops = AggregateOperator.values();
+		for (int i = 0; i < ops.length; i++) {
+			BatchOperator op = new BatchFilter(new BatchScan(f, 0, f.getNumPages(), 64), gt);
+			assertTrue(new BatchAggregate(op, ops[i], 0).execute() == expected[i]);
+		}
+
+		// no input rows at all
+		Predicate none = new Predicate(0, RelationalOperator.LT, new IntField(Integer.MIN_VALUE));
+		for (AggregateOperator o : ops) {
+			assertTrue(new BatchAggregate(new BatchFilter(new BatchScan(f), none), o, 0).execute() == 0);
+		}
+	}
+
+	@Test
+	public void testFilterKernels() throws Exception {
+		int[] values = { Integer.MIN_VALUE, Integer.MIN_VALUE + 1, -1, 0, 1, 7, Integer.MAX_VALUE - 1,
+				Integer.MAX_VALUE };
+		// 70 rows so that the bitmap has a partial second word
+		int[] column = new int[70];
+		for (int i = 0; i < column.length; i++) {
+			column[i] = values[i % values.length];
+		}
+		long[] bitmap = new long[FilterKernels.bitmapLength(column.length)];
+		int[] sel = new int[column.length];
+		for (RelationalOperator op : RelationalOperator.values()) {
+			for (int operand : values) {
+				int matches = FilterKernels.compare(column, column.length, op, operand, bitmap);
+				int n = FilterKernels.toSelection(bitmap, bitmap.length, sel);
+				assertTrue(n == matches);
+				int k = 0;
+				for (int i = 0; i < column.length; i++) {
+					if (new IntField(column[i]).compare(op, new IntField(operand))) {
+						assertTrue(sel[k++] == i);
+					}
+				}
+				assertTrue(k == n);
+			}
+		}
+	}
+
+	/*
+	 * a temporary heap file with the schema of test and the given number of
+	 * rows, row i being (i % intValues, "s" + i % stringValues), added to the
+	 * catalog
+	 */
+	private HeapFile tempHeapFile(int rows, int intValues, int stringValues) throws IOException {
+		ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+		for (int i = 0; i < rows; i++) {
+			tuples.add(row(i % intValues, "s" + i % stringValues));
+		}
+		return tempHeapFile(tuples);
+	}
+
+	/* a temporary heap file holding the tuples, added to the catalog */
+	private HeapFile tempHeapFile(ArrayList<Tuple> tuples) throws IOException {
+		File f = File.createTempFile("test", ".dat");
+		f.deleteOnExit();
+		HeapFile temp = new HeapFile(f, td);
+		c.addTable(temp, f.getName());
+		new BulkLoader(temp).load(tuples.iterator());
+		return temp;
+	}
+
+	private Tuple row(int c1, String c2) {
+		Tuple t = new Tuple(td);
+		t.setField(0, new IntField(c1));
+		t.setField(1, new StringField(c2));
+		return t;
+	}
+
+	/* the sorted results of a nested-loop join */
+	private ArrayList<String> nestedLoopJoin(HeapFile l, int leftField, HeapFile r, int rightField) {
+		ArrayList<String> rows = new ArrayList<String>();
+		ArrayList<Tuple> right = r.getAllTuples();
+		for (Tuple lt : l.getAllTuples()) {
+			for (Tuple rt : right) {
+				if (lt.getField(leftField).equals(rt.getField(rightField))) {
+					rows.add(lt + ", " + rt);
+				}
+			}
+		}
+		Collections.sort(rows);
+		return rows;
+	}
+
+	private ArrayList<String> sortedRows(ArrayList<Tuple> tuples) {
+		ArrayList<String> rows = new ArrayList<String>();
+		for (Tuple t : tuples) {
+			rows.add(t.toString());
+		}
+		Collections.sort(rows);
+		return rows;
+	}
+
+	@Test
+	public void testHashJoin() throws Exception {
+		HeapFile l = tempHeapFile(2000, 500, 300);
+		HeapFile r = tempHeapFile(1500, 700, 400);
+
+		HashJoin join = new HashJoin(l, 0, r, 0, 1000);
+		TupleDesc joined = join.getTupleDesc();
+		assertTrue(joined.numFields() == 4);
+		assertTrue(joined.getType(2) == Type.INT && joined.getType(3) == Type.STRING);
+		assertTrue(joined.getFieldName(2).equals("c1"));
+
+		ArrayList<String> expected = nestedLoopJoin(l, 0, r, 0);
+		assertTrue(!expected.isEmpty());
+		assertTrue(sortedRows(join.execute()).equals(expected));
+
+		// a budget of one page forces the inputs to be partitioned
+		assertTrue(sortedRows(new HashJoin(l, 0, r, 0, 1).execute()).equals(expected));
+		assertTrue(sortedRows(new HashJoin(r, 0, l, 0, 1).execute()).equals(nestedLoopJoin(r, 0, l, 0)));
+
+		expected = nestedLoopJoin(l, 1, r, 1);
+		assertTrue(sortedRows(new HashJoin(l, 1, r, 1, 1000).execute()).equals(expected));
+		assertTrue(sortedRows(new HashJoin(l, 1, r, 1, 1).execute()).equals(expected));
+
+		try {
+			new HashJoin(l, 0, r, 1, 1000);
+			fail("Should have thrown an exception");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/* the names of the temporary files left by sorts */
+	private ArrayList<String> sortFiles() {
+		ArrayList<String> names = new ArrayList<String>();
+		for (File f : new File(System.getProperty("java.io.tmpdir")).listFiles()) {
+			if (f.getName().startsWith("sort") && f.getName().endsWith(".dat")) {
+				names.add(f.getName());
+			}
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+	@Test
+	public void testExternalSort() throws Exception {
+		HeapFile f = tempHeapFile(3000, 700, 400);
+		ArrayList<Tuple> expected = f.getAllTuples();
+		Collections.sort(expected, (a, b) -> {
+			int cmp = Integer.compare(((IntField) b.getField(0)).getValue(), ((IntField) a.getField(0)).getValue());
+			if (cmp != 0) {
+				return cmp;
+			}
+			return ((StringField) a.getField(1)).getValue().compareTo(((StringField) b.getField(1)).getValue());
+		});
+		ArrayList<String> files = sortFiles();
+
+		// 100 runs of one page merged two at a time take several passes
+		ExternalSort sort = new ExternalSort(f.getId(), new int[] { 0, 1 }, new boolean[] { false, true }, 1, 2, 2);
+		ArrayList<Tuple> sorted = sort.execute(0);
+		bp.transactionComplete(0, true);
+		assertTrue(sorted.size() == expected.size());
+		for (int i = 0; i < sorted.size(); i++) {
+			assertTrue(sorted.get(i).toString().equals(expected.get(i).toString()));
+		}
+		assertTrue(sortFiles().equals(files));
+
+		// the runs are deleted when the output fails too
+		try {
+			sort.execute(1, t -> {
+				throw new IllegalStateException();
+			});
+			fail("Should have thrown an exception");
+		} catch (IllegalStateException e) {
+		}
+		bp.transactionComplete(1, true);
+		assertTrue(sortFiles().equals(files));
+	}
+
+	/* the aggregate of c1 for each group, computed tuple by tuple */
+	private ArrayList<String> aggregateRows(HeapFile f, int groupField, AggregateOperator op) {
+		HashMap<String, long[]> groups = new HashMap<String, long[]>();
+		for (Tuple t : f.getAllTuples()) {
+			long v = ((IntField) t.getField(0)).getValue();
+			long[] g = groups.computeIfAbsent(t.getField(groupField).toString(),
+					k -> new long[] { 0, 0, Long.MAX_VALUE, Long.MIN_VALUE });
+			g[0]++;
+			g[1] += v;
+			g[2] = Math.min(g[2], v);
+			g[3] = Math.max(g[3], v);
+		}
+		ArrayList<String> rows = new ArrayList<String>();
+		for (String key : groups.keySet()) {
+			long[] g = groups.get(key);
+			long[] results = { g[3], g[2], g[1] / g[0], g[0], g[1] };
+			rows.add(key + ", " + results[op.ordinal()]);
+		}
+		Collections.sort(rows);
+		return rows;
+	}
+
+	@Test
+	public void testHashAggregate() throws Exception {
+		HeapFile f = tempHeapFile(3000, 700, 400);
+		for (AggregateOperator op : AggregateOperator.values()) {
+			for (int groupField = 0; groupField < 2; groupField++) {
+				ArrayList<String> expected = aggregateRows(f, groupField, op);
+				assertTrue(sortedRows(new HashAggregate(f, groupField, op, 0).execute()).equals(expected));
+				// partial aggregates of 4 page ranges, merged
+				assertTrue(sortedRows(new HashAggregate(f, groupField, op, 0, 1 << 20, 4).execute())
+						.equals(expected));
+				// 50 groups at most in memory spills the input to partitions
+				assertTrue(sortedRows(new HashAggregate(f, groupField, op, 0, 50, 2).execute()).equals(expected));
+			}
+		}
+
+		ArrayList<Tuple> large = new ArrayList<Tuple>();
+		large.add(row(Integer.MAX_VALUE, "a"));
+		large.add(row(Integer.MAX_VALUE, "a"));
+		HeapFile overflow = tempHeapFile(large);
+		assertTrue(sortedRows(new HashAggregate(overflow, 1, AggregateOperator.AVG, 0).execute())
+				.equals(aggregateRows(overflow, 1, AggregateOperator.AVG)));
+		try {
+			new HashAggregate(overflow, 1, AggregateOperator.SUM, 0).execute();
+			fail("Should have thrown an exception");
+		} catch (ArithmeticException e) {
+		}
+	}
+
+	@Test
+	public void testTopN() throws Exception {
+		// 50 int and 7 string values, so every key has many duplicates
+		HeapFile f = tempHeapFile(3000, 50, 7);
+		for (int field = 0; field < 2; field++) {
+			for (boolean ascending : new boolean[] { true, false }) {
+				ArrayList<Tuple> sorted = f.getAllTuples();
+				// a stable sort keeps duplicates in (pid, slot) order
+				Collections.sort(sorted, new TupleComparator(field, ascending));
+				for (int n : new int[] { 1, 45, 100, 5000 }) {
+					ArrayList<Tuple> top = new TopN(f, field, ascending, n).execute();
+					assertTrue(top.size() == Math.min(n, sorted.size()));
+					for (int i = 0; i < top.size(); i++) {
+						assertTrue(top.get(i).getPid() == sorted.get(i).getPid());
+						assertTrue(top.get(i).getId() == sorted.get(i).getId());
+					}
+				}
+			}
+		}
+		assertTrue(new TopN(f, 0, true, 0).execute().isEmpty());
+	}
+
+	@Test
+	public void testPipeline() throws Exception {
+		// 100 pages make 7 morsels
+		HeapFile f = tempHeapFile(3000, 700, 400);
+		Predicate gt = new Predicate(0, RelationalOperator.GT, new IntField(200));
+		Predicate lt = new Predicate(1, RelationalOperator.LT, new StringField("s3"));
+		ArrayList<String> expected = new ArrayList<String>();
+		for (Tuple t : f.getAllTuples()) {
+			if (gt.evaluate(t) && lt.evaluate(t)) {
+				expected.add(t.getField(1) + ", " + t.getField(0));
+			}
+		}
+		Collections.sort(expected);
+		for (int threads : new int[] { 1, 4 }) {
+			CollectSink sink = new Pipeline(f).filter(gt).filter(lt).project(new int[] { 1, 0 })
+					.execute(new CollectSink(), threads);
+			assertTrue(sortedRows(sink.getTuples()).equals(expected));
+		}
+
+		for (AggregateOperator op : AggregateOperator.values()) {
+			long serial = new BatchAggregate(new BatchFilter(new BatchScan(f), gt), op, 0).execute();
+			AggregateSink sink = new Pipeline(f).filter(gt).execute(new AggregateSink(op, 0), 4);
+			assertTrue(sink.getResult() == serial);
+		}
+
+		Predicate none = new Predicate(0, RelationalOperator.LT, new IntField(0));
+		assertTrue(new Pipeline(f).filter(none).execute(new CollectSink(), 4).getTuples().isEmpty());
+		assertTrue(new Pipeline(f).filter(none).execute(new AggregateSink(AggregateOperator.MAX, 0), 4)
+				.getResult() == 0);
+	}
+
+	@Test
+	public void testCompiledScan() throws Exception {
+		HeapFile f = tempHeapFile(3000, 700, 400);
+		Predicate gt = new Predicate(0, RelationalOperator.GTE, new IntField(350));
+		Predicate ne = new Predicate(1, RelationalOperator.NOTEQ, new StringField("s7"));
+		ArrayList<String> expected = new ArrayList<String>();
+		for (Tuple t : f.getAllTuples()) {
+			if (gt.evaluate(t) && ne.evaluate(t)) {
+				expected.add(t.getPid() + " " + t.getId() + ": " + t.getField(1) + ", " + t.getField(0));
+			}
+		}
+		int fallbacks = CompiledScan.getFallbackCount();
+		for (boolean compile : new boolean[] { true, false }) {
+			CompiledScan scan = new CompiledScan(f, Arrays.asList(gt, ne), new int[] { 1, 0 }, compile);
+			assertTrue(scan.isCompiled() == compile);
+			ArrayList<String> rows = new ArrayList<String>();
+			for (Tuple t : scan.execute()) {
+				rows.add(t.getPid() + " " + t.getId() + ": " + t);
+			}
+			assertTrue(rows.equals(expected));
+		}
+		assertTrue(CompiledScan.getFallbackCount() == fallbacks);
+	}
+
+	@Test
+	public void testQueryCacheLiterals() throws Exception {
+		HeapFile f = tempHeapFile(500, 50, 20);
+		c.addTable(f, "cached");
+		QueryCache cache = new QueryCache();
+		for (int v : new int[] { 10, 40 }) {
+			ArrayList<String> expected = new ArrayList<String>();
+			for (Tuple t : f.getAllTuples()) {
+				if (((IntField) t.getField(0)).getValue() < v && t.getField(1).equals(new StringField("s3"))) {
+					expected.add(t.getField(0).toString());
+				}
+			}
+			PreparedQuery q = cache.prepare("SELECT c1 FROM cached WHERE c1 < " + v + " AND c2 = 's3'");
+			assertTrue(q.getNumParameters() == 0);
+			ArrayList<String> rows = new ArrayList<String>();
+			for (Tuple t : q.execute()) {
+				rows.add(t.getField(0).toString());
+			}
+			assertTrue(rows.equals(expected));
+			assertTrue(cache.execute("select c1 from cached where c1 < ? and c2 = 's3'", new IntField(v))
+					.size() == expected.size());
+		}
+		assertTrue(cache.size() == 1);
+		assertTrue(cache.prepare("SELECT c1 FROM cached WHERE c1 < ? AND c2 = 's3'").getNumParameters() == 1);
+		try {
+			cache.prepare("SELECT c1, FROM");
+			fail("expected an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			cache.prepare("SELECT");
+			fail("expected an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testIntObjectMap() throws Exception {
+		// three keys whose home is the last of the 16 slots, so they wrap to 0 and 1
+		ArrayList<Integer> wrapped = new ArrayList<Integer>();
+		int other = -1;
+		for (int key = 0; wrapped.size() < 3 || other == -1; key++) {
+			int h = key * 0x9E3779B9;
+			int home = (h ^ (h >>> 16)) & 15;
+			if (home == 15 && wrapped.size() < 3) {
+				wrapped.add(key);
+			} else if (home == 0 && other == -1) {
+				other = key;
+			}
+		}
+		IntObjectMap<String> map = new IntObjectMap<String>();
+		for (int key : wrapped) {
+			map.put(key, "v" + key);
+		}
+		map.put(other, "v" + other);
+		assertTrue(map.get(wrapped.get(2)).equals("v" + wrapped.get(2)));
+		// removing the entry in the last slot shifts the wrapped entries back
+		assertTrue(map.remove(wrapped.get(0)).equals("v" + wrapped.get(0)));
+		assertTrue(map.get(wrapped.get(0)) == null);
+		for (int key : new int[] { wrapped.get(1), wrapped.get(2), other }) {
+			assertTrue(map.get(key).equals("v" + key));
+		}
+		assertTrue(map.remove(wrapped.get(1)).equals("v" + wrapped.get(1)));
+		assertTrue(map.get(wrapped.get(2)).equals("v" + wrapped.get(2)));
+		assertTrue(map.get(other).equals("v" + other));
+		assertTrue(map.size() == 2);
+
+		// random puts and removes against a HashMap, through several rehashes
+		HashMap<Integer, String> expected = new HashMap<Integer, String>();
+		IntObjectMap<String> random = new IntObjectMap<String>();
+		Random r = new Random(7);
+		for (int i = 0; i < 20000; i++) {
+			int key = r.nextInt(500) - 250;
+			if (r.nextInt(3) == 0) {
+				assertTrue(Objects.equals(random.remove(key), expected.remove(key)));
+			} else {
+				assertTrue(Objects.equals(random.put(key, "v" + i), expected.put(key, "v" + i)));
+			}
+		}
+		assertTrue(random.size() == expected.size());
+		for (int key = -250; key < 250; key++) {
+			assertTrue(Objects.equals(random.get(key), expected.get(key)));
+		}
+	}
+
+	@Test
+	public void testLongObjectMap() throws Exception {
+		// three keys whose home is the last of the 16 slots, so they wrap to 0 and 1
+		ArrayList<Long> wrapped = new ArrayList<Long>();
+		for (int pid = 0; wrapped.size() < 3; pid++) {
+			long key = LongObjectMap.pack(tid, pid);
+			long h = key * 0x9E3779B97F4A7C15L;
+			if (((int) (h ^ (h >>> 32)) & 15) == 15) {
+				wrapped.add(key);
+			}
+		}
+		LongObjectMap<String> map = new LongObjectMap<String>();
+		for (long key : wrapped) {
+			map.put(key, "v" + key);
+		}
+		assertTrue(map.remove(wrapped.get(0)).equals("v" + wrapped.get(0)));
+		assertTrue(map.get(wrapped.get(0)) == null);
+		assertTrue(map.get(wrapped.get(1)).equals("v" + wrapped.get(1)));
+		assertTrue(map.get(wrapped.get(2)).equals("v" + wrapped.get(2)));
+		assertTrue(map.remove(wrapped.get(2)).equals("v" + wrapped.get(2)));
+		assertTrue(map.get(wrapped.get(1)).equals("v" + wrapped.get(1)));
+		assertTrue(map.size() == 1 && map.keys()[0] == wrapped.get(1));
+
+		// random puts and removes against a HashMap, through several rehashes
+		HashMap<Long, String> expected = new HashMap<Long, String>();
+		LongObjectMap<String> random = new LongObjectMap<String>();
+		Random r = new Random(7);
+		for (int i = 0; i < 20000; i++) {
+			long key = LongObjectMap.pack(r.nextInt(4), r.nextInt(200));
+			if (r.nextInt(3) == 0) {
+				assertTrue(Objects.equals(random.remove(key), expected.remove(key)));
+			} else {
+				assertTrue(Objects.equals(random.put(key, "v" + i), expected.put(key, "v" + i)));
+			}
+		}
+		assertTrue(random.size() == expected.size());
+		for (long key : random.keys()) {
+			assertTrue(random.get(key).equals(expected.get(key)));
+		}
+	}
+
+	@Test
+	public void testInsertTuplesAbort() throws Exception {
+		int before = hf.getAllTuples().size();
+		int pages = hf.getNumPages();
+		ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+		for (int i = 0; i < 100; i++) {
+			tuples.add(row(i, "batch" + i));
+		}
+		bp.insertTuples(0, tid, tuples);
+		bp.transactionComplete(0, false);
+		assertTrue(hf.getAllTuples().size() == before);
+		assertTrue(hf.getNumPages() == pages);
+
+		// the pages allocated by the aborted batch are no longer cached
+		StorageStats stats = Database.getStats();
+		long misses = stats.getTableMisses(tid);
+		bp.getPage(1, tid, pages, Permissions.READ_ONLY);
+		assertTrue(stats.getTableMisses(tid) == misses + 1);
+		bp.transactionComplete(1, true);
+
+		bp.insertTuples(2, tid, tuples.subList(0, 10));
+		bp.transactionComplete(2, true);
+		assertTrue(hf.getAllTuples().size() == before + 10);
+		assertTrue(hf.getNumPages() <= pages + 1);
+	}
+
+	@Test
+	public void testBulkLoadFailureForgetsZones() throws Exception {
+		HeapFile f = tempHeapFile(100, 100, 10);
+		PageBloomFilter bloom = f.addBloomFilter(1);
+		int pages = f.getNumPages();
+		ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+		// several chunks of pages are written before the bad tuple is reached
+		for (int i = 0; i < 10000; i++) {
+			tuples.add(row(1000 + i, "loaded"));
+		}
+		Tuple bad = new Tuple(new TupleDesc(new Type[] { Type.INT }, new String[] { "c1" }));
+		bad.setField(0, new IntField(0));
+		tuples.add(bad);
+		try {
+			new BulkLoader(f, 1).load(tuples.iterator());
+			fail("Should have thrown an exception");
+		} catch (IllegalArgumentException e) {
+		}
+		assertTrue(f.getNumPages() == pages);
+		for (int pid = pages; pid < pages + 100; pid++) {
+			assertTrue(!f.getZoneMap().isKnown(pid));
+			assertTrue(bloom.mayContain(pid, new StringField("s1")));
+		}
+		assertTrue(f.getZoneMap().isKnown(pages - 1));
+	}
+
+	@Test
+	public void testPredicateMatches() throws Exception {
+		Field[] ints = { new IntField(Integer.MIN_VALUE), new IntField(-7), new IntField(0), new IntField(3),
+				new IntField(Integer.MAX_VALUE) };
+		Field[] strings = { new StringField(""), new StringField("a"), new StringField("ab"),
+				new StringField("abc"), new StringField("b"), new StringField("B"), new StringField("~") };
+		for (Field[] values : new Field[][] { ints, strings }) {
+			for (Field value : values) {
+				// the field is encoded at an offset, as on a page
+				byte[] encoded = value.toByteArray();
+				byte[] data = new byte[encoded.length + 5];
+				System.arraycopy(encoded, 0, data, 5, encoded.length);
+				for (Field operand : values) {
+					for (RelationalOperator op : RelationalOperator.values()) {
+						assertTrue(new Predicate(0, op, operand).matches(data, 5) == value.compare(op, operand));
+					}
+				}
+			}
+		}
+
+		// an operand of the wrong type is rejected instead of comparing the wrong bytes
+		Predicate wrong = new Predicate(0, RelationalOperator.EQ, new StringField("1"));
+		try {
+			wrong.checkType(td);
+			fail("expected an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			hf.getMatchingTuples(wrong);
+			fail("expected an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new Pipeline(hf).filter(new Predicate(1, RelationalOperator.EQ, new IntField(1)));
+			fail("expected an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+		new Predicate(0, RelationalOperator.EQ, new IntField(1)).checkType(td);
+	}
+
+	@Test
+	public void testPipelineBreakers() throws Exception {
+		HeapFile l = tempHeapFile(2000, 500, 300);
+		HeapFile r = tempHeapFile(1500, 700, 400);
+		for (int field : new int[] { 0, 1 }) {
+			ArrayList<String> expected = nestedLoopJoin(l, field, r, field);
+			for (int threads : new int[] { 1, 4 }) {
+				HashBuildSink build = new Pipeline(l).execute(new HashBuildSink(field), threads);
+				HashProbeSink probe = new Pipeline(r).execute(new HashProbeSink(build, field), threads);
+				assertTrue(sortedRows(probe.getTuples()).equals(expected));
+			}
+		}
+
+		// a filtered and projected build side
+		Predicate small = new Predicate(0, RelationalOperator.LT, new IntField(100));
+		HashBuildSink build = new Pipeline(l).filter(small).project(new int[] { 1 }).execute(new HashBuildSink(0), 4);
+		ArrayList<String> expected = new ArrayList<String>();
+		for (Tuple lt : l.getAllTuples()) {
+			for (Tuple rt : r.getAllTuples()) {
+				if (small.evaluate(lt) && lt.getField(1).equals(rt.getField(1))) {
+					expected.add(lt.getField(1) + ", " + rt);
+				}
+			}
+		}
+		Collections.sort(expected);
+		assertTrue(sortedRows(new Pipeline(r).execute(new HashProbeSink(build, 1), 4).getTuples()).equals(expected));
+
+		// one page of memory per fork spills many runs, four of them merged at a time
+		ArrayList<String> before = sortFiles();
+		TupleComparator comparator = new TupleComparator(new int[] { 0, 1 }, new boolean[] { false, true });
+		for (int threads : new int[] { 1, 4 }) {
+			for (int memoryPages : new int[] { 1, 1000 }) {
+				SortSink sink = new Pipeline(l).execute(
+						new SortSink(new int[] { 0, 1 }, new boolean[] { false, true }, memoryPages, 4), threads);
+				ArrayList<Tuple> sorted = sink.getTuples();
+				assertTrue(sortedRows(sorted).equals(sortedRows(l.getAllTuples())));
+				for (int i = 1; i < sorted.size(); i++) {
+					assertTrue(comparator.compare(sorted.get(i - 1), sorted.get(i)) <= 0);
+				}
+			}
+		}
+		assertTrue(sortFiles().equals(before));
+	}
+
+	@Test
+	public void testZoneMapSkipsPages() throws Exception {
+		// c1 grows with the row, so the zones of the pages do not overlap
+		HeapFile f = tempHeapFile(3000, 3000, 400);
+		LatencyHistogram reads = Database.getStats().getPageReadLatency();
+		Predicate high = new Predicate(0, RelationalOperator.GTE, new IntField(2950));
+		long before = reads.getCount();
+		assertTrue(f.getMatchingTuples(high).size() == 50);
+		// rows 2950 to 2999 are on the last two pages
+		assertTrue(reads.getCount() - before == 2);
+
+		// move a row of the first page into the range through the BufferPool
+		byte[] stale = f.readPageData(0);
+		Tuple first = f.getAllTuples().get(0);
+		bp.deleteTuple(0, f.getId(), first);
+		bp.getPage(0, f.getId(), 0, Permissions.READ_WRITE).addTuple(row(5000, "moved"));
+		bp.transactionComplete(0, true);
+		// a scan that read the page before the write does not replace its zone
+		f.getZoneMap().observe(0, stale);
+
+		before = reads.getCount();
+		ArrayList<Tuple> found = f.getMatchingTuples(high);
+		assertTrue(found.size() == 51);
+		assertTrue(sortedRows(found).contains("5000, moved"));
+		assertTrue(reads.getCount() - before == 3);
+		ArrayList<String> expected = matchingRows(f, high);
+		Collections.sort(expected);
+		assertTrue(sortedRows(found).equals(expected));
+	}
+
+	@Test
+	public void testBloomFilterSkipsPages() throws Exception {
+		HeapFile f = tempHeapFile(3000, 700, 3000);
+		PageBloomFilter bloom = f.addBloomFilter(1);
+		// the first scan reads every page and records its filter
+		Predicate needle = new Predicate(1, RelationalOperator.EQ, new StringField("s1234"));
+		assertTrue(f.getMatchingTuples(needle).size() == 1);
+
+		LatencyHistogram reads = Database.getStats().getPageReadLatency();
+		long before = reads.getCount();
+		assertTrue(f.getMatchingTuples(needle).size() == 1);
+		// the page holding the value, and at most a couple of false positives
+		assertTrue(reads.getCount() - before >= 1 && reads.getCount() - before <= 3);
+
+		// write a new value to a page whose filter is already known
+		byte[] stale = f.readPageData(5);
+		Tuple t = f.readPage(5).iterator().next();
+		bp.deleteTuple(0, f.getId(), t);
+		bp.getPage(0, f.getId(), 5, Permissions.READ_WRITE).addTuple(row(1, "needle"));
+		bp.transactionComplete(0, true);
+		// a scan that read the page before the write does not replace its filter
+		bloom.observe(5, stale);
+
+		Predicate written = new Predicate(1, RelationalOperator.EQ, new StringField("needle"));
+		ArrayList<Tuple> found = f.getMatchingTuples(written);
+		assertTrue(found.size() == 1 && found.get(0).getPid() == 5);
+	}
+
+	@Test
+	public void testRoaringBitmap() throws Exception {
+		// chunk 0 dense in a and sparse in b, chunk 1 sparse in both, chunk 2 dense in both
+		RoaringBitmap a = new RoaringBitmap();
+		RoaringBitmap b = new RoaringBitmap();
+		TreeSet<Integer> sa = new TreeSet<Integer>();
+		TreeSet<Integer> sb = new TreeSet<Integer>();
+		for (int i = 0; i < 6000; i++) {
+			a.add(i * 2);
+			sa.add(i * 2);
+		}
+		for (int i = 0; i < 3000; i++) {
+			b.add(i * 3);
+			sb.add(i * 3);
+		}
+		for (int i = 0; i < 100; i++) {
+			a.add((1 << 16) + i * 7);
+			sa.add((1 << 16) + i * 7);
+			b.add((1 << 16) + i * 5);
+			sb.add((1 << 16) + i * 5);
+		}
+		for (int i = 0; i < 5000; i++) {
+			a.add((2 << 16) + i);
+			sa.add((2 << 16) + i);
+			b.add((2 << 16) + 60000 - i * 2);
+			sb.add((2 << 16) + 60000 - i * 2);
+		}
+		assertTrue(a.getCardinality() == sa.size());
+		assertTrue(b.getCardinality() == sb.size());
+
+		// remove until chunk 0 of a is back under the array limit
+		for (int i = 0; i < 2000; i++) {
+			a.remove(i * 6);
+			sa.remove(i * 6);
+		}
+		a.remove(1);
+		assertTrue(a.getCardinality() == sa.size());
+		for (int x : sa) {
+			assertTrue(a.contains(x));
+		}
+		assertTrue(!a.contains(0) && a.contains(2));
+
+		TreeSet<Integer> and = new TreeSet<Integer>(sa);
+		and.retainAll(sb);
+		TreeSet<Integer> or = new TreeSet<Integer>(sa);
+		or.addAll(sb);
+		assertTrue(Arrays.equals(toArray(and), RoaringBitmap.and(a, b).toArray()));
+		assertTrue(Arrays.equals(toArray(and), RoaringBitmap.and(b, a).toArray()));
+		assertTrue(Arrays.equals(toArray(or), RoaringBitmap.or(a, b).toArray()));
+		assertTrue(Arrays.equals(toArray(or), RoaringBitmap.or(b, a).toArray()));
+
+		// emptying a chunk drops it
+		for (int i = 0; i < 100; i++) {
+			b.remove((1 << 16) + i * 5);
+		}
+		assertTrue(b.getCardinality() == sb.size() - 100);
+		assertTrue(!b.contains(1 << 16));
+	}
+
+	private int[] toArray(TreeSet<Integer> set) {
+		int[] values = new int[set.size()];
+		int i = 0;
+		for (int x : set) {
+			values[i++] = x;
+		}
+		return values;
+	}
+
+	@Test
+	public void testBitmapIndex() throws Exception {
+		HeapFile f = tempHeapFile(600, 7, 5);
+		c.createBitmapIndex(f.getId(), "c1");
+		c.createBitmapIndex(f.getId(), "c2");
+
+		Predicate c1 = new Predicate(0, RelationalOperator.EQ, new IntField(3));
+		Predicate c2 = new Predicate(1, RelationalOperator.EQ, new StringField("s2"));
+		Predicate lt = new Predicate(0, RelationalOperator.LT, new IntField(2));
+		ArrayList<String> expected = matchingRows(f, c1, c2);
+		Collections.sort(expected);
+		assertTrue(!expected.isEmpty());
+		BitmapIndex index = c.getBitmapIndex(f.getId(), 0);
+		assertTrue(sortedRows(index.fetch(0, BitmapIndex.and(f.getId(), Arrays.asList(c1, c2)))).equals(expected));
+		bp.transactionComplete(0, true);
+
+		expected = new ArrayList<String>();
+		for (Tuple t : f.getAllTuples()) {
+			if (lt.evaluate(t) || c2.evaluate(t)) {
+				expected.add(t.toString());
+			}
+		}
+		Collections.sort(expected);
+		assertTrue(sortedRows(index.fetch(0, BitmapIndex.or(f.getId(), Arrays.asList(lt, c2)))).equals(expected));
+		bp.transactionComplete(0, true);
+	}
+
+	@Test
+	public void testBitmapIndexAbort() throws Exception {
+		HeapFile f = tempHeapFile(600, 7, 5);
+		BitmapIndex index = c.createBitmapIndex(f.getId(), "c1");
+		Predicate c1 = new Predicate(0, RelationalOperator.EQ, new IntField(3));
+		ArrayList<String> before = matchingRows(f, c1);
+		Collections.sort(before);
+
+		// an aborted delete puts the row back
+		Tuple deleted = null;
+		for (Tuple t : f.getAllTuples()) {
+			if (c1.evaluate(t)) {
+				deleted = t;
+				break;
+			}
+		}
+		bp.deleteTuple(1, f.getId(), deleted);
+		bp.transactionComplete(1, false);
+		assertTrue(index.select(c1).getCardinality() == before.size());
+
+		// an aborted insert takes the row out, so the slot can be reused by another value
+		bp.insertTuples(2, f.getId(), Arrays.asList(row(3, "s9")));
+		bp.transactionComplete(2, false);
+		assertTrue(index.select(c1).getCardinality() == before.size());
+		bp.insertTuples(3, f.getId(), Arrays.asList(row(5, "s0")));
+		bp.transactionComplete(3, true);
+
+		assertTrue(sortedRows(index.fetch(4, index.select(c1))).equals(before));
+		bp.transactionComplete(4, true);
+		assertTrue(index.select(new Predicate(0, RelationalOperator.EQ, new IntField(5))).getCardinality()
+				== matchingRows(f, new Predicate(0, RelationalOperator.EQ, new IntField(5))).size());
+	}
+
+	@Test
+	public void testPrefixIndex() throws Exception {
+		// 30 copies of each of s0 .. s39, so runs of equal keys cross index pages
+		HeapFile f = tempHeapFile(1200, 7, 40);
+		PrefixIndexFile index = c.createPrefixIndex(f.getId(), "c2");
+		index.getFile().deleteOnExit();
+		assertTrue(index.getNumPages() > 1);
+		checkPrefixIndex(f, index);
+
+		ArrayList<Tuple> deleted = new ArrayList<Tuple>();
+		for (Tuple t : f.getAllTuples()) {
+			String key = ((StringField) t.getField(1)).getValue();
+			if (key.equals("s15") || key.equals("s2")) {
+				deleted.add(t);
+			}
+		}
+		for (Tuple t : deleted.subList(0, 20)) {
+			bp.deleteTuple(1, f.getId(), t);
+		}
+		bp.insertTuples(1, f.getId(), Arrays.asList(row(0, "s15"), row(1, "s1a"), row(2, "t"), row(3, "s")));
+		bp.transactionComplete(1, true);
+		checkPrefixIndex(f, index);
+
+		// an aborted transaction leaves the index as it was, even once its slots are reused
+		bp.deleteTuple(2, f.getId(), deleted.get(25));
+		bp.insertTuples(2, f.getId(), Arrays.asList(row(4, "s17"), row(5, "s3")));
+		bp.transactionComplete(2, false);
+		bp.insertTuples(3, f.getId(), Arrays.asList(row(6, "u"), row(7, "s22")));
+		bp.transactionComplete(3, true);
+		checkPrefixIndex(f, index);
+
+		// a rebuild after a bulk load does not see the old index through the BufferPool
+		new BulkLoader(f).load(Arrays.asList(row(8, "s1b"), row(9, "s2")).iterator());
+		index = c.createPrefixIndex(f.getId(), "c2");
+		checkPrefixIndex(f, index);
+	}
+
+	/* compares prefix and range lookups of the index with a scan of the table */
+	private void checkPrefixIndex(HeapFile f, PrefixIndexFile index) throws Exception {
+		for (String prefix : new String[] { "s1", "s15", "s2", "s", "t", "x" }) {
+			ArrayList<String> expected = new ArrayList<String>();
+			for (Tuple t : f.getAllTuples()) {
+				if (((StringField) t.getField(1)).getValue().startsWith(prefix)) {
+					expected.add(t.toString());
+				}
+			}
+			Collections.sort(expected);
+			assertTrue(sortedRows(index.findPrefix(0, prefix)).equals(expected));
+			bp.transactionComplete(0, true);
+		}
+		RelationalOperator[] lows = { null, RelationalOperator.GT, RelationalOperator.GTE };
+		RelationalOperator[] highs = { null, RelationalOperator.LT, RelationalOperator.LTE };
+		for (RelationalOperator lowOp : lows) {
+			for (RelationalOperator highOp : highs) {
+				StringField low = new StringField("s15");
+				StringField high = new StringField("s3");
+				ArrayList<String> expected = new ArrayList<String>();
+				for (Tuple t : f.getAllTuples()) {
+					String key = ((StringField) t.getField(1)).getValue();
+					int cl = key.compareTo(low.getValue());
+					int ch = key.compareTo(high.getValue());
+					if ((lowOp == null || cl > 0 || (cl == 0 && lowOp == RelationalOperator.GTE))
+							&& (highOp == null || ch < 0 || (ch == 0 && highOp == RelationalOperator.LTE))) {
+						expected.add(t.toString());
+					}
+				}
+				Collections.sort(expected);
+				ArrayList<Tuple> found = index.search(0, lowOp, low, highOp, high);
+				bp.transactionComplete(0, true);
+				assertTrue(sortedRows(found).equals(expected));
+				// in key order
+				for (int i = 1; i < found.size(); i++) {
+					assertTrue(found.get(i - 1).getField(1).toString().compareTo(found.get(i).getField(1).toString()) <= 0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRebuildIndex() throws Exception {
+		HeapFile f = tempHeapFile(10, 10000, 7);
+		c.addTable(f, f.getFile().getName(), "c1");
+		BTreeFile index = c.createIndex(f.getId());
+		index.getFile().deleteOnExit();
+		assertTrue(index.find(0, new IntField(5)).size() == 1);
+		bp.transactionComplete(0, true);
+
+		ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+		for (int i = 10; i < 3000; i++) {
+			tuples.add(row(i, "s" + i % 7));
+		}
+		new BulkLoader(f).load(tuples.iterator());
+		// the rebuilt index has the id of the old one, whose pages are still cached
+		index = c.createIndex(f.getId());
+		assertTrue(index.find(1, new IntField(2500)).size() == 1);
+		assertTrue(index.find(1, new IntField(5)).size() == 1);
+		bp.transactionComplete(1, true);
+
+		// a locked page of the old index cannot be dropped
+		index.find(2, new IntField(5));
+		try {
+			c.createIndex(f.getId());
+			fail("Should have thrown an exception");
+		} catch (IllegalStateException e) {
+		}
+		bp.transactionComplete(2, true);
+	}
+
+	@Test
+	public void testBuildIndexSpills() throws Exception {
+		// more entries than ExternalSort.DEFAULT_MEMORY_PAGES pages hold, in random order
+		ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+		for (int i = 0; i < 100000; i++) {
+			tuples.add(row(i, "s" + i % 7));
+		}
+		Collections.shuffle(tuples, new Random(7));
+		HeapFile f = tempHeapFile(tuples);
+		c.addTable(f, f.getFile().getName(), "c1");
+		BTreeFile index = c.createIndex(f.getId());
+		index.getFile().deleteOnExit();
+
+		for (int key : new int[] { 0, 1, 4242, 50000, 99999 }) {
+			ArrayList<Tuple> found = index.find(0, new IntField(key));
+			assertTrue(found.size() == 1);
+			assertTrue(found.get(0).getField(0).equals(new IntField(key)));
+			bp.transactionComplete(0, true);
+		}
+		assertTrue(index.find(0, new IntField(100000)).isEmpty());
+		assertTrue(index.search(0, RelationalOperator.GTE, new IntField(99990)).size() == 10);
+		bp.transactionComplete(0, true);
+	}
+
+	@Test
+	public void testBuildPrefixIndexSpills() throws Exception {
+		// more entries than ExternalSort.DEFAULT_MEMORY_PAGES pages hold
+		HeapFile f = tempHeapFile(10000, 7, 400);
+		PrefixIndexFile index = c.createPrefixIndex(f.getId(), "c2");
+		index.getFile().deleteOnExit();
+
+		ArrayList<String> expected = new ArrayList<String>();
+		for (Tuple t : f.getAllTuples()) {
+			if (((StringField) t.getField(1)).getValue().startsWith("s12")) {
+				expected.add(t.toString());
+			}
+		}
+		Collections.sort(expected);
+		ArrayList<Tuple> found = index.findPrefix(0, "s12");
+		bp.transactionComplete(0, true);
+		assertTrue(sortedRows(found).equals(expected));
+		for (int i = 1; i < found.size(); i++) {
+			assertTrue(found.get(i - 1).getField(1).toString().compareTo(found.get(i).getField(1).toString()) <= 0);
+		}
+		int above = 0;
+		for (Tuple t : f.getAllTuples()) {
+			above += ((StringField) t.getField(1)).getValue().compareTo("s398") >= 0 ? 1 : 0;
+		}
+		assertTrue(index.search(0, RelationalOperator.GTE, new StringField("s398"), null, null).size() == above);
+		bp.transactionComplete(0, true);
+	}
+
+	@Test
+	public void testPrefixIndexMerge() throws Exception {
+		HeapFile f = tempHeapFile(1200, 7, 40);
+		PrefixIndexFile index = c.createPrefixIndex(f.getId(), "c2");
+		index.getFile().deleteOnExit();
+		int pages = index.getNumPages();
+
+		// a transaction reading the index puts off merging the changes into the file
+		index.prefix(9, "x", (key, pid, slot) -> {
+		});
+		ArrayList<Tuple> rows = f.getAllTuples();
+		for (int tid = 1; tid <= 4; tid++) {
+			for (Tuple t : rows.subList(tid * 100, tid * 100 + 50)) {
+				bp.deleteTuple(tid, f.getId(), t);
+			}
+			ArrayList<Tuple> added = new ArrayList<Tuple>();
+			for (int i = 0; i < 250; i++) {
+				added.add(row(i, "m" + tid + "." + i));
+			}
+			bp.insertTuples(tid, f.getId(), added);
+			bp.transactionComplete(tid, true);
+		}
+		assertTrue(index.getNumPages() == pages);
+		checkPrefixIndex(f, index);
+		bp.transactionComplete(9, true);
+
+		// the next transaction to complete merges them
+		bp.insertTuples(5, f.getId(), Arrays.asList(row(0, "s1c"), row(1, "s2")));
+		bp.transactionComplete(5, true);
+		assertTrue(index.getNumPages() > pages);
+		assertTrue(!new File(index.getFile().getPath() + ".tmp").exists());
+		checkPrefixIndex(f, index);
+		ArrayList<String> expected = new ArrayList<String>();
+		for (Tuple t : f.getAllTuples()) {
+			if (((StringField) t.getField(1)).getValue().startsWith("m3")) {
+				expected.add(t.toString());
+			}
+		}
+		Collections.sort(expected);
+		assertTrue(expected.size() == 250);
+		assertTrue(sortedRows(index.findPrefix(0, "m3")).equals(expected));
+		bp.transactionComplete(0, true);
+
+		// changes after the merge are kept in memory again, and undone on abort
+		bp.deleteTuple(6, f.getId(), f.getAllTuples().get(0));
+		bp.insertTuples(6, f.getId(), Arrays.asList(row(2, "s1d")));
+		bp.transactionComplete(6, false);
+		bp.insertTuples(7, f.getId(), Arrays.asList(row(3, "s15")));
+		bp.transactionComplete(7, true);
+		checkPrefixIndex(f, index);
+	}
+
+	@Test
+	public void testBuildHashIndexSpills() throws Exception {
+		// more entries than ExternalSort.DEFAULT_MEMORY_PAGES pages hold, 25 of each key
+		HeapFile f = tempHeapFile(10000, 7, 400);
+		HashIndexFile index = c.createHashIndex(f.getId(), "c2");
+		index.getFile().deleteOnExit();
+
+		for (int i = 0; i < 400; i++) {
+			ArrayList<Tuple> found = index.find(0, new StringField("s" + i));
+			bp.transactionComplete(0, true);
+			assertTrue(found.size() == 25);
+			for (Tuple t : found) {
+				assertTrue(t.getField(1).equals(new StringField("s" + i)));
+			}
+		}
+		assertTrue(index.find(0, new StringField("s400")).isEmpty());
+		bp.transactionComplete(0, true);
+	}
+
+	@Test
+	public void testDictionaryJoin() throws Exception {
+		File f1 = File.createTempFile("test", ".dict.dat");
+		File f2 = File.createTempFile("test", ".dict.dat");
+		for (File f : new File[] { f1, f2 }) {
+			f.deleteOnExit();
+			new File(f.getPath() + ".dict").deleteOnExit();
+		}
+		DictionaryFile df1 = DictionaryFile.convert(hf, f1);
+		DictionaryFile df2 = DictionaryFile.convert(hf, f2);
+		int expected = new HashJoin(hf, 1, hf, 1, 10).execute().size();
+
+		// codes of one dictionary, also when the file is opened again
+		assertTrue(new HashJoin(df1, 1, df1, 1, 10).execute().size() == expected);
+		assertTrue(new HashJoin(df1, 1, new DictionaryFile(f1, td), 1, 10).execute().size() == expected);
+		assertTrue(new HashJoin(df1, 0, df2, 0, 10).execute().size() == new HashJoin(hf, 0, hf, 0, 10).execute().size());
+		HashBuildSink build = new Pipeline(df1).execute(new HashBuildSink(1), 2);
+		assertTrue(new Pipeline(df1).execute(new HashProbeSink(build, 1), 2).getTuples().size() == expected);
+
+		// codes of different dictionaries, or codes and plain ints
+		try {
+			new HashJoin(df1, 1, df2, 1, 10);
+			fail("Should have thrown an exception");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new HashJoin(df1, 1, hf, 0, 10);
+			fail("Should have thrown an exception");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new Pipeline(df2).execute(new HashProbeSink(build, 1), 2);
+			fail("Should have thrown an exception");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new Pipeline(df1).project(new int[] { 1, 0 }).execute(new HashProbeSink(build, 1), 2);
+			fail("Should have thrown an exception");
+		} catch (IllegalArgumentException e) {
+		}
+	}
 }